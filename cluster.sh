@@ -0,0 +1,21 @@
+#!/bin/bash
+# Usage: ./cluster.sh <workers> [HeadlessRunner options]
+# Starts the scoring workers as separate JVMs on loopback, then the headless run as coordinator.
+# Kill one of the printed worker pids mid-run to watch its partitions move to the others.
+
+WORKERS=${1:-2}
+shift
+PORT=${CLUSTER_PORT:-7070}
+
+mvn -q compile dependency:build-classpath -Dmdep.outputFile=target/classpath.txt || exit 1
+CP="target/classes:$(cat target/classpath.txt)"
+
+PIDS=()
+trap 'kill "${PIDS[@]}" 2>/dev/null' EXIT
+for i in $(seq 1 "$WORKERS"); do
+    java -cp "$CP" com.frauddetection.cluster.ScoringWorker --coordinator=127.0.0.1:"$PORT" --id=worker-"$i" &
+    PIDS+=($!)
+    echo "worker-$i pid $!"
+done
+
+java -cp "$CP" com.frauddetection.HeadlessRunner --cluster-port="$PORT" --cluster-workers="$WORKERS" "$@"
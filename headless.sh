@@ -0,0 +1,3 @@
+#!/bin/bash
+
+mvn -q compile exec:java -Dexec.mainClass=com.frauddetection.HeadlessRunner -Dexec.args="$*"
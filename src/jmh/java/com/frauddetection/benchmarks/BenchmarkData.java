@@ -0,0 +1,59 @@
+package com.frauddetection.benchmarks;
+
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Locale;
+import java.util.Random;
+
+// Seeded synthetic transactions shared by the benchmarks so runs are comparable
+final class BenchmarkData {
+    static final long SEED = 42;
+    static final String[] TYPES = {"Credit Card", "Wire Transfer", "Cash Deposit"};
+    static final String[] LOCATIONS = {
+        "New York", "London", "Tokyo", "Singapore", "Hong Kong",
+        "Dubai", "Paris", "Sydney", "Mumbai", "Shanghai"
+    };
+
+    private BenchmarkData() {
+    }
+
+    // Rows spread evenly over the given number of days before now, oldest first
+    static TransactionBatch batch(int rows, int days, Random random) {
+        TransactionBatch batch = new TransactionBatch(rows);
+        long end = TransactionBatch.toEpochNanos(LocalDateTime.now());
+        long span = days * 86_400_000_000_000L;
+        for (int i = 0; i < rows; i++) {
+            long timestamp = end - span + span / rows * i;
+            batch.add("TX" + i, timestamp, 10 + random.nextDouble() * 9990,
+                    batch.getTypeDictionary().intern(TYPES[random.nextInt(TYPES.length)]),
+                    (float) random.nextDouble(),
+                    batch.getLocationDictionary().intern(LOCATIONS[random.nextInt(LOCATIONS.length)]));
+        }
+        return batch;
+    }
+
+    static Transaction transaction(int index, Random random) {
+        return new Transaction("TX" + index, 10 + random.nextDouble() * 9990, TYPES[random.nextInt(TYPES.length)],
+                random.nextDouble(), LOCATIONS[random.nextInt(LOCATIONS.length)]);
+    }
+
+    static Path csv(int rows, Random random) throws IOException {
+        Path file = Files.createTempFile("transactions-", ".csv");
+        file.toFile().deleteOnExit();
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            writer.write("id,amount,type,fraudProbability,location\n");
+            for (int i = 0; i < rows; i++) {
+                writer.write(String.format(Locale.ROOT, "TX%d,%.2f,%s,%.4f,%s%n", i,
+                        10 + random.nextDouble() * 9990, TYPES[random.nextInt(TYPES.length)],
+                        random.nextDouble(), LOCATIONS[random.nextInt(LOCATIONS.length)]));
+            }
+        }
+        return file;
+    }
+}
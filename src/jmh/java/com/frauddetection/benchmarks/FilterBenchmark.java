@@ -0,0 +1,77 @@
+package com.frauddetection.benchmarks;
+
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import com.frauddetection.service.TransactionService;
+import com.frauddetection.service.TransactionStore;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Dashboard filtering over 30 days of history: a one-week, single-type, high-risk query, through
+// the segmented store and as one scan of a single columnar batch
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class FilterBenchmark {
+    private static final int CHUNK = 100_000;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int rows;
+
+    private TransactionService service;
+    private TransactionBatch batch;
+    private LocalDate startDate;
+    private LocalDate endDate;
+
+    @Setup
+    public void setUp() {
+        TransactionStore store = new TransactionStore(Duration.ofHours(1), Duration.ofDays(3650), Long.MAX_VALUE);
+        Random random = new Random(BenchmarkData.SEED);
+        for (int loaded = 0; loaded < rows; loaded += CHUNK) {
+            int chunk = Math.min(CHUNK, rows - loaded);
+            store.restore(BenchmarkData.batch(chunk, 30, random));
+        }
+        service = new TransactionService(store);
+        batch = BenchmarkData.batch(rows, 30, new Random(BenchmarkData.SEED));
+        endDate = LocalDate.now();
+        startDate = endDate.minusDays(7);
+    }
+
+    @Benchmark
+    public List<Transaction> filterAll() {
+        return service.getFilteredTransactions(startDate, endDate, "Wire Transfer", Transaction.FRAUD_THRESHOLD);
+    }
+
+    @Benchmark
+    public List<Transaction> filterView() {
+        return service.getFilteredTransactions(startDate, endDate, "Wire Transfer", Transaction.FRAUD_THRESHOLD,
+                TransactionService.VIEW_CAPACITY);
+    }
+
+    @Benchmark
+    public int[] scanBatch() {
+        return service.getFilteredRows(batch, startDate, endDate, "Wire Transfer", Transaction.FRAUD_THRESHOLD);
+    }
+
+    @Benchmark
+    public long count() {
+        return service.countFilteredTransactions(startDate, endDate, "Wire Transfer", Transaction.FRAUD_THRESHOLD);
+    }
+}
@@ -0,0 +1,107 @@
+package com.frauddetection.benchmarks;
+
+import com.frauddetection.model.CategoryDictionary;
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import com.frauddetection.model.TransactionEvent;
+import com.frauddetection.service.TransactionRingBuffer;
+import java.util.Random;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Group;
+import org.openjdk.jmh.annotations.GroupThreads;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// One producer handing transactions to one consumer through the generator's LinkedBlockingQueue
+// and through the ring buffer. Both sides use non-blocking calls so an iteration can always end;
+// a call that finds the queue full or empty is counted like any other.
+@State(Scope.Group)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HandoffBenchmark {
+    private static final int POOL = 4096;
+
+    @Param({"1024"})
+    public int capacity;
+
+    private Transaction[] transactions;
+    private int[] typeCodes;
+    private int[] locationCodes;
+    private long[] timestamps;
+    private LinkedBlockingQueue<Transaction> queue;
+    private TransactionRingBuffer ring;
+
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        final TransactionEvent event = new TransactionEvent();
+    }
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        Random random = new Random(BenchmarkData.SEED);
+        transactions = new Transaction[POOL];
+        typeCodes = new int[POOL];
+        locationCodes = new int[POOL];
+        timestamps = new long[POOL];
+        for (int i = 0; i < POOL; i++) {
+            transactions[i] = BenchmarkData.transaction(i, random);
+            typeCodes[i] = CategoryDictionary.TYPES.intern(transactions[i].getType());
+            locationCodes[i] = CategoryDictionary.LOCATIONS.intern(transactions[i].getLocation());
+            timestamps[i] = TransactionBatch.toEpochNanos(transactions[i].getTimestamp());
+        }
+        queue = new LinkedBlockingQueue<>(capacity);
+        ring = new TransactionRingBuffer(capacity, TransactionRingBuffer.WaitStrategy.BUSY_SPIN);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(1)
+    public boolean queueOffer(Cursor cursor) {
+        return queue.offer(transactions[cursor.next++ & (POOL - 1)]);
+    }
+
+    @Benchmark
+    @Group("queue")
+    @GroupThreads(1)
+    public Transaction queuePoll() {
+        return queue.poll();
+    }
+
+    @Benchmark
+    @Group("ring")
+    @GroupThreads(1)
+    public boolean ringPublish(Cursor cursor) {
+        TransactionEvent event = ring.tryClaim();
+        if (event == null) {
+            return false;
+        }
+        int i = cursor.next++ & (POOL - 1);
+        Transaction t = transactions[i];
+        event.set("TX", i, t.getAmount(), typeCodes[i], locationCodes[i], timestamps[i], t.getFraudProbability(),
+                t.getAccountId());
+        ring.publish();
+        return true;
+    }
+
+    @Benchmark
+    @Group("ring")
+    @GroupThreads(1)
+    public boolean ringPoll(Cursor cursor) {
+        return ring.poll(cursor.event);
+    }
+}
@@ -0,0 +1,88 @@
+package com.frauddetection.benchmarks;
+
+import com.frauddetection.model.Transaction;
+import com.frauddetection.service.WekaFraudDetector;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Cost of feedback on the caller's thread, and of the background retrain it eventually triggers
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ModelUpdateBenchmark {
+    private static final int POOL = 4096;
+
+    @State(Scope.Benchmark)
+    public static class Feedback {
+        WekaFraudDetector detector;
+        Transaction[] transactions;
+        int next;
+
+        @Setup
+        public void setUp() {
+            detector = new WekaFraudDetector();
+            Random random = new Random(BenchmarkData.SEED);
+            transactions = new Transaction[POOL];
+            for (int i = 0; i < POOL; i++) {
+                transactions[i] = BenchmarkData.transaction(i, random);
+            }
+        }
+
+        @TearDown
+        public void tearDown() {
+            detector.close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class History {
+        @Param({"1000", "10000"})
+        public int historySize;
+
+        WekaFraudDetector detector;
+
+        @Setup
+        public void setUp() {
+            detector = new WekaFraudDetector();
+            Random random = new Random(BenchmarkData.SEED);
+            for (int i = 0; i < historySize; i++) {
+                Transaction transaction = BenchmarkData.transaction(i, random);
+                detector.updateModel(transaction, transaction.isFraudulent());
+            }
+            detector.retrainNow().join();
+        }
+
+        @TearDown
+        public void tearDown() {
+            detector.close();
+        }
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.NANOSECONDS)
+    public void updateModel(Feedback state) {
+        int index = state.next = (state.next + 1) & (POOL - 1);
+        Transaction transaction = state.transactions[index];
+        state.detector.updateModel(transaction, transaction.isFraudulent());
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public void retrain(History state) {
+        state.detector.retrainNow().join();
+    }
+}
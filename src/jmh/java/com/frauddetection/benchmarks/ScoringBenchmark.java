@@ -0,0 +1,84 @@
+package com.frauddetection.benchmarks;
+
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import com.frauddetection.service.FeatureEngine;
+import com.frauddetection.service.ScoreCache;
+import com.frauddetection.service.WekaFraudDetector;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Single and batched scoring through the compiled forest and through Weka, with and without the
+// score cache
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ScoringBenchmark {
+    private static final int POOL = 4096;
+
+    @Param({"true", "false"})
+    public boolean compiled;
+
+    @Param({"true", "false"})
+    public boolean cached;
+
+    @Param({"256"})
+    public int batchSize;
+
+    private WekaFraudDetector detector;
+    private Transaction[] transactions;
+    private List<Transaction> batch;
+    private TransactionBatch columns;
+    private int next;
+
+    @Setup
+    public void setUp() {
+        detector = new WekaFraudDetector(new FeatureEngine(), cached ? new ScoreCache() : null);
+        detector.setCompiledInference(compiled);
+        Random random = new Random(BenchmarkData.SEED);
+        transactions = new Transaction[POOL];
+        for (int i = 0; i < POOL; i++) {
+            transactions[i] = BenchmarkData.transaction(i, random);
+        }
+        batch = Arrays.asList(Arrays.copyOf(transactions, batchSize));
+        columns = TransactionBatch.of(batch);
+    }
+
+    @TearDown
+    public void tearDown() {
+        detector.close();
+    }
+
+    @Benchmark
+    public double predictSingle() {
+        next = (next + 1) & (POOL - 1);
+        return detector.predictFraudProbability(transactions[next]);
+    }
+
+    @Benchmark
+    public double[] predictBatch() {
+        return detector.predictFraudProbabilities(batch);
+    }
+
+    @Benchmark
+    public double[] predictColumnarBatch() {
+        return detector.predictFraudProbabilities(columns);
+    }
+}
@@ -1,40 +1,123 @@
 package com.frauddetection;
 
+import com.frauddetection.analytics.StreamingAnalytics;
+import com.frauddetection.metrics.FileMetricsExporter;
+import com.frauddetection.metrics.JmxMetricsExporter;
+import com.frauddetection.metrics.MetricsRegistry;
+import com.frauddetection.service.FraudDetector;
+import com.frauddetection.service.IngestionPipeline;
+import com.frauddetection.service.TransactionJournal;
+import com.frauddetection.service.TransactionRepository;
 import com.frauddetection.service.TransactionService;
+import com.frauddetection.service.TransactionStore;
 import com.frauddetection.ui.DashboardView;
 import javafx.application.Application;
 import javafx.scene.Scene;
 import javafx.stage.Stage;
-import javafx.animation.Animation;
-import javafx.animation.KeyFrame;
-import javafx.animation.Timeline;
-import javafx.util.Duration;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import javax.management.JMException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 public class FraudDetectionApp extends Application {
+    private static final Logger LOGGER = Logger.getLogger(FraudDetectionApp.class.getName());
+    private static final Path ANALYTICS_SNAPSHOT = Paths.get("data", "analytics.snapshot");
     private TransactionService transactionService;
-    private Timeline simulationTimeline;
+    private TransactionRepository transactionRepository;
+    private TransactionJournal transactionJournal;
+    private StreamingAnalytics analytics;
+    private FraudDetector fraudDetector;
+    private IngestionPipeline pipeline;
 
     @Override
     public void start(Stage primaryStage) {
-        transactionService = new TransactionService();
+        startMetrics();
+        try {
+            transactionRepository = new TransactionRepository();
+        } catch (SQLException e) {
+            // Keep running in memory only rather than refusing to start
+            LOGGER.log(Level.WARNING, "Error opening transaction database, history will not be persisted", e);
+        }
+        try {
+            transactionJournal = new TransactionJournal(Paths.get("data", "journal"));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error opening transaction journal, startup will restore from the database", e);
+        }
+        analytics = loadAnalytics();
+        TransactionStore store = new TransactionStore();
+        MetricsRegistry.global().gauge("store.size", store::size);
+        MetricsRegistry.global().gauge("store.segments", store::segmentCount);
+        transactionService = new TransactionService(store, transactionRepository, transactionJournal, analytics);
+        // Simulated transactions are scored by the model and raise alerts on their way to the store
+        fraudDetector = new FraudDetector();
+        pipeline = new IngestionPipeline(fraudDetector.getScorer(), transactionService.getStore());
+        pipeline.addListener(fraudDetector::alert);
+        transactionService.setPipeline(pipeline);
         DashboardView dashboard = new DashboardView(transactionService);
 
-        // Set up simulation timeline
-        simulationTimeline = new Timeline(
-            new KeyFrame(Duration.seconds(2), e -> transactionService.generateTransaction())
-        );
-        simulationTimeline.setCycleCount(Animation.INDEFINITE);
-
         Scene scene = new Scene(dashboard, 1200, 800);
         primaryStage.setTitle("Fraud Detection System");
         primaryStage.setScene(scene);
         primaryStage.show();
     }
 
+    // Statistics saved at the last shutdown, so they cover more history than the journal keeps
+    private StreamingAnalytics loadAnalytics() {
+        if (Files.exists(ANALYTICS_SNAPSHOT)) {
+            try {
+                return StreamingAnalytics.load(ANALYTICS_SNAPSHOT);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error loading analytics snapshot, starting empty", e);
+            }
+        }
+        return new StreamingAnalytics();
+    }
+
+    // Metrics are visible over JMX and dumped to data/metrics.log every minute
+    private void startMetrics() {
+        MetricsRegistry metrics = MetricsRegistry.global();
+        try {
+            metrics.addExporter(new JmxMetricsExporter());
+        } catch (JMException e) {
+            LOGGER.log(Level.WARNING, "Error registering metrics MBean", e);
+        }
+        try {
+            metrics.addExporter(new FileMetricsExporter(Paths.get("data", "metrics.log")));
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error opening metrics log", e);
+        }
+        metrics.startReporting(java.time.Duration.ofMinutes(1));
+    }
+
     @Override
     public void stop() {
-        if (simulationTimeline != null) {
-            simulationTimeline.stop();
+        if (transactionService != null) {
+            transactionService.setSimulationEnabled(false);
+        }
+        // Drains everything accepted into the store, and so into the journal and database, first
+        if (pipeline != null) {
+            pipeline.close();
+        }
+        if (fraudDetector != null) {
+            fraudDetector.close();
+        }
+        MetricsRegistry.global().close();
+        if (analytics != null) {
+            try {
+                analytics.save(ANALYTICS_SNAPSHOT);
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error saving analytics snapshot", e);
+            }
+        }
+        if (transactionJournal != null) {
+            transactionJournal.close();
+        }
+        if (transactionRepository != null) {
+            transactionRepository.close();
         }
     }
 
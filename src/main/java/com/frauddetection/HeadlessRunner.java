@@ -0,0 +1,219 @@
+package com.frauddetection;
+
+import com.frauddetection.analytics.StreamingAnalytics;
+import com.frauddetection.cluster.ClusterCoordinator;
+import com.frauddetection.metrics.FileMetricsExporter;
+import com.frauddetection.metrics.LatencyHistogram;
+import com.frauddetection.metrics.MetricsRegistry;
+import com.frauddetection.service.BatchScorer;
+import com.frauddetection.service.FeatureEngine;
+import com.frauddetection.service.IngestionPipeline;
+import com.frauddetection.service.ModelSnapshotStore;
+import com.frauddetection.service.PipelineConfig;
+import com.frauddetection.service.ScoreCache;
+import com.frauddetection.service.TransactionGenerator;
+import com.frauddetection.service.TransactionStore;
+import com.frauddetection.service.WekaFraudDetector;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Logger;
+
+// Drives generator -> ingestion pipeline (enrich, score, persist to the store, publish) without
+// JavaFX at a fixed offered load and reports achieved throughput and end-to-end latency, measured
+// from each transaction's scheduled arrival so queueing delay behind a saturated pipeline is
+// counted. Intake blocks by default, so overload shows up as latency; --policy=shed or
+// drop_oldest keeps latency bounded and reports the transactions lost instead.
+//
+//   ./headless.sh --rate=20000 --pattern=poisson --producers=4 --duration=60 --warmup=10 --seed=42
+//   ./headless.sh --rate=50000 --policy=shed --queue=4096
+//   ./headless.sh --rate=20000 --metrics-file=target/metrics.log   (or --metrics=false for a baseline)
+//   ./headless.sh --rate=20000 --model-dir=target/models   (reuse the model saved by an earlier run)
+//   ./headless.sh --rate=20000 --analytics=true   (also feed the streaming sketches and print a summary)
+//   ./cluster.sh 3 --rate=20000 --partition=account   (score on 3 worker JVMs over loopback)
+public class HeadlessRunner {
+    private static final Logger LOGGER = Logger.getLogger(HeadlessRunner.class.getName());
+
+    public static void main(String[] args) throws InterruptedException, IOException {
+        Map<String, String> options = parseOptions(args);
+        double rate = Double.parseDouble(options.getOrDefault("rate", "1000"));
+        TransactionGenerator.ArrivalPattern pattern = TransactionGenerator.ArrivalPattern.valueOf(
+                options.getOrDefault("pattern", "poisson").toUpperCase(Locale.ROOT));
+        int producers = Integer.parseInt(options.getOrDefault("producers", "2"));
+        int durationSeconds = Integer.parseInt(options.getOrDefault("duration", "30"));
+        int warmupSeconds = Integer.parseInt(options.getOrDefault("warmup", "5"));
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        int workers = Integer.parseInt(options.getOrDefault("workers",
+                String.valueOf(Runtime.getRuntime().availableProcessors())));
+        int batchSize = Integer.parseInt(options.getOrDefault("batch", "256"));
+        int queueCapacity = Integer.parseInt(options.getOrDefault("queue", "65536"));
+        IngestionPipeline.Backpressure policy = IngestionPipeline.Backpressure.valueOf(
+                options.getOrDefault("policy", "block").toUpperCase(Locale.ROOT));
+        MetricsRegistry metrics = MetricsRegistry.global();
+        metrics.setEnabled(Boolean.parseBoolean(options.getOrDefault("metrics", "true")));
+        if (options.containsKey("metrics-file")) {
+            metrics.addExporter(new FileMetricsExporter(Paths.get(options.get("metrics-file"))));
+            metrics.startReporting(Duration.ofSeconds(1));
+        }
+
+        LOGGER.info(String.format("Offering %.0f tx/s (%s) from %d producers for %ds after %ds warmup, seed %d",
+                rate, pattern, producers, durationSeconds, warmupSeconds, seed));
+
+        ModelSnapshotStore snapshots = options.containsKey("model-dir")
+                ? new ModelSnapshotStore(Paths.get(options.get("model-dir")))
+                : null;
+        long modelStart = System.nanoTime();
+        WekaFraudDetector detector = new WekaFraudDetector(new FeatureEngine(), new ScoreCache(), snapshots);
+        LOGGER.info(String.format("Model v%d ready in %d ms", detector.getModel().getVersion(),
+                (System.nanoTime() - modelStart) / 1_000_000));
+        ClusterCoordinator cluster = null;
+        BatchScorer scorer = detector;
+        int clusterWorkers = Integer.parseInt(options.getOrDefault("cluster-workers", "0"));
+        if (clusterWorkers > 0) {
+            cluster = new ClusterCoordinator(detector, Integer.parseInt(options.getOrDefault("cluster-port", "7070")),
+                    ClusterCoordinator.PartitionKey.valueOf(
+                            options.getOrDefault("partition", "account").toUpperCase(Locale.ROOT)));
+            if (!cluster.awaitWorkers(clusterWorkers, Duration.ofSeconds(60))) {
+                LOGGER.warning(String.format("Only %d of %d cluster workers joined, starting anyway",
+                        cluster.getWorkerCount(), clusterWorkers));
+            }
+            LOGGER.info("Partitions per worker " + cluster.getPartitionCounts());
+            scorer = cluster;
+        }
+        TransactionStore store = new TransactionStore();
+        metrics.gauge("store.size", store::size);
+        StreamingAnalytics analytics = null;
+        if (Boolean.parseBoolean(options.getOrDefault("analytics", "false"))) {
+            analytics = new StreamingAnalytics();
+            store.addListener(analytics::addAll);
+        }
+        PipelineConfig config = PipelineConfig.defaults()
+                .withQueue(IngestionPipeline.Stage.ENRICH, queueCapacity, policy)
+                .withQueue(IngestionPipeline.Stage.SCORE, queueCapacity, IngestionPipeline.Backpressure.BLOCK)
+                .withQueue(IngestionPipeline.Stage.PERSIST, queueCapacity, IngestionPipeline.Backpressure.BLOCK)
+                .withQueue(IngestionPipeline.Stage.PUBLISH, queueCapacity, IngestionPipeline.Backpressure.BLOCK)
+                .withWorkers(IngestionPipeline.Stage.SCORE, workers)
+                .withBatchSize(batchSize);
+        LatencyHistogram interval = new LatencyHistogram();
+        LatencyHistogram total = new LatencyHistogram();
+        LongAdder completed = new LongAdder();
+
+        TransactionGenerator[] generators = new TransactionGenerator[producers];
+        long startNanos = System.nanoTime();
+        LocalDateTime startTime = LocalDateTime.now();
+        try (IngestionPipeline pipeline = new IngestionPipeline(scorer, store, config)) {
+            for (int i = 0; i < producers; i++) {
+                generators[i] = new TransactionGenerator(pipeline::submit, seed + i, rate / producers, pattern,
+                        "P" + i);
+                generators[i].setClock(startNanos, startTime);
+            }
+            TransactionGenerator clock = generators[0];
+            // Published transactions are already in the store
+            pipeline.addListener((transaction, probability) -> {
+                long latency = System.nanoTime() - clock.scheduledNanoTime(transaction);
+                interval.record(latency);
+                total.record(latency);
+                completed.increment();
+            });
+
+            Thread[] threads = new Thread[producers];
+            for (int i = 0; i < producers; i++) {
+                threads[i] = new Thread(generators[i], "load-producer-" + i);
+                threads[i].setDaemon(true);
+                threads[i].start();
+            }
+
+            long measuredFrom = 0;
+            long generatedFrom = 0;
+            long lastCompleted = 0;
+            long lastGenerated = 0;
+            for (int second = 1; second <= warmupSeconds + durationSeconds; second++) {
+                TimeUnit.NANOSECONDS.sleep(startNanos + TimeUnit.SECONDS.toNanos(second) - System.nanoTime());
+                long done = completed.sum();
+                long generated = generated(generators);
+                boolean warmup = second <= warmupSeconds;
+                System.out.printf("%s %3ds offered %8d/s completed %8d/s queued %6d latency p50 %6.2f ms "
+                                + "p99 %8.2f ms max %8.2f ms%n",
+                        warmup ? "warmup " : "measure", second, generated - lastGenerated, done - lastCompleted,
+                        pipeline.getQueued(), interval.getPercentile(50) / 1e6, interval.getPercentile(99) / 1e6,
+                        interval.getMax() / 1e6);
+                interval.reset();
+                lastCompleted = done;
+                lastGenerated = generated;
+                if (second == warmupSeconds) {
+                    total.reset();
+                    measuredFrom = done;
+                    generatedFrom = generated;
+                }
+            }
+
+            for (TransactionGenerator generator : generators) {
+                generator.stop();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long offered = generated(generators) - generatedFrom;
+            long achieved = completed.sum() - measuredFrom;
+            long queued = pipeline.getQueued();
+            long drainStart = System.nanoTime();
+            boolean drained = pipeline.shutdown(Duration.ofSeconds(30));
+            System.out.printf("%nOffered  %.0f tx/s, achieved %.0f tx/s (%.1f%% of offered)%n",
+                    (double) offered / durationSeconds, (double) achieved / durationSeconds,
+                    offered == 0 ? 0.0 : 100.0 * achieved / offered);
+            System.out.println("Latency  " + total.summary(TimeUnit.MICROSECONDS));
+            System.out.println("Store    " + store.size() + " rows");
+            System.out.printf("Lost     %d to backpressure, %d invalid, %d failed%n", pipeline.getLost(),
+                    pipeline.getInvalid(), pipeline.getFailed());
+            System.out.printf("Drain    %d queued at stop, %s in %d ms%n", queued,
+                    drained ? "drained" : "abandoned " + pipeline.getAbandoned(),
+                    (System.nanoTime() - drainStart) / 1_000_000);
+            if (analytics != null) {
+                StreamingAnalytics.Summary summary = analytics.summarize(startTime.minusHours(1),
+                        LocalDateTime.now().plusHours(1));
+                double[] quantiles = summary.getAmountQuantiles(0.5, 0.99);
+                System.out.printf("Sketches %d rows, %.2f%% fraud, amount p50 %.2f p99 %.2f, ~%d accounts, "
+                                + "top fraud locations %s%n", summary.getCount(), 100 * summary.getFraudRate(),
+                        quantiles[0], quantiles[1], summary.getDistinctAccounts(),
+                        summary.getTopFraudLocations(3));
+            }
+            if (cluster != null) {
+                System.out.printf("Cluster  %d workers at stop, %d lost, %d rows rerouted, %d scored locally%n",
+                        cluster.getWorkerCount(), metrics.counter("cluster.workersLost").get(),
+                        metrics.counter("cluster.rowsRerouted").get(),
+                        metrics.counter("cluster.rowsScoredLocally").get());
+            }
+        } finally {
+            if (cluster != null) {
+                cluster.close();
+            }
+        }
+        metrics.close();
+    }
+
+    private static long generated(TransactionGenerator[] generators) {
+        long sum = 0;
+        for (TransactionGenerator generator : generators) {
+            sum += generator.getGenerated();
+        }
+        return sum;
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int split = arg.indexOf('=');
+            options.put(arg.substring(2, split), arg.substring(split + 1));
+        }
+        return options;
+    }
+}
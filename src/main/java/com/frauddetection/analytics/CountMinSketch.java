@@ -0,0 +1,88 @@
+package com.frauddetection.analytics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+
+// Count-Min sketch of weights per key: depth rows of width counters, each key adding its weight to
+// one counter per row. An estimate is the smallest of the key's counters, so it never
+// undercounts and overcounts by at most e / width of the total weight with probability
+// 1 - e^-depth. Sketches of the same shape merge by adding counters. Not thread-safe.
+public final class CountMinSketch {
+    private final int depth;
+    private final int width;
+    private final double[] counters;
+    private double total;
+
+    public CountMinSketch() {
+        this(4, 1024);
+    }
+
+    // Width must be a power of two
+    public CountMinSketch(int depth, int width) {
+        if (depth < 1 || width < 2 || Integer.bitCount(width) != 1) {
+            throw new IllegalArgumentException("Depth must be positive and width a power of two");
+        }
+        this.depth = depth;
+        this.width = width;
+        this.counters = new double[depth * width];
+    }
+
+    public void add(String key, double weight) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        for (int row = 0; row < depth; row++) {
+            counters[row * width + ((h1 + row * h2) & (width - 1))] += weight;
+        }
+        total += weight;
+    }
+
+    public double estimate(String key) {
+        long hash = Hashing.hash64(key);
+        int h1 = (int) hash;
+        int h2 = (int) (hash >>> 32) | 1;
+        double estimate = Double.POSITIVE_INFINITY;
+        for (int row = 0; row < depth; row++) {
+            estimate = Math.min(estimate, counters[row * width + ((h1 + row * h2) & (width - 1))]);
+        }
+        return estimate;
+    }
+
+    public double getTotal() {
+        return total;
+    }
+
+    public void merge(CountMinSketch other) {
+        if (other.depth != depth || other.width != width) {
+            throw new IllegalArgumentException("Cannot merge Count-Min sketches of different shapes");
+        }
+        for (int i = 0; i < counters.length; i++) {
+            counters[i] += other.counters[i];
+        }
+        total += other.total;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(depth);
+        out.writeInt(width);
+        out.writeDouble(total);
+        for (double counter : counters) {
+            out.writeDouble(counter);
+        }
+    }
+
+    public static CountMinSketch readFrom(DataInputStream in) throws IOException {
+        int depth = in.readInt();
+        int width = in.readInt();
+        if (depth < 1 || depth > 64 || width < 2 || width > 1 << 24 || Integer.bitCount(width) != 1) {
+            throw new IOException("Invalid Count-Min shape " + depth + "x" + width);
+        }
+        CountMinSketch sketch = new CountMinSketch(depth, width);
+        sketch.total = in.readDouble();
+        for (int i = 0; i < sketch.counters.length; i++) {
+            sketch.counters[i] = in.readDouble();
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,22 @@
+package com.frauddetection.analytics;
+
+// 64-bit string hash shared by the sketches. String.hashCode has too few bits for HyperLogLog and
+// is the same on every JVM run by contract, which is also what saved sketches need: FNV-1a over
+// the chars followed by the MurmurHash3 finalizer is stable and mixes well enough for both.
+final class Hashing {
+    private Hashing() {
+    }
+
+    static long hash64(String value) {
+        long h = 0xCBF29CE484222325L;
+        for (int i = 0; i < value.length(); i++) {
+            h = (h ^ value.charAt(i)) * 0x100000001B3L;
+        }
+        h ^= h >>> 33;
+        h *= 0xFF51AFD7ED558CCDL;
+        h ^= h >>> 33;
+        h *= 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return h;
+    }
+}
@@ -0,0 +1,218 @@
+package com.frauddetection.analytics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.concurrent.ThreadLocalRandom;
+
+// KLL quantile sketch. Values enter level 0; when the sketch is over capacity the lowest full level
+// is sorted and every other value, from a random offset, moves up a level with twice the weight.
+// Level capacities shrink by 2/3 going down from the top, so memory stays around 3k values however
+// many are added, and the rank error is about 1.7 / k with high probability. Two sketches merge by
+// concatenating their levels and compacting. Not thread-safe.
+public final class KllSketch {
+    private static final int MIN_WIDTH = 8;
+    private static final double DECAY = 2.0 / 3.0;
+
+    private final int k;
+    private double[][] levels = { new double[MIN_WIDTH] };
+    private int[] sizes = new int[1];
+    // Cached so add() only looks at levels when a compaction is due
+    private int retained;
+    private int[] capacities;
+    private int totalCapacity;
+    private long count;
+    private double min = Double.POSITIVE_INFINITY;
+    private double max = Double.NEGATIVE_INFINITY;
+
+    public KllSketch() {
+        this(200);
+    }
+
+    public KllSketch(int k) {
+        if (k < MIN_WIDTH) {
+            throw new IllegalArgumentException("k must be at least " + MIN_WIDTH);
+        }
+        this.k = k;
+        updateCapacities();
+    }
+
+    public void add(double value) {
+        if (Double.isNaN(value)) {
+            return;
+        }
+        append(0, value);
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        compress();
+    }
+
+    public void merge(KllSketch other) {
+        if (other.count == 0) {
+            return;
+        }
+        for (int level = 0; level < other.sizes.length; level++) {
+            for (int i = 0; i < other.sizes[level]; i++) {
+                append(level, other.levels[level][i]);
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+    }
+
+    public long getCount() {
+        return count;
+    }
+
+    public double getMin() {
+        return count > 0 ? min : Double.NaN;
+    }
+
+    public double getMax() {
+        return count > 0 ? max : Double.NaN;
+    }
+
+    // Value at the given rank fraction in [0, 1]; NaN when empty
+    public double quantile(double fraction) {
+        return quantiles(fraction)[0];
+    }
+
+    // Several quantiles from one sorted view of the sketch
+    public double[] quantiles(double... fractions) {
+        double[] result = new double[fractions.length];
+        if (count == 0) {
+            Arrays.fill(result, Double.NaN);
+            return result;
+        }
+        double[] values = new double[retained];
+        long[] weights = new long[retained];
+        Integer[] order = new Integer[retained];
+        int next = 0;
+        for (int level = 0; level < sizes.length; level++) {
+            for (int i = 0; i < sizes[level]; i++) {
+                values[next] = levels[level][i];
+                weights[next] = 1L << level;
+                order[next] = next;
+                next++;
+            }
+        }
+        Arrays.sort(order, (a, b) -> Double.compare(values[a], values[b]));
+        for (int q = 0; q < fractions.length; q++) {
+            double fraction = Math.max(0.0, Math.min(1.0, fractions[q]));
+            if (fraction == 0.0) {
+                result[q] = min;
+                continue;
+            }
+            if (fraction == 1.0) {
+                result[q] = max;
+                continue;
+            }
+            double target = fraction * count;
+            long cumulative = 0;
+            result[q] = max;
+            for (Integer index : order) {
+                cumulative += weights[index];
+                if (cumulative >= target) {
+                    result[q] = values[index];
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    private void updateCapacities() {
+        capacities = new int[sizes.length];
+        totalCapacity = 0;
+        for (int level = 0; level < sizes.length; level++) {
+            int depth = sizes.length - 1 - level;
+            capacities[level] = Math.max(MIN_WIDTH, (int) Math.ceil(k * Math.pow(DECAY, depth)));
+            totalCapacity += capacities[level];
+        }
+    }
+
+    private void ensureLevel(int level) {
+        while (level >= sizes.length) {
+            levels = Arrays.copyOf(levels, sizes.length + 1);
+            levels[sizes.length] = new double[MIN_WIDTH];
+            sizes = Arrays.copyOf(sizes, sizes.length + 1);
+            updateCapacities();
+        }
+    }
+
+    private void append(int level, double value) {
+        ensureLevel(level);
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+        retained++;
+    }
+
+    private void compress() {
+        while (retained > totalCapacity) {
+            int level = 0;
+            while (level < sizes.length - 1 && sizes[level] < capacities[level]) {
+                level++;
+            }
+            if (sizes[level] < 2) {
+                return;
+            }
+            compact(level);
+        }
+    }
+
+    // Halves one level into the next; an odd value out stays behind so total weight is unchanged
+    private void compact(int level) {
+        double[] values = levels[level];
+        int size = sizes[level];
+        Arrays.sort(values, 0, size);
+        int leftover = size & 1;
+        int offset = leftover + (ThreadLocalRandom.current().nextBoolean() ? 1 : 0);
+        for (int i = offset; i < size; i += 2) {
+            append(level + 1, values[i]);
+        }
+        retained -= size - leftover;
+        sizes[level] = leftover;
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(k);
+        out.writeLong(count);
+        out.writeDouble(min);
+        out.writeDouble(max);
+        out.writeInt(sizes.length);
+        for (int level = 0; level < sizes.length; level++) {
+            out.writeInt(sizes[level]);
+            for (int i = 0; i < sizes[level]; i++) {
+                out.writeDouble(levels[level][i]);
+            }
+        }
+    }
+
+    public static KllSketch readFrom(DataInputStream in) throws IOException {
+        KllSketch sketch = new KllSketch(in.readInt());
+        sketch.count = in.readLong();
+        sketch.min = in.readDouble();
+        sketch.max = in.readDouble();
+        int levelCount = in.readInt();
+        if (levelCount < 1 || levelCount > 64) {
+            throw new IOException("Invalid KLL level count " + levelCount);
+        }
+        for (int level = 0; level < levelCount; level++) {
+            int size = in.readInt();
+            if (size < 0 || size > 1 << 24) {
+                throw new IOException("Invalid KLL level size " + size);
+            }
+            sketch.ensureLevel(level);
+            for (int i = 0; i < size; i++) {
+                sketch.append(level, in.readDouble());
+            }
+        }
+        return sketch;
+    }
+}
@@ -0,0 +1,217 @@
+package com.frauddetection.analytics;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+// Space-Saving heavy hitters over weighted keys, keeping at most capacity counters. A new key
+// arriving when all counters are taken replaces the smallest one and inherits its weight as error,
+// so any key heavier than total / capacity is always present and no weight is underestimated.
+// Merging adds matching counters, charges keys missing from a full side with that side's smallest
+// weight, and keeps the heaviest capacity keys. Counters sit in a min-heap indexed by key, so an
+// add costs O(log capacity) even when every new key displaces the smallest. Not thread-safe.
+public final class SpaceSaving {
+
+    public static final class HeavyHitter {
+        private final String key;
+        private final double weight;
+        private final double error;
+
+        private HeavyHitter(String key, double weight, double error) {
+            this.key = key;
+            this.weight = weight;
+            this.error = error;
+        }
+
+        public String getKey() {
+            return key;
+        }
+
+        // Upper bound on the key's true weight
+        public double getWeight() {
+            return weight;
+        }
+
+        // How much of the weight may belong to keys this one displaced
+        public double getError() {
+            return error;
+        }
+
+        // Lower bound on the key's true weight
+        public double getGuaranteedWeight() {
+            return weight - error;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%s=%.2f (+/-%.2f)", key, weight, error);
+        }
+    }
+
+    private final int capacity;
+    // Heap order on weights; positions maps each key to its heap index
+    private final String[] keys;
+    private final double[] weights;
+    private final double[] errors;
+    private final Map<String, Integer> positions = new HashMap<>();
+    private int size;
+
+    public SpaceSaving() {
+        this(64);
+    }
+
+    public SpaceSaving(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive");
+        }
+        this.capacity = capacity;
+        this.keys = new String[capacity];
+        this.weights = new double[capacity];
+        this.errors = new double[capacity];
+    }
+
+    public void add(String key, double weight) {
+        Integer position = positions.get(key);
+        if (position != null) {
+            weights[position] += weight;
+            siftDown(position);
+            return;
+        }
+        if (size < capacity) {
+            put(size, key, weight, 0);
+            siftUp(size++);
+            return;
+        }
+        // The root is the smallest counter; the new key takes it over
+        positions.remove(keys[0]);
+        double floor = weights[0];
+        put(0, key, floor + weight, floor);
+        siftDown(0);
+    }
+
+    private void put(int index, String key, double weight, double error) {
+        keys[index] = key;
+        weights[index] = weight;
+        errors[index] = error;
+        positions.put(key, index);
+    }
+
+    private void siftUp(int index) {
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            if (weights[parent] <= weights[index]) {
+                return;
+            }
+            swap(index, parent);
+            index = parent;
+        }
+    }
+
+    private void siftDown(int index) {
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= size) {
+                return;
+            }
+            if (child + 1 < size && weights[child + 1] < weights[child]) {
+                child++;
+            }
+            if (weights[index] <= weights[child]) {
+                return;
+            }
+            swap(index, child);
+            index = child;
+        }
+    }
+
+    private void swap(int a, int b) {
+        String key = keys[a];
+        double weight = weights[a];
+        double error = errors[a];
+        keys[a] = keys[b];
+        weights[a] = weights[b];
+        errors[a] = errors[b];
+        keys[b] = key;
+        weights[b] = weight;
+        errors[b] = error;
+        positions.put(keys[a], a);
+        positions.put(keys[b], b);
+    }
+
+    // Heaviest first
+    public List<HeavyHitter> top(int n) {
+        List<HeavyHitter> result = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            result.add(new HeavyHitter(keys[i], weights[i], errors[i]));
+        }
+        result.sort(Comparator.comparingDouble(HeavyHitter::getWeight).reversed()
+                .thenComparing(HeavyHitter::getKey));
+        return result.size() > n ? new ArrayList<>(result.subList(0, n)) : result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void merge(SpaceSaving other) {
+        double ownFloor = floor();
+        double otherFloor = other.floor();
+        Set<String> union = new HashSet<>(positions.keySet());
+        union.addAll(other.positions.keySet());
+        List<HeavyHitter> merged = new ArrayList<>(union.size());
+        for (String key : union) {
+            Integer own = positions.get(key);
+            Integer theirs = other.positions.get(key);
+            double weight = (own != null ? weights[own] : ownFloor)
+                    + (theirs != null ? other.weights[theirs] : otherFloor);
+            double error = (own != null ? errors[own] : ownFloor)
+                    + (theirs != null ? other.errors[theirs] : otherFloor);
+            merged.add(new HeavyHitter(key, weight, error));
+        }
+        merged.sort(Comparator.comparingDouble(HeavyHitter::getWeight).reversed()
+                .thenComparing(HeavyHitter::getKey));
+        positions.clear();
+        size = 0;
+        for (int i = 0; i < Math.min(capacity, merged.size()); i++) {
+            HeavyHitter hitter = merged.get(i);
+            put(size, hitter.key, hitter.weight, hitter.error);
+            siftUp(size++);
+        }
+    }
+
+    // Weight an absent key may have had: zero until every counter is taken
+    private double floor() {
+        return size < capacity ? 0 : weights[0];
+    }
+
+    public void writeTo(DataOutputStream out) throws IOException {
+        out.writeInt(capacity);
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            out.writeUTF(keys[i]);
+            out.writeDouble(weights[i]);
+            out.writeDouble(errors[i]);
+        }
+    }
+
+    public static SpaceSaving readFrom(DataInputStream in) throws IOException {
+        int capacity = in.readInt();
+        int size = in.readInt();
+        if (capacity < 1 || capacity > 1 << 20 || size < 0 || size > capacity) {
+            throw new IOException("Invalid Space-Saving summary " + size + "/" + capacity);
+        }
+        SpaceSaving summary = new SpaceSaving(capacity);
+        for (int i = 0; i < size; i++) {
+            summary.put(summary.size, in.readUTF(), in.readDouble(), in.readDouble());
+            summary.siftUp(summary.size++);
+        }
+        return summary;
+    }
+}
@@ -0,0 +1,494 @@
+package com.frauddetection.analytics;
+
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.zip.CRC32C;
+
+// Approximate operational statistics kept as mergeable sketches per hour and per day, updated as
+// transactions are ingested: amount quantiles overall and for the first types and locations seen in
+// each window (KLL), fraud volume heavy hitters by location, type and account (Space-Saving), fraud
+// volume for any account (Count-Min) and distinct ids and accounts (HyperLogLog). Every window holds
+// a bounded set of sketches, so memory depends on the retention, not on how many transactions or
+// distinct locations arrive; a range query merges the windows it covers. Saved snapshots let the
+// statistics outlive the raw rows.
+public class StreamingAnalytics {
+    // Key of the quantile sketch holding types or locations beyond a window's first few
+    public static final String OTHER_KEY = "#other";
+    private static final int MAGIC = 0x46445341; // "FDSA"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 28;
+    private static final int QUANTILE_K = 100;
+    // Per-window limits on keyed quantile sketches; later keys share the OTHER_KEY sketch
+    private static final int MAX_TYPE_KEYS = 16;
+    private static final int MAX_LOCATION_KEYS = 32;
+    private static final float FRAUD_PROBABILITY = (float) Transaction.FRAUD_THRESHOLD;
+
+    public enum Resolution {
+        HOUR(Duration.ofHours(1), Duration.ofDays(3)),
+        DAY(Duration.ofDays(1), Duration.ofDays(90));
+
+        private final long widthNanos;
+        private final long retentionNanos;
+
+        Resolution(Duration width, Duration retention) {
+            this.widthNanos = width.toNanos();
+            this.retentionNanos = retention.toNanos();
+        }
+
+        public Duration getWidth() {
+            return Duration.ofNanos(widthNanos);
+        }
+    }
+
+    // Sketches for one window. Query results are detached copies, safe to keep and read.
+    public static final class Summary {
+        private final long startNanos;
+        private final long endNanos;
+        private long count;
+        private long fraudCount;
+        private double amountSum;
+        private double fraudAmount;
+        private final KllSketch amounts = new KllSketch(QUANTILE_K);
+        private final Map<String, KllSketch> amountsByType = new HashMap<>();
+        private final Map<String, KllSketch> amountsByLocation = new HashMap<>();
+        private final SpaceSaving fraudByLocation = new SpaceSaving(32);
+        private final SpaceSaving fraudByType = new SpaceSaving(16);
+        private final SpaceSaving fraudByAccount = new SpaceSaving(64);
+        private final CountMinSketch accountFraud = new CountMinSketch(4, 512);
+        private final HyperLogLog ids = new HyperLogLog(12);
+        private final HyperLogLog accounts = new HyperLogLog(12);
+
+        private Summary(long startNanos, long endNanos) {
+            this.startNanos = startNanos;
+            this.endNanos = endNanos;
+        }
+
+        private void add(String id, String type, String location, String account, double amount,
+                float probability) {
+            count++;
+            amountSum += amount;
+            amounts.add(amount);
+            if (type != null) {
+                keyed(amountsByType, type, MAX_TYPE_KEYS).add(amount);
+            }
+            if (location != null) {
+                keyed(amountsByLocation, location, MAX_LOCATION_KEYS).add(amount);
+            }
+            if (id != null) {
+                ids.add(id);
+            }
+            if (account != null) {
+                accounts.add(account);
+            }
+            if (probability >= FRAUD_PROBABILITY) {
+                fraudCount++;
+                fraudAmount += amount;
+                if (location != null) {
+                    fraudByLocation.add(location, amount);
+                }
+                if (type != null) {
+                    fraudByType.add(type, amount);
+                }
+                if (account != null) {
+                    fraudByAccount.add(account, amount);
+                    accountFraud.add(account, amount);
+                }
+            }
+        }
+
+        private void merge(Summary other) {
+            count += other.count;
+            fraudCount += other.fraudCount;
+            amountSum += other.amountSum;
+            fraudAmount += other.fraudAmount;
+            amounts.merge(other.amounts);
+            mergeAll(amountsByType, other.amountsByType);
+            mergeAll(amountsByLocation, other.amountsByLocation);
+            fraudByLocation.merge(other.fraudByLocation);
+            fraudByType.merge(other.fraudByType);
+            fraudByAccount.merge(other.fraudByAccount);
+            accountFraud.merge(other.accountFraud);
+            ids.merge(other.ids);
+            accounts.merge(other.accounts);
+        }
+
+        // The first maxKeys keys of a window get their own sketch and the rest share one, so the
+        // window's size does not grow with the number of distinct locations
+        private static KllSketch keyed(Map<String, KllSketch> sketches, String key, int maxKeys) {
+            KllSketch sketch = sketches.get(key);
+            if (sketch == null) {
+                String slot = sketches.size() < maxKeys ? key : OTHER_KEY;
+                sketch = sketches.computeIfAbsent(slot, ignored -> new KllSketch(QUANTILE_K));
+            }
+            return sketch;
+        }
+
+        // Query results keep every key of the windows they merge
+        private static void mergeAll(Map<String, KllSketch> into, Map<String, KllSketch> from) {
+            for (Map.Entry<String, KllSketch> entry : from.entrySet()) {
+                into.computeIfAbsent(entry.getKey(), ignored -> new KllSketch(QUANTILE_K)).merge(entry.getValue());
+            }
+        }
+
+        public LocalDateTime getStart() {
+            return TransactionBatch.fromEpochNanos(startNanos);
+        }
+
+        public LocalDateTime getEnd() {
+            return TransactionBatch.fromEpochNanos(endNanos);
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        // Transactions scored at or above Transaction.FRAUD_THRESHOLD
+        public long getFraudCount() {
+            return fraudCount;
+        }
+
+        public double getFraudRate() {
+            return count > 0 ? (double) fraudCount / count : 0.0;
+        }
+
+        public double getAmountSum() {
+            return amountSum;
+        }
+
+        public double getFraudAmount() {
+            return fraudAmount;
+        }
+
+        // NaN when the window has no rows
+        public double getAmountQuantile(double fraction) {
+            return amounts.quantile(fraction);
+        }
+
+        public double[] getAmountQuantiles(double... fractions) {
+            return amounts.quantiles(fractions);
+        }
+
+        // NaN for a key without its own sketch; those rows are counted under OTHER_KEY
+        public double getAmountQuantileByType(String type, double fraction) {
+            KllSketch sketch = amountsByType.get(type);
+            return sketch != null ? sketch.quantile(fraction) : Double.NaN;
+        }
+
+        public double getAmountQuantileByLocation(String location, double fraction) {
+            KllSketch sketch = amountsByLocation.get(location);
+            return sketch != null ? sketch.quantile(fraction) : Double.NaN;
+        }
+
+        // Heavy hitters by fraud amount, heaviest first
+        public List<SpaceSaving.HeavyHitter> getTopFraudLocations(int n) {
+            return fraudByLocation.top(n);
+        }
+
+        public List<SpaceSaving.HeavyHitter> getTopFraudTypes(int n) {
+            return fraudByType.top(n);
+        }
+
+        public List<SpaceSaving.HeavyHitter> getTopFraudAccounts(int n) {
+            return fraudByAccount.top(n);
+        }
+
+        // Never below the account's true fraud amount
+        public double getEstimatedFraudAmount(String account) {
+            return accountFraud.estimate(account);
+        }
+
+        public long getDistinctIds() {
+            return ids.estimate();
+        }
+
+        public long getDistinctAccounts() {
+            return accounts.estimate();
+        }
+
+        private void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(count);
+            out.writeLong(fraudCount);
+            out.writeDouble(amountSum);
+            out.writeDouble(fraudAmount);
+            amounts.writeTo(out);
+            writeAll(out, amountsByType);
+            writeAll(out, amountsByLocation);
+            fraudByLocation.writeTo(out);
+            fraudByType.writeTo(out);
+            fraudByAccount.writeTo(out);
+            accountFraud.writeTo(out);
+            ids.writeTo(out);
+            accounts.writeTo(out);
+        }
+
+        private static void writeAll(DataOutputStream out, Map<String, KllSketch> sketches) throws IOException {
+            out.writeInt(sketches.size());
+            for (Map.Entry<String, KllSketch> entry : sketches.entrySet()) {
+                out.writeUTF(entry.getKey());
+                entry.getValue().writeTo(out);
+            }
+        }
+
+        // Reads into a fresh window by merging, so a snapshot of other sketch sizes still loads
+        private static Summary readFrom(DataInputStream in, long startNanos, long endNanos) throws IOException {
+            Summary summary = new Summary(startNanos, endNanos);
+            summary.count = in.readLong();
+            summary.fraudCount = in.readLong();
+            summary.amountSum = in.readDouble();
+            summary.fraudAmount = in.readDouble();
+            summary.amounts.merge(KllSketch.readFrom(in));
+            readAll(in, summary.amountsByType, MAX_TYPE_KEYS);
+            readAll(in, summary.amountsByLocation, MAX_LOCATION_KEYS);
+            summary.fraudByLocation.merge(SpaceSaving.readFrom(in));
+            summary.fraudByType.merge(SpaceSaving.readFrom(in));
+            summary.fraudByAccount.merge(SpaceSaving.readFrom(in));
+            try {
+                summary.accountFraud.merge(CountMinSketch.readFrom(in));
+                summary.ids.merge(HyperLogLog.readFrom(in));
+                summary.accounts.merge(HyperLogLog.readFrom(in));
+            } catch (IllegalArgumentException e) {
+                throw new IOException("Snapshot sketch does not match this build", e);
+            }
+            return summary;
+        }
+
+        private static void readAll(DataInputStream in, Map<String, KllSketch> into, int maxKeys) throws IOException {
+            int size = in.readInt();
+            if (size < 0 || size > 1 << 20) {
+                throw new IOException("Invalid sketch count " + size);
+            }
+            for (int i = 0; i < size; i++) {
+                String key = in.readUTF();
+                keyed(into, key, maxKeys).merge(KllSketch.readFrom(in));
+            }
+        }
+    }
+
+    private final Resolution[] resolutions = Resolution.values();
+    private final List<ConcurrentSkipListMap<Long, Summary>> levels = new ArrayList<>();
+    // Restored rows at or before this were already in the loaded snapshot
+    private volatile long watermarkNanos = Long.MIN_VALUE;
+    private volatile long newestNanos = Long.MIN_VALUE;
+
+    public StreamingAnalytics() {
+        for (int i = 0; i < resolutions.length; i++) {
+            levels.add(new ConcurrentSkipListMap<>());
+        }
+    }
+
+    // Store listener for live transactions
+    public void addAll(List<Transaction> transactions) {
+        Summary[] current = new Summary[resolutions.length];
+        for (Transaction transaction : transactions) {
+            add(current, TransactionBatch.toEpochNanos(transaction.getTimestamp()), transaction.getId(),
+                    transaction.getType(), transaction.getLocation(), transaction.getAccountId(),
+                    transaction.getAmount(), (float) transaction.getFraudProbability());
+        }
+        evictExpired();
+    }
+
+    // Rows replayed at startup; any the loaded snapshot already counted are skipped
+    public void restore(TransactionBatch batch) {
+        long watermark = watermarkNanos;
+        long[] timestamps = batch.getTimestamps();
+        double[] amounts = batch.getAmounts();
+        float[] probabilities = batch.getFraudProbabilities();
+        Summary[] current = new Summary[resolutions.length];
+        for (int row = 0; row < batch.size(); row++) {
+            if (timestamps[row] > watermark) {
+                add(current, timestamps[row], batch.getId(row), batch.getType(row), batch.getLocation(row),
+                        batch.getAccountId(row), amounts[row], probabilities[row]);
+            }
+        }
+        evictExpired();
+    }
+
+    // current holds the window each level last wrote to, so rows arriving in time order skip the lookup
+    private void add(Summary[] current, long timestamp, String id, String type, String location, String account,
+            double amount, float probability) {
+        for (int level = 0; level < resolutions.length; level++) {
+            Summary window = current[level];
+            if (window == null || timestamp < window.startNanos || timestamp >= window.endNanos) {
+                long width = resolutions[level].widthNanos;
+                long index = Math.floorDiv(timestamp, width);
+                window = levels.get(level).computeIfAbsent(index,
+                        ignored -> new Summary(index * width, (index + 1) * width));
+                current[level] = window;
+            }
+            synchronized (window) {
+                window.add(id, type, location, account, amount, probability);
+            }
+        }
+        if (timestamp > newestNanos) {
+            newestNanos = timestamp;
+        }
+    }
+
+    // Statistics for [from, to), rounded out to whole windows: hours while they are retained, days
+    // before that
+    public Summary summarize(LocalDateTime from, LocalDateTime to) {
+        long start = TransactionBatch.toEpochNanos(from);
+        long end = TransactionBatch.toEpochNanos(to);
+        Summary result = new Summary(start, end);
+        long hourWidth = Resolution.HOUR.widthNanos;
+        long dayWidth = Resolution.DAY.widthNanos;
+        long newest = newestNanos;
+        long hoursFrom = newest == Long.MIN_VALUE ? Long.MIN_VALUE
+                : Math.floorDiv(newest - Resolution.HOUR.retentionNanos, hourWidth) * hourWidth;
+        long position = start;
+        while (position < end) {
+            boolean wholeDay = Math.floorMod(position, dayWidth) == 0 && end - position >= dayWidth;
+            Resolution resolution = wholeDay || position < hoursFrom ? Resolution.DAY : Resolution.HOUR;
+            long index = Math.floorDiv(position, resolution.widthNanos);
+            Summary window = levels.get(resolution.ordinal()).get(index);
+            if (window != null) {
+                synchronized (window) {
+                    result.merge(window);
+                }
+            }
+            position = (index + 1) * resolution.widthNanos;
+        }
+        return result;
+    }
+
+    // One summary per non-empty window of the resolution in [from, to), oldest first, e.g. for
+    // fraud rate or percentile trends
+    public List<Summary> series(LocalDateTime from, LocalDateTime to, Resolution resolution) {
+        long width = resolution.widthNanos;
+        long first = Math.floorDiv(TransactionBatch.toEpochNanos(from), width);
+        long last = Math.floorDiv(TransactionBatch.toEpochNanos(to) - 1, width);
+        List<Summary> result = new ArrayList<>();
+        for (Summary window : levels.get(resolution.ordinal()).subMap(first, true, last, true).values()) {
+            Summary copy = new Summary(window.startNanos, window.endNanos);
+            synchronized (window) {
+                copy.merge(window);
+            }
+            result.add(copy);
+        }
+        return result;
+    }
+
+    private void evictExpired() {
+        long newest = newestNanos;
+        if (newest == Long.MIN_VALUE) {
+            return;
+        }
+        for (int level = 0; level < resolutions.length; level++) {
+            Resolution resolution = resolutions[level];
+            long oldest = Math.floorDiv(newest - resolution.retentionNanos, resolution.widthNanos);
+            levels.get(level).headMap(oldest).clear();
+        }
+    }
+
+    public void clear() {
+        for (ConcurrentSkipListMap<Long, Summary> level : levels) {
+            level.clear();
+        }
+        newestNanos = Long.MIN_VALUE;
+        watermarkNanos = Long.MIN_VALUE;
+    }
+
+    // Written under a temporary name and renamed into place, like model snapshots. The header holds
+    // magic, format, the newest timestamp covered, the payload length and a CRC32C of the payload.
+    public synchronized void save(Path file) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeInt(resolutions.length);
+            for (int level = 0; level < resolutions.length; level++) {
+                List<Map.Entry<Long, Summary>> windows = new ArrayList<>(levels.get(level).entrySet());
+                out.writeInt(windows.size());
+                for (Map.Entry<Long, Summary> entry : windows) {
+                    out.writeLong(entry.getKey());
+                    synchronized (entry.getValue()) {
+                        entry.getValue().writeTo(out);
+                    }
+                }
+            }
+        }
+        byte[] payload = bytes.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+        ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+        head.putInt(MAGIC).putInt(FORMAT).putLong(newestNanos).putInt(payload.length).putLong(crc.getValue());
+        head.flip();
+
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory != null) {
+            Files.createDirectories(directory);
+        }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer body = ByteBuffer.wrap(payload);
+            while (head.hasRemaining() || body.hasRemaining()) {
+                channel.write(new ByteBuffer[] { head, body });
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temporary, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    // Rows restored afterwards that are no newer than the snapshot are not counted again
+    public static StreamingAnalytics load(Path file) throws IOException {
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer head = ByteBuffer.wrap(data);
+        if (data.length < HEADER_BYTES || head.getInt() != MAGIC || head.getInt() != FORMAT) {
+            throw new IOException("Unknown analytics snapshot format in " + file);
+        }
+        long newest = head.getLong();
+        int length = head.getInt();
+        long checksum = head.getLong();
+        if (length != data.length - HEADER_BYTES) {
+            throw new IOException("Truncated analytics snapshot " + file);
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(data, HEADER_BYTES, length);
+        if (crc.getValue() != checksum) {
+            throw new IOException("Bad checksum in analytics snapshot " + file);
+        }
+
+        StreamingAnalytics analytics = new StreamingAnalytics();
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(data, HEADER_BYTES, length))) {
+            int levelCount = in.readInt();
+            if (levelCount != analytics.resolutions.length) {
+                throw new IOException("Analytics snapshot has " + levelCount + " resolutions");
+            }
+            for (int level = 0; level < levelCount; level++) {
+                long width = analytics.resolutions[level].widthNanos;
+                int windows = in.readInt();
+                for (int i = 0; i < windows; i++) {
+                    long index = in.readLong();
+                    analytics.levels.get(level).put(index,
+                            Summary.readFrom(in, index * width, (index + 1) * width));
+                }
+            }
+        }
+        analytics.newestNanos = newest;
+        analytics.watermarkNanos = newest;
+        analytics.evictExpired();
+        return analytics;
+    }
+}
@@ -0,0 +1,506 @@
+package com.frauddetection.cluster;
+
+import com.frauddetection.metrics.Counter;
+import com.frauddetection.metrics.Gauge;
+import com.frauddetection.metrics.MetricsRegistry;
+import com.frauddetection.model.Transaction;
+import com.frauddetection.service.BatchScorer;
+import com.frauddetection.service.TrainedModel;
+import com.frauddetection.service.WekaFraudDetector;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Spreads scoring over worker processes connected on a loopback socket. The key space is cut into
+// a fixed number of partitions, each owned by one live worker, and every row goes to the owner of
+// its key's partition; keying by account keeps each account's feature window on one worker. The
+// coordinator's own detector stays the single place that trains: every model it publishes is sent
+// to all workers, and a joining worker gets the current one before any work. A worker that
+// disconnects or misses heartbeats is dropped, its partitions go to the survivors and its
+// unanswered batches are sent again to their new owners. With no workers, rows are scored locally.
+public class ClusterCoordinator implements BatchScorer, AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ClusterCoordinator.class.getName());
+    private static final MetricsRegistry METRICS = MetricsRegistry.global();
+    private static final Counter BATCHES_SENT = METRICS.counter("cluster.batchesSent");
+    private static final Counter ROWS_REROUTED = METRICS.counter("cluster.rowsRerouted");
+    private static final Counter ROWS_LOCAL = METRICS.counter("cluster.rowsScoredLocally");
+    private static final Counter WORKERS_LOST = METRICS.counter("cluster.workersLost");
+
+    static final int PARTITIONS = 256;
+    private static final long HEARTBEAT_MILLIS = 1000;
+    private static final long WORKER_TIMEOUT_NANOS = TimeUnit.SECONDS.toNanos(5);
+    private static final long RESPONSE_TIMEOUT_SECONDS = 30;
+    private static final int MAX_ATTEMPTS = 3;
+
+    public enum PartitionKey {
+        // Account id, or location for rows without one, matching the feature engine's entity key
+        ACCOUNT,
+        LOCATION
+    }
+
+    private final WekaFraudDetector detector;
+    private final PartitionKey partitionKey;
+    private final ServerSocket server;
+    private final Thread acceptor;
+    private final ScheduledExecutorService heartbeat;
+    private final Gauge.Binding workersGauge;
+    private final List<WorkerConnection> workers = new CopyOnWriteArrayList<>();
+    private volatile WorkerConnection[] owners = new WorkerConnection[PARTITIONS];
+    private final AtomicLong batchIds = new AtomicLong();
+    private final AtomicInteger connections = new AtomicInteger();
+    // Held while a worker joins and while a model is broadcast, so each worker gets every model
+    private final Object modelLock = new Object();
+    private byte[] modelBytes;
+    private long modelVersion = -1;
+    private volatile boolean running = true;
+
+    // Port 0 picks a free port; see getPort
+    public ClusterCoordinator(WekaFraudDetector detector, int port, PartitionKey partitionKey) throws IOException {
+        this.detector = detector;
+        this.partitionKey = partitionKey;
+        this.server = new ServerSocket(port, 50, InetAddress.getLoopbackAddress());
+        workersGauge = METRICS.gauge("cluster.workers", workers::size);
+        detector.addModelListener(this::broadcastModel);
+
+        acceptor = new Thread(this::acceptLoop, "cluster-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+        heartbeat = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "cluster-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        heartbeat.scheduleAtFixedRate(this::checkWorkers, HEARTBEAT_MILLIS, HEARTBEAT_MILLIS, TimeUnit.MILLISECONDS);
+        LOGGER.info("Cluster coordinator listening on " + server.getLocalSocketAddress() + ", partitioned by "
+                + partitionKey);
+    }
+
+    public int getPort() {
+        return server.getLocalPort();
+    }
+
+    public int getWorkerCount() {
+        return workers.size();
+    }
+
+    public boolean awaitWorkers(int count, Duration timeout) throws InterruptedException {
+        long deadline = System.nanoTime() + timeout.toNanos();
+        while (workers.size() < count) {
+            if (System.nanoTime() >= deadline) {
+                return false;
+            }
+            TimeUnit.MILLISECONDS.sleep(50);
+        }
+        return true;
+    }
+
+    @Override
+    public double[] predictFraudProbabilities(List<Transaction> transactions) {
+        double[] probabilities = new double[transactions.size()];
+        int[] positions = new int[transactions.size()];
+        for (int i = 0; i < positions.length; i++) {
+            positions[i] = i;
+        }
+        route(transactions, positions, probabilities, 1);
+        return probabilities;
+    }
+
+    // Sends each owner its rows as one batch, scores ownerless rows locally, then waits for the
+    // answers; rows of batches that fail are routed again against the current owners
+    private void route(List<Transaction> transactions, int[] positions, double[] probabilities, int attempt) {
+        WorkerConnection[] table = owners;
+        Map<WorkerConnection, List<Integer>> groups = new HashMap<>();
+        List<Integer> local = new ArrayList<>();
+        for (int position : positions) {
+            WorkerConnection owner = attempt <= MAX_ATTEMPTS ? table[partitionOf(transactions.get(position))] : null;
+            (owner != null && owner.alive ? groups.computeIfAbsent(owner, w -> new ArrayList<>()) : local)
+                    .add(position);
+        }
+
+        List<PendingBatch> sent = new ArrayList<>(groups.size());
+        for (Map.Entry<WorkerConnection, List<Integer>> group : groups.entrySet()) {
+            int[] batchPositions = group.getValue().stream().mapToInt(Integer::intValue).toArray();
+            List<Transaction> rows = new ArrayList<>(batchPositions.length);
+            for (int position : batchPositions) {
+                rows.add(transactions.get(position));
+            }
+            PendingBatch batch = new PendingBatch(batchIds.incrementAndGet(), group.getKey(), batchPositions);
+            sent.add(batch);
+            group.getKey().send(batch, rows);
+        }
+        if (!local.isEmpty()) {
+            scoreLocally(transactions, local.stream().mapToInt(Integer::intValue).toArray(), probabilities);
+        }
+
+        List<Integer> retry = new ArrayList<>();
+        for (PendingBatch batch : sent) {
+            try {
+                float[] scores = batch.get(RESPONSE_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+                for (int i = 0; i < scores.length; i++) {
+                    probabilities[batch.positions[i]] = scores[i];
+                }
+            } catch (ExecutionException | TimeoutException e) {
+                batch.worker.pending.remove(batch.id);
+                LOGGER.log(Level.FINE, "Batch " + batch.id + " failed on " + batch.worker.id, e);
+                for (int position : batch.positions) {
+                    retry.add(position);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                for (int position : batch.positions) {
+                    retry.add(position);
+                }
+                attempt = MAX_ATTEMPTS;
+            }
+        }
+        if (!retry.isEmpty()) {
+            ROWS_REROUTED.add(retry.size());
+            route(transactions, retry.stream().mapToInt(Integer::intValue).toArray(), probabilities, attempt + 1);
+        }
+    }
+
+    private void scoreLocally(List<Transaction> transactions, int[] positions, double[] probabilities) {
+        List<Transaction> rows = new ArrayList<>(positions.length);
+        for (int position : positions) {
+            rows.add(transactions.get(position));
+        }
+        double[] scores = detector.predictFraudProbabilities(rows);
+        for (int i = 0; i < positions.length; i++) {
+            probabilities[positions[i]] = scores[i];
+        }
+        ROWS_LOCAL.add(positions.length);
+    }
+
+    int partitionOf(Transaction transaction) {
+        String key = partitionKey == PartitionKey.ACCOUNT && transaction.getAccountId() != null
+                ? transaction.getAccountId() : transaction.getLocation();
+        if (key == null) {
+            return 0;
+        }
+        int h = key.hashCode() * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & (PARTITIONS - 1);
+    }
+
+    private void acceptLoop() {
+        while (running) {
+            try {
+                Socket socket = server.accept();
+                Thread reader = new Thread(() -> serve(socket), "cluster-worker-" + connections.incrementAndGet());
+                reader.setDaemon(true);
+                reader.start();
+            } catch (IOException e) {
+                if (running) {
+                    LOGGER.log(Level.WARNING, "Error accepting cluster worker", e);
+                }
+            }
+        }
+    }
+
+    // Runs on the connection's reader thread for as long as the worker is connected
+    private void serve(Socket socket) {
+        WorkerConnection worker = null;
+        try {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            ClusterProtocol.Frame hello = ClusterProtocol.readFrame(in);
+            if (hello.type != ClusterProtocol.HELLO) {
+                throw new IOException("Expected HELLO but got frame type " + hello.type);
+            }
+            worker = new WorkerConnection(hello.input().readUTF(), socket, in);
+            // The model goes out before the worker can own a partition, so it never scores without one;
+            // a model published meanwhile waits for the worker to be listed and then reaches it too
+            synchronized (modelLock) {
+                worker.sendModel(currentModelBytes());
+                workers.add(worker);
+            }
+            assignPartitions(worker);
+            LOGGER.info(String.format("Worker %s joined from %s, %d workers", worker.id,
+                    socket.getRemoteSocketAddress(), workers.size()));
+            worker.readLoop();
+        } catch (IOException e) {
+            if (worker == null) {
+                LOGGER.log(Level.WARNING, "Error during cluster worker handshake", e);
+                closeQuietly(socket);
+            } else {
+                lost(worker, e.getMessage());
+            }
+        }
+    }
+
+    private synchronized byte[] currentModelBytes() throws IOException {
+        TrainedModel current = detector.getModel();
+        if (current != null && current.getVersion() != modelVersion) {
+            modelBytes = ClusterProtocol.encodeModel(current, detector.getHeader());
+            modelVersion = current.getVersion();
+        }
+        return modelBytes;
+    }
+
+    private void broadcastModel(TrainedModel model) {
+        synchronized (modelLock) {
+            byte[] bytes;
+            try {
+                bytes = currentModelBytes();
+            } catch (IOException e) {
+                LOGGER.log(Level.WARNING, "Error encoding model v" + model.getVersion() + " for workers", e);
+                return;
+            }
+            for (WorkerConnection worker : workers) {
+                try {
+                    worker.sendModel(bytes);
+                } catch (IOException e) {
+                    lost(worker, e.getMessage());
+                }
+            }
+            LOGGER.info(String.format("Sent model v%d (%d bytes) to %d workers", model.getVersion(), bytes.length,
+                    workers.size()));
+        }
+    }
+
+    private void checkWorkers() {
+        long now = System.nanoTime();
+        for (WorkerConnection worker : workers) {
+            if (now - worker.lastSeen > WORKER_TIMEOUT_NANOS) {
+                lost(worker, "no heartbeat for " + TimeUnit.NANOSECONDS.toMillis(now - worker.lastSeen) + " ms");
+                continue;
+            }
+            try {
+                worker.sendControl(ClusterProtocol.PING);
+            } catch (IOException e) {
+                lost(worker, e.getMessage());
+            }
+        }
+    }
+
+    private void lost(WorkerConnection worker, String reason) {
+        if (!worker.markDead()) {
+            return;
+        }
+        workers.remove(worker);
+        closeQuietly(worker.socket);
+        assignPartitions(null);
+        WORKERS_LOST.increment();
+        if (running) {
+            LOGGER.warning(String.format("Worker %s lost (%s), %d workers left", worker.id, reason, workers.size()));
+        }
+        IOException failure = new IOException("Worker " + worker.id + " lost");
+        for (PendingBatch batch : worker.pending.values()) {
+            batch.completeExceptionally(failure);
+        }
+        worker.pending.clear();
+    }
+
+    // A joining worker takes an even share of partitions from the most loaded owners; a lost
+    // worker's partitions are dealt out to the least loaded survivors. Other partitions stay put,
+    // so feature windows move only where they have to.
+    private synchronized void assignPartitions(WorkerConnection joined) {
+        WorkerConnection[] next = owners.clone();
+        List<WorkerConnection> live = new ArrayList<>(workers);
+        if (live.isEmpty()) {
+            owners = new WorkerConnection[PARTITIONS];
+            return;
+        }
+        Map<WorkerConnection, Integer> load = new HashMap<>();
+        for (WorkerConnection worker : live) {
+            load.put(worker, 0);
+        }
+        for (int p = 0; p < PARTITIONS; p++) {
+            if (next[p] != null && !load.containsKey(next[p])) {
+                next[p] = null;
+            }
+            if (next[p] != null) {
+                load.merge(next[p], 1, Integer::sum);
+            }
+        }
+        for (int p = 0; p < PARTITIONS; p++) {
+            if (next[p] == null) {
+                WorkerConnection target = leastLoaded(load);
+                next[p] = target;
+                load.merge(target, 1, Integer::sum);
+            }
+        }
+        if (joined != null && load.containsKey(joined)) {
+            int share = PARTITIONS / live.size();
+            for (int p = 0; p < PARTITIONS && load.get(joined) < share; p++) {
+                WorkerConnection owner = next[p];
+                if (owner != joined && load.get(owner) > share) {
+                    next[p] = joined;
+                    load.merge(owner, -1, Integer::sum);
+                    load.merge(joined, 1, Integer::sum);
+                }
+            }
+        }
+        owners = next;
+    }
+
+    private static WorkerConnection leastLoaded(Map<WorkerConnection, Integer> load) {
+        WorkerConnection least = null;
+        for (Map.Entry<WorkerConnection, Integer> entry : load.entrySet()) {
+            if (least == null || entry.getValue() < load.get(least)) {
+                least = entry.getKey();
+            }
+        }
+        return least;
+    }
+
+    // Partitions per worker id, for logging and tests
+    public Map<String, Integer> getPartitionCounts() {
+        Map<String, Integer> counts = new HashMap<>();
+        for (WorkerConnection owner : owners) {
+            if (owner != null) {
+                counts.merge(owner.id, 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        heartbeat.shutdownNow();
+        closeQuietly(server);
+        for (WorkerConnection worker : workers) {
+            lost(worker, "coordinator closed");
+        }
+        workersGauge.close();
+    }
+
+    private static void closeQuietly(AutoCloseable closeable) {
+        try {
+            closeable.close();
+        } catch (Exception e) {
+            LOGGER.log(Level.FINE, "Error closing cluster socket", e);
+        }
+    }
+
+    private static final class PendingBatch extends CompletableFuture<float[]> {
+        final long id;
+        final WorkerConnection worker;
+        final int[] positions;
+
+        PendingBatch(long id, WorkerConnection worker, int[] positions) {
+            this.id = id;
+            this.worker = worker;
+            this.positions = positions;
+        }
+    }
+
+    private final class WorkerConnection {
+        final String id;
+        final Socket socket;
+        final DataInputStream in;
+        final DataOutputStream out;
+        final ClusterProtocol.Encoder encoder = new ClusterProtocol.Encoder();
+        final ConcurrentHashMap<Long, PendingBatch> pending = new ConcurrentHashMap<>();
+        volatile long lastSeen = System.nanoTime();
+        volatile boolean alive = true;
+
+        WorkerConnection(String id, Socket socket, DataInputStream in) throws IOException {
+            this.id = id;
+            this.socket = socket;
+            this.in = in;
+            this.out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+        }
+
+        synchronized boolean markDead() {
+            boolean wasAlive = alive;
+            alive = false;
+            return wasAlive;
+        }
+
+        // A failed send fails the batch at once, so route() moves its rows without waiting
+        void send(PendingBatch batch, List<Transaction> rows) {
+            pending.put(batch.id, batch);
+            try {
+                synchronized (this) {
+                    encoder.writeScore(out, batch.id, rows);
+                    out.flush();
+                }
+                BATCHES_SENT.increment();
+            } catch (IOException e) {
+                lost(this, e.getMessage());
+                batch.completeExceptionally(e);
+            }
+            if (!alive) {
+                // Lost between the put and now; lost() may have missed this batch
+                batch.completeExceptionally(new IOException("Worker " + id + " lost"));
+            }
+        }
+
+        synchronized void sendModel(byte[] bytes) throws IOException {
+            ClusterProtocol.writeFrame(out, ClusterProtocol.MODEL, bytes, bytes.length);
+            out.flush();
+        }
+
+        synchronized void sendControl(byte type) throws IOException {
+            ClusterProtocol.writeFrame(out, type, new byte[0], 0);
+            out.flush();
+        }
+
+        void readLoop() throws IOException {
+            try {
+                while (alive) {
+                    ClusterProtocol.Frame frame = ClusterProtocol.readFrame(in);
+                    lastSeen = System.nanoTime();
+                    switch (frame.type) {
+                        case ClusterProtocol.SCORES:
+                            completeScores(frame.input());
+                            break;
+                        case ClusterProtocol.FAILED:
+                            DataInputStream input = frame.input();
+                            long batchId = input.readLong();
+                            PendingBatch failed = pending.remove(batchId);
+                            if (failed != null) {
+                                failed.completeExceptionally(new IOException(input.readUTF()));
+                            }
+                            break;
+                        case ClusterProtocol.PONG:
+                            break;
+                        default:
+                            throw new IOException("Unexpected frame type " + frame.type);
+                    }
+                }
+            } catch (SocketException e) {
+                if (alive) {
+                    throw e;
+                }
+            }
+        }
+
+        private void completeScores(DataInputStream input) throws IOException {
+            long batchId = input.readLong();
+            int count = ClusterProtocol.readVarInt(input);
+            float[] scores = new float[count];
+            for (int i = 0; i < count; i++) {
+                scores[i] = input.readFloat();
+            }
+            PendingBatch batch = pending.remove(batchId);
+            if (batch != null) {
+                batch.complete(scores);
+            }
+        }
+    }
+}
@@ -0,0 +1,270 @@
+package com.frauddetection.cluster;
+
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import com.frauddetection.service.CompiledForest;
+import com.frauddetection.service.TrainedModel;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Instances;
+
+// Binary wire format between the coordinator and its scoring workers. Every frame is a length, a
+// type byte and a payload. Repeated strings (type, location, account) are declared once per
+// connection with a DEFINE frame and then sent as variable-length codes, the same way the
+// transaction journal declares its dictionary entries; ids stay inline since every one is new.
+// Each direction of a connection has its own Encoder or Decoder holding that code table.
+final class ClusterProtocol {
+    static final byte HELLO = 1;
+    static final byte MODEL = 2;
+    static final byte DEFINE = 3;
+    static final byte SCORE = 4;
+    static final byte SCORES = 5;
+    static final byte FAILED = 6;
+    static final byte PING = 7;
+    static final byte PONG = 8;
+
+    // Large enough for a serialized forest of a few hundred deep trees
+    static final int MAX_FRAME_BYTES = 256 << 20;
+    // Past this many strings a field is sent inline instead of growing the table further
+    private static final int MAX_CODES = 1 << 16;
+    private static final int FIELDS = 3;
+    private static final long NO_TIMESTAMP = Long.MIN_VALUE;
+
+    private ClusterProtocol() {
+    }
+
+    static void writeFrame(DataOutputStream out, byte type, byte[] payload, int length) throws IOException {
+        out.writeInt(length + 1);
+        out.writeByte(type);
+        out.write(payload, 0, length);
+    }
+
+    // Returns the frame type and leaves the payload, without its type byte, in the returned buffer
+    static Frame readFrame(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 1 || length > MAX_FRAME_BYTES) {
+            throw new IOException("Invalid frame length " + length);
+        }
+        byte type = in.readByte();
+        byte[] payload = new byte[length - 1];
+        in.readFully(payload);
+        return new Frame(type, payload);
+    }
+
+    static final class Frame {
+        final byte type;
+        final byte[] payload;
+
+        Frame(byte type, byte[] payload) {
+            this.type = type;
+            this.payload = payload;
+        }
+
+        DataInputStream input() {
+            return new DataInputStream(new ByteArrayInputStream(payload));
+        }
+    }
+
+    // The forest, its compiled form and the schema it was trained on, so a worker can reject a
+    // model that does not match its own attributes
+    static byte[] encodeModel(TrainedModel model, Instances header) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(model.getVersion());
+            out.writeLong(model.getTrainedAt().toEpochMilli());
+            out.writeInt(model.getTrainingSize());
+            try (ObjectOutputStream objects = new ObjectOutputStream(out)) {
+                objects.writeObject(new Instances(header, 0));
+                objects.writeObject(model.getClassifier());
+                objects.writeObject(model.getCompiledForest());
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    static final class ModelMessage {
+        final TrainedModel model;
+        final Instances header;
+
+        ModelMessage(TrainedModel model, Instances header) {
+            this.model = model;
+            this.header = header;
+        }
+    }
+
+    static ModelMessage decodeModel(DataInputStream in) throws IOException {
+        long version = in.readLong();
+        Instant trainedAt = Instant.ofEpochMilli(in.readLong());
+        int trainingSize = in.readInt();
+        try (ObjectInputStream objects = new ObjectInputStream(in)) {
+            Instances header = (Instances) objects.readObject();
+            RandomForest classifier = (RandomForest) objects.readObject();
+            CompiledForest compiled = (CompiledForest) objects.readObject();
+            return new ModelMessage(new TrainedModel(classifier, compiled, version, trainingSize, trainedAt), header);
+        } catch (ClassNotFoundException | ClassCastException e) {
+            throw new IOException("Unreadable model frame", e);
+        }
+    }
+
+    static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+
+    static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    // Sending side of one connection. Not thread-safe; callers serialize frames on the connection.
+    static final class Encoder {
+        private final List<Map<String, Integer>> codes = new ArrayList<>();
+        private final ByteArrayOutputStream defines = new ByteArrayOutputStream();
+        private final DataOutputStream defineOut = new DataOutputStream(defines);
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream(1 << 14);
+        private final DataOutputStream bodyOut = new DataOutputStream(body);
+
+        Encoder() {
+            for (int field = 0; field < FIELDS; field++) {
+                codes.add(new HashMap<>());
+            }
+        }
+
+        // SCORE frame: batch id, row count, then id, timestamp, amount and the three coded strings.
+        // Any strings seen for the first time go out in a DEFINE frame just before it.
+        void writeScore(DataOutputStream out, long batchId, List<Transaction> rows) throws IOException {
+            body.reset();
+            defines.reset();
+            bodyOut.writeLong(batchId);
+            writeVarInt(bodyOut, rows.size());
+            for (Transaction t : rows) {
+                bodyOut.writeUTF(t.getId() != null ? t.getId() : "");
+                bodyOut.writeLong(t.getTimestamp() != null
+                        ? TransactionBatch.toEpochNanos(t.getTimestamp()) : NO_TIMESTAMP);
+                bodyOut.writeDouble(t.getAmount());
+                writeString(0, t.getType());
+                writeString(1, t.getLocation());
+                writeString(2, t.getAccountId());
+            }
+            bodyOut.flush();
+            defineOut.flush();
+            if (defines.size() > 0) {
+                writeFrame(out, DEFINE, defines.toByteArray(), defines.size());
+            }
+            writeFrame(out, SCORE, body.toByteArray(), body.size());
+        }
+
+        // 0 is null, 1 an inline string that follows, n + 2 the string with code n
+        private void writeString(int field, String value) throws IOException {
+            if (value == null) {
+                writeVarInt(bodyOut, 0);
+                return;
+            }
+            Map<String, Integer> table = codes.get(field);
+            Integer code = table.get(value);
+            if (code == null && table.size() < MAX_CODES) {
+                code = table.size();
+                table.put(value, code);
+                defineOut.writeByte(field);
+                writeVarInt(defineOut, code);
+                defineOut.writeUTF(value);
+            }
+            if (code == null) {
+                writeVarInt(bodyOut, 1);
+                bodyOut.writeUTF(value);
+            } else {
+                writeVarInt(bodyOut, code + 2);
+            }
+        }
+    }
+
+    // Receiving side of one connection
+    static final class Decoder {
+        private final List<List<String>> values = new ArrayList<>();
+
+        Decoder() {
+            for (int field = 0; field < FIELDS; field++) {
+                values.add(new ArrayList<>());
+            }
+        }
+
+        void readDefines(DataInputStream in) throws IOException {
+            while (in.available() > 0) {
+                int field = in.readUnsignedByte();
+                int code = readVarInt(in);
+                String value = in.readUTF();
+                if (field >= FIELDS || code != values.get(field).size()) {
+                    throw new IOException("Out of order definition " + field + ":" + code);
+                }
+                values.get(field).add(value);
+            }
+        }
+
+        List<Transaction> readScore(DataInputStream in, long[] batchId) throws IOException {
+            batchId[0] = in.readLong();
+            int count = readVarInt(in);
+            List<Transaction> rows = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                String id = in.readUTF();
+                long timestamp = in.readLong();
+                double amount = in.readDouble();
+                String type = readString(in, 0);
+                String location = readString(in, 1);
+                String account = readString(in, 2);
+                rows.add(new Transaction(id, amount, type, 0.0, location,
+                        timestamp != NO_TIMESTAMP ? TransactionBatch.fromEpochNanos(timestamp) : null, account));
+            }
+            return rows;
+        }
+
+        private String readString(DataInputStream in, int field) throws IOException {
+            int code = readVarInt(in);
+            if (code == 0) {
+                return null;
+            }
+            if (code == 1) {
+                return in.readUTF();
+            }
+            List<String> table = values.get(field);
+            if (code - 2 >= table.size()) {
+                throw new EOFException("Undefined code " + (code - 2) + " for field " + field);
+            }
+            return table.get(code - 2);
+        }
+    }
+
+    // SCORES frame: batch id, row count, one float probability per row
+    static byte[] encodeScores(long batchId, double[] probabilities) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(12 + probabilities.length * 4);
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeLong(batchId);
+            writeVarInt(out, probabilities.length);
+            for (double probability : probabilities) {
+                out.writeFloat((float) probability);
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,162 @@
+package com.frauddetection.cluster;
+
+import com.frauddetection.model.Transaction;
+import com.frauddetection.service.FeatureEngine;
+import com.frauddetection.service.ScoreCache;
+import com.frauddetection.service.TrainingConfig;
+import com.frauddetection.service.WekaFraudDetector;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.ConnectException;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// A scoring process for ClusterCoordinator. It connects to the coordinator, installs every model
+// the coordinator sends and scores the batches for the partitions it owns with its own detector,
+// so feature windows for those keys live here. Batches are scored one at a time in arrival order,
+// which keeps each account's history in event order.
+//
+//   java -cp ... com.frauddetection.cluster.ScoringWorker --coordinator=127.0.0.1:7070 --id=worker-1
+public class ScoringWorker {
+    private static final Logger LOGGER = Logger.getLogger(ScoringWorker.class.getName());
+    private static final long CONNECT_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(60);
+
+    private final String id;
+    private final WekaFraudDetector detector;
+    private final ClusterProtocol.Decoder decoder = new ClusterProtocol.Decoder();
+    private long clusterModelVersion = -1;
+    private long scored;
+
+    public ScoringWorker(String id) {
+        this.id = id;
+        // The local model only exists until the coordinator's arrives, so keep it cheap to build
+        this.detector = new WekaFraudDetector(new FeatureEngine(), new ScoreCache(), null,
+                TrainingConfig.defaults().withTrees(1));
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        Map<String, String> options = parseOptions(args);
+        String[] coordinator = options.getOrDefault("coordinator", "127.0.0.1:7070").split(":");
+        String id = options.getOrDefault("id", "worker-" + ProcessHandle.current().pid());
+        new ScoringWorker(id).run(coordinator[0], Integer.parseInt(coordinator[1]));
+    }
+
+    // Returns when the coordinator closes the connection
+    public void run(String host, int port) throws IOException, InterruptedException {
+        try (Socket socket = connect(host, port)) {
+            socket.setTcpNoDelay(true);
+            DataInputStream in = new DataInputStream(new BufferedInputStream(socket.getInputStream(), 1 << 16));
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream(), 1 << 16));
+            ByteArrayOutputStream hello = new ByteArrayOutputStream();
+            new DataOutputStream(hello).writeUTF(id);
+            ClusterProtocol.writeFrame(out, ClusterProtocol.HELLO, hello.toByteArray(), hello.size());
+            out.flush();
+            LOGGER.info("Worker " + id + " connected to " + socket.getRemoteSocketAddress());
+            serve(in, out);
+        } catch (IOException e) {
+            LOGGER.info("Worker " + id + " disconnected after " + scored + " rows: " + e);
+        } finally {
+            detector.close();
+        }
+    }
+
+    private void serve(DataInputStream in, DataOutputStream out) throws IOException {
+        long[] batchId = new long[1];
+        while (true) {
+            ClusterProtocol.Frame frame = ClusterProtocol.readFrame(in);
+            switch (frame.type) {
+                case ClusterProtocol.MODEL:
+                    installModel(frame.input());
+                    break;
+                case ClusterProtocol.DEFINE:
+                    decoder.readDefines(frame.input());
+                    break;
+                case ClusterProtocol.SCORE:
+                    List<Transaction> rows = decoder.readScore(frame.input(), batchId);
+                    score(out, batchId[0], rows);
+                    break;
+                case ClusterProtocol.PING:
+                    ClusterProtocol.writeFrame(out, ClusterProtocol.PONG, new byte[0], 0);
+                    out.flush();
+                    break;
+                default:
+                    throw new IOException("Unexpected frame type " + frame.type);
+            }
+        }
+    }
+
+    // A model for another schema cannot be used at all, so it ends the connection rather than
+    // leaving this worker scoring with a stale model
+    private void installModel(DataInputStream input) throws IOException {
+        ClusterProtocol.ModelMessage message = ClusterProtocol.decodeModel(input);
+        long version = message.model.getVersion();
+        if (version <= clusterModelVersion) {
+            return;
+        }
+        try {
+            detector.installModel(message.model, message.header);
+        } catch (IllegalArgumentException e) {
+            throw new IOException(e.getMessage(), e);
+        }
+        clusterModelVersion = version;
+        LOGGER.info(String.format("Worker %s installed model v%d trained on %d instances", id, version,
+                message.model.getTrainingSize()));
+    }
+
+    private void score(DataOutputStream out, long batchId, List<Transaction> rows) throws IOException {
+        try {
+            double[] probabilities = detector.predictFraudProbabilities(rows);
+            byte[] payload = ClusterProtocol.encodeScores(batchId, probabilities);
+            ClusterProtocol.writeFrame(out, ClusterProtocol.SCORES, payload, payload.length);
+            scored += rows.size();
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error scoring batch " + batchId, e);
+            ByteArrayOutputStream failure = new ByteArrayOutputStream();
+            DataOutputStream failureOut = new DataOutputStream(failure);
+            failureOut.writeLong(batchId);
+            failureOut.writeUTF(String.valueOf(e.getMessage()));
+            ClusterProtocol.writeFrame(out, ClusterProtocol.FAILED, failure.toByteArray(), failure.size());
+        }
+        out.flush();
+    }
+
+    // Workers may be started before the coordinator, so refused connections are retried for a while
+    private static Socket connect(String host, int port) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT_MILLIS;
+        while (true) {
+            Socket socket = new Socket();
+            try {
+                socket.connect(new InetSocketAddress(host, port), 1000);
+                return socket;
+            } catch (ConnectException e) {
+                socket.close();
+                if (System.currentTimeMillis() >= deadline) {
+                    throw e;
+                }
+                TimeUnit.MILLISECONDS.sleep(200);
+            }
+        }
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            if (!arg.startsWith("--") || !arg.contains("=")) {
+                throw new IllegalArgumentException("Expected --name=value but got " + arg);
+            }
+            int split = arg.indexOf('=');
+            options.put(arg.substring(2, split), arg.substring(split + 1));
+        }
+        return options;
+    }
+}
@@ -0,0 +1,51 @@
+package com.frauddetection.metrics;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+import java.util.Map;
+
+// Appends one line per metric per report, e.g.
+//   2024-01-01T10:00:00Z histogram detector.predict count=1200 mean=812.4 p50=790 ... max=5120
+public class FileMetricsExporter implements MetricsExporter {
+    private final BufferedWriter writer;
+
+    public FileMetricsExporter(Path file) throws IOException {
+        if (file.getParent() != null) {
+            Files.createDirectories(file.getParent());
+        }
+        this.writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8,
+                StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    @Override
+    public synchronized void export(MetricsSnapshot snapshot) throws IOException {
+        String time = snapshot.getTime().toString();
+        for (Map.Entry<String, Long> counter : snapshot.getCounters().entrySet()) {
+            writer.write(time + " counter " + counter.getKey() + " " + counter.getValue());
+            writer.newLine();
+        }
+        for (Map.Entry<String, Long> gauge : snapshot.getGauges().entrySet()) {
+            writer.write(time + " gauge " + gauge.getKey() + " " + gauge.getValue());
+            writer.newLine();
+        }
+        for (Map.Entry<String, MetricsSnapshot.HistogramSummary> entry : snapshot.getHistograms().entrySet()) {
+            MetricsSnapshot.HistogramSummary histogram = entry.getValue();
+            writer.write(String.format(Locale.ROOT,
+                    "%s histogram %s count=%d mean=%.1f p50=%d p90=%d p99=%d p99.9=%d max=%d", time, entry.getKey(),
+                    histogram.getCount(), histogram.getMean(), histogram.getP50(), histogram.getP90(),
+                    histogram.getP99(), histogram.getP999(), histogram.getMax()));
+            writer.newLine();
+        }
+        writer.flush();
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        writer.close();
+    }
+}
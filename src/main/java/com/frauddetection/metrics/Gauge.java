@@ -0,0 +1,47 @@
+package com.frauddetection.metrics;
+
+import java.util.function.LongSupplier;
+
+// Point-in-time value: either set explicitly or read from a supplier when a snapshot is taken
+public final class Gauge {
+    private volatile long value;
+    private volatile LongSupplier supplier;
+
+    // Owned by whoever bound the supplier and closed with it, so a gauge never keeps a closed
+    // instance reachable or reports it. Closing a binding a later one replaced changes nothing.
+    public static final class Binding implements AutoCloseable {
+        private final Gauge gauge;
+        private final LongSupplier supplier;
+
+        private Binding(Gauge gauge, LongSupplier supplier) {
+            this.gauge = gauge;
+            this.supplier = supplier;
+        }
+
+        @Override
+        public void close() {
+            gauge.unbind(supplier);
+        }
+    }
+
+    public void set(long value) {
+        this.value = value;
+    }
+
+    public synchronized Binding bind(LongSupplier supplier) {
+        this.supplier = supplier;
+        return new Binding(this, supplier);
+    }
+
+    private synchronized void unbind(LongSupplier bound) {
+        if (supplier == bound) {
+            supplier = null;
+            value = 0;
+        }
+    }
+
+    public long get() {
+        LongSupplier current = supplier;
+        return current != null ? current.getAsLong() : value;
+    }
+}
@@ -0,0 +1,110 @@
+package com.frauddetection.metrics;
+
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Publishes the latest snapshot as read-only attributes of one MBean, so jconsole or any JMX
+// client can watch the pipeline. Histograms appear as <name>.count, <name>.p99 and so on.
+public class JmxMetricsExporter implements MetricsExporter, DynamicMBean {
+    public static final String DEFAULT_NAME = "com.frauddetection:type=Metrics";
+
+    private final ObjectName objectName;
+    private volatile Map<String, Object> attributes = new LinkedHashMap<>();
+
+    public JmxMetricsExporter() throws JMException {
+        this(DEFAULT_NAME);
+    }
+
+    public JmxMetricsExporter(String name) throws JMException {
+        this.objectName = new ObjectName(name);
+        MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+        if (server.isRegistered(objectName)) {
+            server.unregisterMBean(objectName);
+        }
+        server.registerMBean(this, objectName);
+    }
+
+    @Override
+    public void export(MetricsSnapshot snapshot) {
+        Map<String, Object> values = new LinkedHashMap<>();
+        values.putAll(snapshot.getCounters());
+        values.putAll(snapshot.getGauges());
+        snapshot.getHistograms().forEach((name, histogram) -> {
+            values.put(name + ".count", histogram.getCount());
+            values.put(name + ".mean", histogram.getMean());
+            values.put(name + ".p50", histogram.getP50());
+            values.put(name + ".p90", histogram.getP90());
+            values.put(name + ".p99", histogram.getP99());
+            values.put(name + ".p999", histogram.getP999());
+            values.put(name + ".max", histogram.getMax());
+        });
+        attributes = values;
+    }
+
+    @Override
+    public Object getAttribute(String attribute) throws AttributeNotFoundException {
+        Object value = attributes.get(attribute);
+        if (value == null) {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    @Override
+    public AttributeList getAttributes(String[] names) {
+        Map<String, Object> current = attributes;
+        AttributeList list = new AttributeList();
+        for (String name : names) {
+            Object value = current.get(name);
+            if (value != null) {
+                list.add(new Attribute(name, value));
+            }
+        }
+        return list;
+    }
+
+    @Override
+    public void setAttribute(Attribute attribute) throws AttributeNotFoundException {
+        throw new AttributeNotFoundException("Metrics are read-only");
+    }
+
+    @Override
+    public AttributeList setAttributes(AttributeList attributes) {
+        return new AttributeList();
+    }
+
+    @Override
+    public Object invoke(String actionName, Object[] params, String[] signature) {
+        throw new UnsupportedOperationException("No operations on metrics");
+    }
+
+    @Override
+    public MBeanInfo getMBeanInfo() {
+        List<MBeanAttributeInfo> info = new ArrayList<>();
+        attributes.forEach((name, value) -> info.add(new MBeanAttributeInfo(name, value.getClass().getName(),
+                name, true, false, false)));
+        return new MBeanInfo(getClass().getName(), "Fraud detection pipeline metrics",
+                info.toArray(new MBeanAttributeInfo[0]), null, null, null);
+    }
+
+    @Override
+    public void close() {
+        try {
+            ManagementFactory.getPlatformMBeanServer().unregisterMBean(objectName);
+        } catch (JMException e) {
+            // Already unregistered
+        }
+    }
+}
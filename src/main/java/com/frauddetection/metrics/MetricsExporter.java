@@ -0,0 +1,12 @@
+package com.frauddetection.metrics;
+
+import java.io.IOException;
+
+// Receives a snapshot on every reporting tick of the registry it is attached to
+public interface MetricsExporter extends AutoCloseable {
+    void export(MetricsSnapshot snapshot) throws IOException;
+
+    @Override
+    default void close() throws IOException {
+    }
+}
@@ -0,0 +1,121 @@
+package com.frauddetection.metrics;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.LongSupplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Named counters, gauges and histograms. Instrumented classes look their metrics up once and keep
+// them in static fields, so recording is a lock-free, allocation-free update; names are only
+// resolved again when a snapshot is taken for the exporters.
+public final class MetricsRegistry implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(MetricsRegistry.class.getName());
+    private static final MetricsRegistry GLOBAL = new MetricsRegistry();
+
+    private final Map<String, Counter> counters = new ConcurrentHashMap<>();
+    private final Map<String, Gauge> gauges = new ConcurrentHashMap<>();
+    private final Map<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+    private final List<MetricsExporter> exporters = new CopyOnWriteArrayList<>();
+    private ScheduledExecutorService scheduler;
+    private volatile boolean enabled = true;
+
+    public static MetricsRegistry global() {
+        return GLOBAL;
+    }
+
+    public Counter counter(String name) {
+        return counters.computeIfAbsent(name, key -> new Counter());
+    }
+
+    public Gauge gauge(String name) {
+        return gauges.computeIfAbsent(name, key -> new Gauge());
+    }
+
+    // Reads the gauge from the supplier until the binding is closed; instances binding their own
+    // state close their bindings when they close
+    public Gauge.Binding gauge(String name, LongSupplier supplier) {
+        return gauge(name).bind(supplier);
+    }
+
+    public LatencyHistogram histogram(String name) {
+        return histograms.computeIfAbsent(name, key -> new LatencyHistogram());
+    }
+
+    // Timing calls on hot paths are skipped while disabled; counters keep counting
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public MetricsSnapshot snapshot() {
+        Map<String, Long> counterValues = new TreeMap<>();
+        counters.forEach((name, counter) -> counterValues.put(name, counter.get()));
+        Map<String, Long> gaugeValues = new TreeMap<>();
+        gauges.forEach((name, gauge) -> gaugeValues.put(name, gauge.get()));
+        Map<String, MetricsSnapshot.HistogramSummary> histogramValues = new TreeMap<>();
+        histograms.forEach((name, histogram) ->
+                histogramValues.put(name, new MetricsSnapshot.HistogramSummary(histogram)));
+        return new MetricsSnapshot(Instant.now(), counterValues, gaugeValues, histogramValues);
+    }
+
+    public void addExporter(MetricsExporter exporter) {
+        exporters.add(exporter);
+    }
+
+    public synchronized void startReporting(Duration period) {
+        if (scheduler != null) {
+            return;
+        }
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "metrics-reporter");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long millis = period.toMillis();
+        scheduler.scheduleAtFixedRate(this::report, millis, millis, TimeUnit.MILLISECONDS);
+    }
+
+    public void report() {
+        if (exporters.isEmpty()) {
+            return;
+        }
+        MetricsSnapshot snapshot = snapshot();
+        for (MetricsExporter exporter : exporters) {
+            try {
+                exporter.export(snapshot);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error exporting metrics", e);
+            }
+        }
+    }
+
+    // Stops reporting after one final export and closes the exporters
+    @Override
+    public synchronized void close() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+        report();
+        for (MetricsExporter exporter : exporters) {
+            try {
+                exporter.close();
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error closing metrics exporter", e);
+            }
+        }
+        exporters.clear();
+    }
+}
@@ -0,0 +1,86 @@
+package com.frauddetection.metrics;
+
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Map;
+
+// Immutable view of every metric at one instant, handed to exporters
+public final class MetricsSnapshot {
+    public static final class HistogramSummary {
+        private final long count;
+        private final double mean;
+        private final long p50;
+        private final long p90;
+        private final long p99;
+        private final long p999;
+        private final long max;
+
+        HistogramSummary(LatencyHistogram histogram) {
+            this.count = histogram.getCount();
+            this.mean = histogram.getMean();
+            this.p50 = histogram.getPercentile(50);
+            this.p90 = histogram.getPercentile(90);
+            this.p99 = histogram.getPercentile(99);
+            this.p999 = histogram.getPercentile(99.9);
+            this.max = histogram.getMax();
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMean() {
+            return mean;
+        }
+
+        public long getP50() {
+            return p50;
+        }
+
+        public long getP90() {
+            return p90;
+        }
+
+        public long getP99() {
+            return p99;
+        }
+
+        public long getP999() {
+            return p999;
+        }
+
+        public long getMax() {
+            return max;
+        }
+    }
+
+    private final Instant time;
+    private final Map<String, Long> counters;
+    private final Map<String, Long> gauges;
+    private final Map<String, HistogramSummary> histograms;
+
+    MetricsSnapshot(Instant time, Map<String, Long> counters, Map<String, Long> gauges,
+            Map<String, HistogramSummary> histograms) {
+        this.time = time;
+        this.counters = Collections.unmodifiableMap(counters);
+        this.gauges = Collections.unmodifiableMap(gauges);
+        this.histograms = Collections.unmodifiableMap(histograms);
+    }
+
+    public Instant getTime() {
+        return time;
+    }
+
+    public Map<String, Long> getCounters() {
+        return counters;
+    }
+
+    public Map<String, Long> getGauges() {
+        return gauges;
+    }
+
+    // Histogram values are in the unit they were recorded in, nanoseconds for timings
+    public Map<String, HistogramSummary> getHistograms() {
+        return histograms;
+    }
+}
@@ -0,0 +1,127 @@
+package com.frauddetection.model;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+// Interns categorical strings to dense int codes. Lookups by string are lock-free; only the first
+// sighting of a new value takes the lock to assign its code. Each dictionary starts from a seed
+// vocabulary, which takes the lowest codes, and grows with every new value seen at runtime until it
+// reaches its capacity. Past that, new values are hashed into a few shared overflow values instead,
+// so an import or feed with unbounded cardinality cannot grow the process-wide dictionaries forever.
+public final class CategoryDictionary {
+    public static final int DEFAULT_CAPACITY = 4096;
+    public static final int OVERFLOW_BUCKETS = 16;
+    private static final String[] OVERFLOW_VALUES = new String[OVERFLOW_BUCKETS];
+
+    static {
+        for (int bucket = 0; bucket < OVERFLOW_BUCKETS; bucket++) {
+            OVERFLOW_VALUES[bucket] = "#other-" + bucket;
+        }
+    }
+
+    public static final CategoryDictionary TYPES = new CategoryDictionary(
+            "Credit Card", "Wire Transfer", "Cash Deposit");
+    public static final CategoryDictionary LOCATIONS = new CategoryDictionary(
+            "New York", "London", "Tokyo", "Singapore", "Hong Kong",
+            "Dubai", "Paris", "Sydney", "Mumbai", "Shanghai");
+
+    private final ConcurrentHashMap<String, Integer> codes = new ConcurrentHashMap<>();
+    private final int seedSize;
+    private final int capacity;
+    private volatile String[] values = new String[16];
+    private volatile int size;
+
+    public CategoryDictionary(String... seed) {
+        this(DEFAULT_CAPACITY, seed);
+    }
+
+    // The seed always fits; the capacity only limits values interned after it
+    public CategoryDictionary(int capacity, String... seed) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Dictionary capacity must be positive");
+        }
+        this.capacity = Math.max(capacity, seed.length);
+        for (String value : seed) {
+            intern(value);
+        }
+        this.seedSize = size;
+    }
+
+    public int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        if (code != null) {
+            return code;
+        }
+        if (size >= capacity) {
+            return overflow(value);
+        }
+        synchronized (this) {
+            code = codes.get(value);
+            if (code != null) {
+                return code;
+            }
+            return size >= capacity ? overflow(value) : add(value);
+        }
+    }
+
+    // Each overflow value is interned on first use, beyond the capacity, so a full dictionary
+    // holds at most capacity + OVERFLOW_BUCKETS values
+    private int overflow(String value) {
+        int h = value.hashCode() * 0x9E3779B9;
+        String bucket = OVERFLOW_VALUES[Math.floorMod(h ^ (h >>> 16), OVERFLOW_BUCKETS)];
+        Integer code = codes.get(bucket);
+        if (code != null) {
+            return code;
+        }
+        synchronized (this) {
+            code = codes.get(bucket);
+            return code != null ? code : add(bucket);
+        }
+    }
+
+    // Called with the lock held
+    private int add(String value) {
+        int next = size;
+        String[] current = values;
+        if (next == current.length) {
+            current = Arrays.copyOf(current, next * 2);
+        }
+        current[next] = value;
+        // Publish the value before the code becomes visible through the map
+        values = current;
+        size = next + 1;
+        codes.put(value, next);
+        return next;
+    }
+
+    // Returns -1 for values that were never interned
+    public int codeOf(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer code = codes.get(value);
+        return code != null ? code : -1;
+    }
+
+    public String valueOf(int code) {
+        return code >= 0 && code < size ? values[code] : null;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // The vocabulary the dictionary was created with, in code order
+    public String[] seedValues() {
+        return Arrays.copyOf(values, seedSize);
+    }
+
+    // Every value interned so far, in code order
+    public String[] values() {
+        int count = size;
+        return Arrays.copyOf(values, count);
+    }
+}
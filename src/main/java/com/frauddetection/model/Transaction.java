@@ -3,20 +3,35 @@ package com.frauddetection.model;
 import java.time.LocalDateTime;
 
 public class Transaction {
+    public static final double FRAUD_THRESHOLD = 0.7;
+
     private String id;
     private double amount;
     private String type;
     private LocalDateTime timestamp;
     private double fraudProbability;
     private String location;
+    private String accountId;
 
     public Transaction(String id, double amount, String type, double fraudProbability, String location) {
+        this(id, amount, type, fraudProbability, location, LocalDateTime.now());
+    }
+
+    public Transaction(String id, double amount, String type, double fraudProbability, String location,
+            LocalDateTime timestamp) {
+        this(id, amount, type, fraudProbability, location, timestamp, null);
+    }
+
+    // The account is optional; sources that do not carry one leave it null
+    public Transaction(String id, double amount, String type, double fraudProbability, String location,
+            LocalDateTime timestamp, String accountId) {
         this.id = id;
         this.amount = amount;
         this.type = type;
-        this.timestamp = LocalDateTime.now();
+        this.timestamp = timestamp;
         this.fraudProbability = fraudProbability;
         this.location = location;
+        this.accountId = accountId;
     }
 
     public String getId() {
@@ -43,8 +58,12 @@ public class Transaction {
         return location;
     }
 
+    public String getAccountId() {
+        return accountId;
+    }
+
     public boolean isFraudulent() {
-        return fraudProbability >= 0.7; // Default threshold
+        return fraudProbability >= FRAUD_THRESHOLD; // Default threshold
     }
 
     @Override
@@ -0,0 +1,206 @@
+package com.frauddetection.model;
+
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+
+// Column-oriented batch of transactions. Type and location are stored as dictionary codes and
+// timestamps as local epoch nanoseconds, so bulk scans touch only primitive arrays; ids and account
+// ids stay strings. Column getters return the backing arrays; only the first size() entries are valid.
+public class TransactionBatch {
+    private final CategoryDictionary types;
+    private final CategoryDictionary locations;
+    private String[] ids;
+    private String[] accountIds;
+    private long[] timestamps;
+    private double[] amounts;
+    private int[] typeCodes;
+    private int[] locationCodes;
+    private float[] fraudProbabilities;
+    private int size;
+
+    public TransactionBatch() {
+        this(1024);
+    }
+
+    public TransactionBatch(int capacity) {
+        this(capacity, CategoryDictionary.TYPES, CategoryDictionary.LOCATIONS);
+    }
+
+    public TransactionBatch(int capacity, CategoryDictionary types, CategoryDictionary locations) {
+        int initial = Math.max(1, capacity);
+        this.types = types;
+        this.locations = locations;
+        this.ids = new String[initial];
+        this.accountIds = new String[initial];
+        this.timestamps = new long[initial];
+        this.amounts = new double[initial];
+        this.typeCodes = new int[initial];
+        this.locationCodes = new int[initial];
+        this.fraudProbabilities = new float[initial];
+    }
+
+    public static TransactionBatch of(List<Transaction> transactions) {
+        TransactionBatch batch = new TransactionBatch(transactions.size());
+        for (Transaction transaction : transactions) {
+            batch.add(transaction);
+        }
+        return batch;
+    }
+
+    public int add(Transaction transaction) {
+        return add(transaction.getId(), toEpochNanos(transaction.getTimestamp()), transaction.getAmount(),
+                types.intern(transaction.getType()), (float) transaction.getFraudProbability(),
+                locations.intern(transaction.getLocation()), transaction.getAccountId());
+    }
+
+    // For sources without accounts, such as CSV files
+    public int add(String id, long timestamp, double amount, int typeCode, float fraudProbability,
+            int locationCode) {
+        return add(id, timestamp, amount, typeCode, fraudProbability, locationCode, null);
+    }
+
+    public int add(String id, long timestamp, double amount, int typeCode, float fraudProbability,
+            int locationCode, String accountId) {
+        if (size == amounts.length) {
+            grow(size * 2);
+        }
+        int row = size++;
+        ids[row] = id;
+        accountIds[row] = accountId;
+        timestamps[row] = timestamp;
+        amounts[row] = amount;
+        typeCodes[row] = typeCode;
+        locationCodes[row] = locationCode;
+        fraudProbabilities[row] = fraudProbability;
+        return row;
+    }
+
+    // Copies one row of another batch that shares this batch's dictionaries
+    public int add(TransactionBatch source, int row) {
+        return add(source.ids[row], source.timestamps[row], source.amounts[row], source.typeCodes[row],
+                source.fraudProbabilities[row], source.locationCodes[row], source.accountIds[row]);
+    }
+
+    public Transaction get(int row) {
+        checkRow(row);
+        return new Transaction(ids[row], amounts[row], types.valueOf(typeCodes[row]),
+                fraudProbabilities[row], locations.valueOf(locationCodes[row]), fromEpochNanos(timestamps[row]),
+                accountIds[row]);
+    }
+
+    // Read-only list view that materializes a Transaction only when an element is accessed
+    public List<Transaction> asList() {
+        return new AbstractList<>() {
+            @Override
+            public Transaction get(int index) {
+                return TransactionBatch.this.get(index);
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public void clear() {
+        Arrays.fill(ids, 0, size, null);
+        Arrays.fill(accountIds, 0, size, null);
+        size = 0;
+    }
+
+    public String getId(int row) {
+        checkRow(row);
+        return ids[row];
+    }
+
+    // Null for rows from sources without accounts
+    public String getAccountId(int row) {
+        checkRow(row);
+        return accountIds[row];
+    }
+
+    public String getType(int row) {
+        checkRow(row);
+        return types.valueOf(typeCodes[row]);
+    }
+
+    public String getLocation(int row) {
+        checkRow(row);
+        return locations.valueOf(locationCodes[row]);
+    }
+
+    public void setFraudProbability(int row, double fraudProbability) {
+        checkRow(row);
+        fraudProbabilities[row] = (float) fraudProbability;
+    }
+
+    public CategoryDictionary getTypeDictionary() {
+        return types;
+    }
+
+    public CategoryDictionary getLocationDictionary() {
+        return locations;
+    }
+
+    public String[] getIds() {
+        return ids;
+    }
+
+    public String[] getAccountIds() {
+        return accountIds;
+    }
+
+    public long[] getTimestamps() {
+        return timestamps;
+    }
+
+    public double[] getAmounts() {
+        return amounts;
+    }
+
+    public int[] getTypeCodes() {
+        return typeCodes;
+    }
+
+    public int[] getLocationCodes() {
+        return locationCodes;
+    }
+
+    public float[] getFraudProbabilities() {
+        return fraudProbabilities;
+    }
+
+    // Local wall-clock time as nanoseconds since 1970-01-01T00:00, independent of the zone
+    public static long toEpochNanos(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000_000L + dateTime.getNano();
+    }
+
+    public static LocalDateTime fromEpochNanos(long epochNanos) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochNanos, 1_000_000_000L),
+                (int) Math.floorMod(epochNanos, 1_000_000_000L), ZoneOffset.UTC);
+    }
+
+    private void grow(int capacity) {
+        ids = Arrays.copyOf(ids, capacity);
+        accountIds = Arrays.copyOf(accountIds, capacity);
+        timestamps = Arrays.copyOf(timestamps, capacity);
+        amounts = Arrays.copyOf(amounts, capacity);
+        typeCodes = Arrays.copyOf(typeCodes, capacity);
+        locationCodes = Arrays.copyOf(locationCodes, capacity);
+        fraudProbabilities = Arrays.copyOf(fraudProbabilities, capacity);
+    }
+
+    private void checkRow(int row) {
+        if (row < 0 || row >= size) {
+            throw new IndexOutOfBoundsException("Row " + row + " outside batch of " + size);
+        }
+    }
+}
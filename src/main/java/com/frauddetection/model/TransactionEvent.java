@@ -0,0 +1,76 @@
+package com.frauddetection.model;
+
+// Mutable transaction record for preallocated ring buffer slots. Type and location are codes in
+// CategoryDictionary.TYPES and LOCATIONS, the timestamp is epoch nanoseconds as in TransactionBatch,
+// and the id is kept as a prefix and a number so a producer can fill an event without building
+// strings. Events are overwritten in place, so a consumer copies what it needs before releasing one.
+public final class TransactionEvent {
+    private String idPrefix;
+    private long idNumber = -1;
+    private double amount;
+    private int typeCode = -1;
+    private int locationCode = -1;
+    private long timestamp;
+    private double fraudProbability;
+    private String accountId;
+
+    // idNumber < 0 makes idPrefix the whole id
+    public void set(String idPrefix, long idNumber, double amount, int typeCode, int locationCode, long timestamp,
+            double fraudProbability, String accountId) {
+        this.idPrefix = idPrefix;
+        this.idNumber = idNumber;
+        this.amount = amount;
+        this.typeCode = typeCode;
+        this.locationCode = locationCode;
+        this.timestamp = timestamp;
+        this.fraudProbability = fraudProbability;
+        this.accountId = accountId;
+    }
+
+    public void set(Transaction transaction) {
+        set(transaction.getId(), -1, transaction.getAmount(),
+                CategoryDictionary.TYPES.intern(transaction.getType()),
+                CategoryDictionary.LOCATIONS.intern(transaction.getLocation()),
+                TransactionBatch.toEpochNanos(transaction.getTimestamp()), transaction.getFraudProbability(),
+                transaction.getAccountId());
+    }
+
+    public void copyFrom(TransactionEvent other) {
+        set(other.idPrefix, other.idNumber, other.amount, other.typeCode, other.locationCode, other.timestamp,
+                other.fraudProbability, other.accountId);
+    }
+
+    public Transaction toTransaction() {
+        return new Transaction(getId(), amount, CategoryDictionary.TYPES.valueOf(typeCode), fraudProbability,
+                CategoryDictionary.LOCATIONS.valueOf(locationCode), TransactionBatch.fromEpochNanos(timestamp),
+                accountId);
+    }
+
+    public String getId() {
+        return idNumber < 0 ? idPrefix : idPrefix + "-" + idNumber;
+    }
+
+    public double getAmount() {
+        return amount;
+    }
+
+    public int getTypeCode() {
+        return typeCode;
+    }
+
+    public int getLocationCode() {
+        return locationCode;
+    }
+
+    public long getTimestamp() {
+        return timestamp;
+    }
+
+    public double getFraudProbability() {
+        return fraudProbability;
+    }
+
+    public String getAccountId() {
+        return accountId;
+    }
+}
@@ -0,0 +1,10 @@
+package com.frauddetection.service;
+
+import com.frauddetection.model.Transaction;
+import java.util.List;
+
+// Scores a batch of transactions, one fraud probability per transaction in input order. Implemented
+// by the local detector and by the cluster coordinator, so callers can scale out without changes.
+public interface BatchScorer {
+    double[] predictFraudProbabilities(List<Transaction> transactions);
+}
@@ -0,0 +1,94 @@
+package com.frauddetection.service;
+
+import com.frauddetection.model.CategoryDictionary;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+// Maps the codes of a growing CategoryDictionary onto the fixed value list of a nominal model
+// attribute. The dictionary's seed vocabulary gets one value each, every value interned later is
+// hashed into one of a fixed number of shared buckets and null falls into an unknown value, so the
+// schema never changes while the dictionary grows without bound. Buckets are chosen from the
+// string itself, so a value lands in the same one after a restart and saved models stay valid.
+// The index of each code is computed once and kept in an array, so scoring never compares strings.
+final class CategoryEncoding {
+    private final CategoryDictionary dictionary;
+    private final String[] vocabulary;
+    private final int hashBuckets;
+    private volatile int[] indexByCode = new int[0];
+    private int resolved;
+
+    CategoryEncoding(CategoryDictionary dictionary, int hashBuckets) {
+        if (hashBuckets < 1) {
+            throw new IllegalArgumentException("At least one hash bucket is required");
+        }
+        this.dictionary = dictionary;
+        this.vocabulary = dictionary.seedValues();
+        this.hashBuckets = hashBuckets;
+    }
+
+    CategoryDictionary getDictionary() {
+        return dictionary;
+    }
+
+    // Attribute values: the seed vocabulary, then the hash buckets, then unknown
+    List<String> attributeValues() {
+        List<String> values = new ArrayList<>(Arrays.asList(vocabulary));
+        for (int bucket = 0; bucket < hashBuckets; bucket++) {
+            values.add("#bucket-" + bucket);
+        }
+        values.add("#unknown");
+        return values;
+    }
+
+    int numValues() {
+        return vocabulary.length + hashBuckets + 1;
+    }
+
+    int unknownIndex() {
+        return vocabulary.length + hashBuckets;
+    }
+
+    // Interns the value first, so a value seen only at scoring time still gets its code
+    int indexOf(String value) {
+        return value != null ? indexOf(dictionary.intern(value)) : unknownIndex();
+    }
+
+    int indexOf(int code) {
+        int[] indices = indexByCode;
+        if (code >= 0 && code < indices.length && indices[code] >= 0) {
+            return indices[code];
+        }
+        return code >= 0 ? resolve(code) : unknownIndex();
+    }
+
+    // Fills in the indices of every code interned since the last call; the array doubles as it
+    // fills, and unresolved slots hold -1 so readers fall through to here
+    private synchronized int resolve(int code) {
+        int size = dictionary.size();
+        if (code >= size) {
+            return unknownIndex();
+        }
+        int[] indices = indexByCode;
+        if (size > indices.length) {
+            indices = Arrays.copyOf(indices, Math.max(size, indices.length * 2));
+            Arrays.fill(indices, resolved, indices.length, -1);
+        }
+        for (int c = resolved; c < size; c++) {
+            indices[c] = indexOfValue(dictionary.valueOf(c));
+        }
+        resolved = size;
+        indexByCode = indices;
+        return indices[code];
+    }
+
+    private int indexOfValue(String value) {
+        // Seed values keep the lowest codes in every dictionary, so their code is their index
+        int code = dictionary.codeOf(value);
+        if (code >= 0 && code < vocabulary.length) {
+            return code;
+        }
+        int h = value.hashCode() * 0x9E3779B9;
+        return vocabulary.length + Math.floorMod(h ^ (h >>> 16), hashBuckets);
+    }
+}
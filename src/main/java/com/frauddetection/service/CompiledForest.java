@@ -0,0 +1,359 @@
+package com.frauddetection.service;
+
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import weka.classifiers.Classifier;
+import weka.classifiers.IteratedSingleClassifierEnhancer;
+import weka.classifiers.trees.RandomForest;
+import weka.classifiers.trees.RandomTree;
+import weka.core.Instances;
+
+// A trained Weka RandomForest flattened into primitive arrays. Every node of every tree lives at
+// one index of the node arrays and the children of a node are stored contiguously from firstChild.
+// Distributions are normalized at compile time so the evaluation loops reproduce Weka's
+// distributionForInstance results without allocating.
+public final class CompiledForest implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private final int numClasses;
+    private final int positiveClass;
+    private final boolean[] nominalAttribute;
+    private final int[] treeRoots;
+
+    private final int[] attribute;
+    private final double[] splitPoint;
+    private final int[] firstChild;
+    private final int[] childCount;
+    private final double[] prop;
+    private final boolean[] empty;
+    private final double[] distribution;
+
+    private transient ThreadLocal<Scratch> scratch;
+
+    private CompiledForest(int numClasses, int positiveClass, boolean[] nominalAttribute, int[] treeRoots,
+            NodeBuffer nodes) {
+        this.numClasses = numClasses;
+        this.positiveClass = positiveClass;
+        this.nominalAttribute = nominalAttribute;
+        this.treeRoots = treeRoots;
+        this.attribute = nodes.attribute.stream().mapToInt(Integer::intValue).toArray();
+        this.splitPoint = nodes.splitPoint.stream().mapToDouble(Double::doubleValue).toArray();
+        this.firstChild = nodes.firstChild.stream().mapToInt(Integer::intValue).toArray();
+        this.childCount = nodes.childCount.stream().mapToInt(Integer::intValue).toArray();
+        this.prop = nodes.prop.stream().mapToDouble(Double::doubleValue).toArray();
+        this.empty = new boolean[nodes.empty.size()];
+        for (int i = 0; i < empty.length; i++) {
+            empty[i] = nodes.empty.get(i);
+        }
+        this.distribution = new double[attribute.length * numClasses];
+        for (int i = 0; i < attribute.length; i++) {
+            double[] dist = nodes.distribution.get(i);
+            if (dist != null) {
+                System.arraycopy(dist, 0, distribution, i * numClasses, numClasses);
+            }
+        }
+    }
+
+    public static CompiledForest compile(RandomForest forest, Instances header, int positiveClass) {
+        try {
+            Field classifiersField = IteratedSingleClassifierEnhancer.class.getDeclaredField("m_Classifiers");
+            classifiersField.setAccessible(true);
+            Classifier[] trees = (Classifier[]) classifiersField.get(forest);
+
+            boolean[] nominal = new boolean[header.numAttributes()];
+            for (int i = 0; i < nominal.length; i++) {
+                nominal[i] = header.attribute(i).isNominal();
+            }
+
+            NodeBuffer nodes = new NodeBuffer();
+            int[] roots = new int[trees.length];
+            for (int t = 0; t < trees.length; t++) {
+                RandomTree tree = (RandomTree) trees[t];
+                if (TreeAccess.get(TreeAccess.ZERO_R, tree) != null) {
+                    throw new IllegalArgumentException("Trees built without attributes cannot be compiled");
+                }
+                roots[t] = nodes.add(1.0);
+                nodes.fill(roots[t], TreeAccess.get(TreeAccess.TREE, tree));
+            }
+            return new CompiledForest(header.numClasses(), positiveClass, nominal, roots, nodes);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Unsupported Weka RandomForest layout", e);
+        }
+    }
+
+    public int numTrees() {
+        return treeRoots.length;
+    }
+
+    public int numNodes() {
+        return attribute.length;
+    }
+
+    // Row layout matches a Weka instance: attribute order, nominal value indices, NaN for missing
+    public double score(double[] row) {
+        double[] sums = scratch().sums(2 * numClasses);
+        sumDistributions(row, sums);
+        return normalizedPositive(sums, 0);
+    }
+
+    // Scores rows stored in column layout (columns[attribute][row]). Trees are walked in the outer
+    // loop so each tree's nodes stay hot in cache across the whole batch.
+    public void score(double[][] columns, int count, double[] out) {
+        Scratch buffers = scratch();
+        int treeOffset = count * numClasses;
+        double[] sums = buffers.sums(treeOffset + numClasses);
+        Arrays.fill(sums, 0, treeOffset, 0.0);
+
+        for (int root : treeRoots) {
+            for (int r = 0; r < count; r++) {
+                int node = root;
+                boolean missing = false;
+                while (attribute[node] >= 0) {
+                    int child = child(node, columns[attribute[node]][r]);
+                    if (child < 0) {
+                        missing = true;
+                        break;
+                    }
+                    if (empty[child]) {
+                        break;
+                    }
+                    node = child;
+                }
+                if (missing) {
+                    // Rare path: gather the row and let the recursive walker split the weight
+                    double[] row = buffers.row(columns.length);
+                    for (int a = 0; a < columns.length; a++) {
+                        row[a] = columns[a][r];
+                    }
+                    Arrays.fill(sums, treeOffset, treeOffset + numClasses, 0.0);
+                    accumulate(node, row, 1.0, sums, treeOffset);
+                    for (int c = 0; c < numClasses; c++) {
+                        sums[r * numClasses + c] += sums[treeOffset + c];
+                    }
+                } else {
+                    int base = node * numClasses;
+                    for (int c = 0; c < numClasses; c++) {
+                        sums[r * numClasses + c] += distribution[base + c];
+                    }
+                }
+            }
+        }
+        for (int r = 0; r < count; r++) {
+            out[r] = normalizedPositive(sums, r * numClasses);
+        }
+    }
+
+    private void sumDistributions(double[] row, double[] sums) {
+        int treeOffset = numClasses;
+        for (int c = 0; c < numClasses; c++) {
+            sums[c] = 0.0;
+        }
+        for (int root : treeRoots) {
+            int node = root;
+            boolean missing = false;
+            while (attribute[node] >= 0) {
+                int child = child(node, row[attribute[node]]);
+                if (child < 0) {
+                    missing = true;
+                    break;
+                }
+                if (empty[child]) {
+                    break;
+                }
+                node = child;
+            }
+            if (missing) {
+                for (int c = 0; c < numClasses; c++) {
+                    sums[treeOffset + c] = 0.0;
+                }
+                accumulate(node, row, 1.0, sums, treeOffset);
+                for (int c = 0; c < numClasses; c++) {
+                    sums[c] += sums[treeOffset + c];
+                }
+            } else {
+                int base = node * numClasses;
+                for (int c = 0; c < numClasses; c++) {
+                    sums[c] += distribution[base + c];
+                }
+            }
+        }
+    }
+
+    // Mirrors RandomTree.Tree's missing-value branch: the weight is split across all non-empty
+    // children in proportion to the training data that went down each branch
+    private void accumulate(int node, double[] row, double weight, double[] out, int offset) {
+        while (attribute[node] >= 0) {
+            int child = child(node, row[attribute[node]]);
+            if (child < 0) {
+                for (int i = 0; i < childCount[node]; i++) {
+                    int successor = firstChild[node] + i;
+                    if (!empty[successor]) {
+                        accumulate(successor, row, weight * prop[successor], out, offset);
+                    }
+                }
+                return;
+            }
+            if (empty[child]) {
+                break;
+            }
+            node = child;
+        }
+        int base = node * numClasses;
+        for (int c = 0; c < numClasses; c++) {
+            out[offset + c] += weight * distribution[base + c];
+        }
+    }
+
+    // Returns -1 when the value is missing or an unknown nominal code
+    private int child(int node, double value) {
+        int att = attribute[node];
+        if (Double.isNaN(value)) {
+            return -1;
+        }
+        if (nominalAttribute[att]) {
+            int index = (int) value;
+            return index >= 0 && index < childCount[node] ? firstChild[node] + index : -1;
+        }
+        return firstChild[node] + (value < splitPoint[node] ? 0 : 1);
+    }
+
+    private double normalizedPositive(double[] sums, int offset) {
+        double total = 0.0;
+        for (int c = 0; c < numClasses; c++) {
+            total += sums[offset + c];
+        }
+        // Same zero check as weka.core.Utils.eq
+        if (total - 0.0 < 1e-6 && 0.0 - total < 1e-6) {
+            return sums[offset + positiveClass];
+        }
+        return sums[offset + positiveClass] / total;
+    }
+
+    private Scratch scratch() {
+        if (scratch == null) {
+            scratch = ThreadLocal.withInitial(Scratch::new);
+        }
+        return scratch.get();
+    }
+
+    private static final class Scratch {
+        private double[] sums = new double[0];
+        private double[] row = new double[0];
+
+        private double[] sums(int size) {
+            if (sums.length < size) {
+                sums = new double[Math.max(size, sums.length * 2)];
+            }
+            return sums;
+        }
+
+        private double[] row(int size) {
+            if (row.length < size) {
+                row = new double[size];
+            }
+            return row;
+        }
+    }
+
+    private static final class NodeBuffer {
+        private final List<Integer> attribute = new ArrayList<>();
+        private final List<Double> splitPoint = new ArrayList<>();
+        private final List<Integer> firstChild = new ArrayList<>();
+        private final List<Integer> childCount = new ArrayList<>();
+        private final List<Double> prop = new ArrayList<>();
+        private final List<Boolean> empty = new ArrayList<>();
+        private final List<double[]> distribution = new ArrayList<>();
+
+        private int add(double proportion) {
+            attribute.add(-1);
+            splitPoint.add(0.0);
+            firstChild.add(-1);
+            childCount.add(0);
+            prop.add(proportion);
+            empty.add(false);
+            distribution.add(null);
+            return attribute.size() - 1;
+        }
+
+        private void fill(int index, Object tree) throws ReflectiveOperationException {
+            int att = (Integer) TreeAccess.get(TreeAccess.ATTRIBUTE, tree);
+            double[] classDistribution = (double[]) TreeAccess.get(TreeAccess.CLASS_DISTRIBUTION, tree);
+
+            // Weka only keeps distributions on leaves and on parents of empty leaves, so a null
+            // distribution matters only on a leaf, where it makes the parent answer instead
+            if (classDistribution == null) {
+                empty.set(index, att < 0);
+            } else {
+                double[] normalized = classDistribution.clone();
+                double sum = 0.0;
+                for (double value : normalized) {
+                    sum += value;
+                }
+                for (int c = 0; c < normalized.length; c++) {
+                    normalized[c] /= sum;
+                }
+                distribution.set(index, normalized);
+            }
+            if (att < 0) {
+                return;
+            }
+
+            Object[] successors = (Object[]) TreeAccess.get(TreeAccess.SUCCESSORS, tree);
+            double[] proportions = (double[]) TreeAccess.get(TreeAccess.PROP, tree);
+            attribute.set(index, att);
+            splitPoint.set(index, (Double) TreeAccess.get(TreeAccess.SPLIT_POINT, tree));
+            childCount.set(index, successors.length);
+
+            // Reserve the children first so they are contiguous, then descend
+            int first = -1;
+            for (int i = 0; i < successors.length; i++) {
+                int child = add(proportions != null ? proportions[i] : 0.0);
+                if (i == 0) {
+                    first = child;
+                }
+            }
+            firstChild.set(index, first);
+            for (int i = 0; i < successors.length; i++) {
+                fill(first + i, successors[i]);
+            }
+        }
+    }
+
+    private static final class TreeAccess {
+        private static final Field TREE;
+        private static final Field ZERO_R;
+        private static final Field ATTRIBUTE;
+        private static final Field SPLIT_POINT;
+        private static final Field SUCCESSORS;
+        private static final Field PROP;
+        private static final Field CLASS_DISTRIBUTION;
+
+        static {
+            try {
+                TREE = accessible(RandomTree.class, "m_Tree");
+                ZERO_R = accessible(RandomTree.class, "m_zeroR");
+                Class<?> node = Class.forName("weka.classifiers.trees.RandomTree$Tree");
+                ATTRIBUTE = accessible(node, "m_Attribute");
+                SPLIT_POINT = accessible(node, "m_SplitPoint");
+                SUCCESSORS = accessible(node, "m_Successors");
+                PROP = accessible(node, "m_Prop");
+                CLASS_DISTRIBUTION = accessible(node, "m_ClassDistribution");
+            } catch (ReflectiveOperationException e) {
+                throw new ExceptionInInitializerError(e);
+            }
+        }
+
+        private static Field accessible(Class<?> type, String name) throws NoSuchFieldException {
+            Field field = type.getDeclaredField(name);
+            field.setAccessible(true);
+            return field;
+        }
+
+        private static Object get(Field field, Object target) throws IllegalAccessException {
+            return field.get(target);
+        }
+    }
+}
@@ -0,0 +1,463 @@
+package com.frauddetection.service;
+
+import com.frauddetection.metrics.Counter;
+import com.frauddetection.metrics.Gauge;
+import com.frauddetection.metrics.LatencyHistogram;
+import com.frauddetection.metrics.MetricsRegistry;
+import com.frauddetection.model.CategoryDictionary;
+import com.frauddetection.model.TransactionBatch;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+// Imports "id,amount,type,fraudProbability[,location]" CSV files. The file is split into chunks at
+// line boundaries, each chunk is memory-mapped and parsed on its own worker straight from the
+// mapped bytes, and the resulting batches are handed to the sink in file order. Fields may be
+// double-quoted, with "" standing for a quote, but may not span lines.
+public class CsvTransactionImporter {
+    private static final Logger LOGGER = Logger.getLogger(CsvTransactionImporter.class.getName());
+    private static final Counter IMPORTED_ROWS = MetricsRegistry.global().counter("import.rows");
+    private static final Counter MALFORMED_ROWS = MetricsRegistry.global().counter("import.malformedRows");
+    private static final LatencyHistogram IMPORT_TIME = MetricsRegistry.global().histogram("import.time");
+    private static final Gauge ROWS_PER_SECOND = MetricsRegistry.global().gauge("import.rowsPerSecond");
+    public static final String UNKNOWN_LOCATION = "Unknown";
+    private static final int MAX_LINE_LENGTH = 64 * 1024;
+    private static final int MALFORMED_SAMPLES = 10;
+
+    public interface ProgressListener {
+        void onProgress(long bytesProcessed, long totalBytes);
+    }
+
+    public static final class ImportResult {
+        private final long importedRows;
+        private final long malformedRows;
+        private final long bytesRead;
+        private final long elapsedNanos;
+        private final List<Long> malformedOffsets;
+
+        private ImportResult(long importedRows, long malformedRows, long bytesRead, long elapsedNanos,
+                List<Long> malformedOffsets) {
+            this.importedRows = importedRows;
+            this.malformedRows = malformedRows;
+            this.bytesRead = bytesRead;
+            this.elapsedNanos = elapsedNanos;
+            this.malformedOffsets = malformedOffsets;
+        }
+
+        public long getImportedRows() {
+            return importedRows;
+        }
+
+        public long getMalformedRows() {
+            return malformedRows;
+        }
+
+        public long getBytesRead() {
+            return bytesRead;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        // Byte offsets of the first few malformed lines, for error reporting
+        public List<Long> getMalformedOffsets() {
+            return malformedOffsets;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedNanos > 0 ? importedRows * 1e9 / elapsedNanos : 0.0;
+        }
+    }
+
+    private final int parallelism;
+    private final long chunkSize;
+
+    public CsvTransactionImporter() {
+        this(Runtime.getRuntime().availableProcessors(), 32L * 1024 * 1024);
+    }
+
+    public CsvTransactionImporter(int parallelism, long chunkSize) {
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("Parallelism and chunk size must be positive");
+        }
+        if (chunkSize > Integer.MAX_VALUE - MAX_LINE_LENGTH) {
+            throw new IllegalArgumentException("Chunks must fit in a single mapped buffer");
+        }
+        this.parallelism = parallelism;
+        this.chunkSize = chunkSize;
+    }
+
+    public ImportResult importFile(Path file, Consumer<TransactionBatch> sink, ProgressListener progress)
+            throws IOException {
+        long start = System.nanoTime();
+        long importedAt = TransactionBatch.toEpochNanos(LocalDateTime.now());
+        ExecutorService workers = Executors.newFixedThreadPool(parallelism, runnable -> {
+            Thread thread = new Thread(runnable, "csv-import");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long total = channel.size();
+            long[] bounds = chunkBounds(channel, total);
+
+            long imported = 0;
+            long malformed = 0;
+            long processed = 0;
+            List<Long> malformedOffsets = new ArrayList<>();
+
+            // Keep a bounded window of chunks in flight and deliver them strictly in file order
+            ArrayDeque<Future<ChunkResult>> inFlight = new ArrayDeque<>();
+            int next = 0;
+            while (next < bounds.length - 1 || !inFlight.isEmpty()) {
+                while (next < bounds.length - 1 && inFlight.size() < parallelism * 2) {
+                    long from = bounds[next];
+                    long to = bounds[next + 1];
+                    inFlight.add(workers.submit(() -> parseChunk(channel, from, to, importedAt)));
+                    next++;
+                }
+                ChunkResult chunk = await(inFlight.removeFirst());
+                if (chunk.batch.size() > 0) {
+                    sink.accept(chunk.batch);
+                }
+                imported += chunk.batch.size();
+                malformed += chunk.malformed;
+                for (int i = 0; i < chunk.malformedCount() && malformedOffsets.size() < MALFORMED_SAMPLES; i++) {
+                    malformedOffsets.add(chunk.malformedOffsets[i]);
+                }
+                processed += chunk.length;
+                if (progress != null) {
+                    progress.onProgress(processed, total);
+                }
+            }
+
+            ImportResult result = new ImportResult(imported, malformed, total, System.nanoTime() - start,
+                    List.copyOf(malformedOffsets));
+            IMPORTED_ROWS.add(imported);
+            MALFORMED_ROWS.add(malformed);
+            IMPORT_TIME.record(result.getElapsedNanos());
+            ROWS_PER_SECOND.set((long) result.getRowsPerSecond());
+            LOGGER.info(String.format("Imported %d transactions (%d malformed) from %s in %d ms", imported,
+                    malformed, file.getFileName(), result.getElapsedNanos() / 1_000_000));
+            return result;
+        } finally {
+            workers.shutdownNow();
+        }
+    }
+
+    // Chunk boundaries always sit just after a newline so no line is split between workers
+    private long[] chunkBounds(FileChannel channel, long total) throws IOException {
+        List<Long> bounds = new ArrayList<>();
+        bounds.add(0L);
+        ByteBuffer probe = ByteBuffer.allocate(4096);
+        long position = 0;
+        while (position + chunkSize < total) {
+            long candidate = position + chunkSize;
+            long boundary = -1;
+            while (boundary < 0 && candidate < total) {
+                probe.clear();
+                int read = channel.read(probe, candidate);
+                if (read <= 0) {
+                    break;
+                }
+                for (int i = 0; i < read; i++) {
+                    if (probe.get(i) == '\n') {
+                        boundary = candidate + i + 1;
+                        break;
+                    }
+                }
+                candidate += read;
+            }
+            if (boundary < 0 || boundary >= total) {
+                break;
+            }
+            bounds.add(boundary);
+            position = boundary;
+        }
+        bounds.add(total);
+        long[] result = new long[bounds.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = bounds.get(i);
+        }
+        return result;
+    }
+
+    private ChunkResult parseChunk(FileChannel channel, long from, long to, long importedAt) throws IOException {
+        int length = (int) (to - from);
+        MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, length);
+        ChunkResult result = new ChunkResult(new TransactionBatch(Math.max(16, length / 48)), length);
+        FieldParser parser = new FieldParser();
+
+        int lineStart = 0;
+        for (int i = 0; i <= length; i++) {
+            if (i == length || buffer.get(i) == '\n') {
+                int lineEnd = i;
+                if (lineEnd > lineStart && buffer.get(lineEnd - 1) == '\r') {
+                    lineEnd--;
+                }
+                if (lineEnd > lineStart && !parser.parseLine(buffer, lineStart, lineEnd, importedAt, result.batch)) {
+                    result.addMalformed(from + lineStart);
+                }
+                lineStart = i + 1;
+            }
+        }
+        return result;
+    }
+
+    private static ChunkResult await(Future<ChunkResult> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Import interrupted", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new IOException("Error importing chunk", e.getCause());
+        }
+    }
+
+    private static final class ChunkResult {
+        private final TransactionBatch batch;
+        private final int length;
+        private final long[] malformedOffsets = new long[MALFORMED_SAMPLES];
+        private long malformed;
+
+        private ChunkResult(TransactionBatch batch, int length) {
+            this.batch = batch;
+            this.length = length;
+        }
+
+        private void addMalformed(long offset) {
+            if (malformed < MALFORMED_SAMPLES) {
+                malformedOffsets[(int) malformed] = offset;
+            }
+            malformed++;
+        }
+
+        private int malformedCount() {
+            return (int) Math.min(malformed, MALFORMED_SAMPLES);
+        }
+    }
+
+    // Per-worker tokenizer. Numbers are parsed directly from the mapped bytes, and type and
+    // location codes come from a small byte-keyed cache, so a typical row allocates only its id.
+    private static final class FieldParser {
+        private static final double[] POWERS_OF_TEN = {
+                1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+                1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+        };
+
+        private final int[] fieldStart = new int[6];
+        private final int[] fieldEnd = new int[6];
+        private final byte[] scratch = new byte[MAX_LINE_LENGTH];
+        private final CodeCache types = new CodeCache(CategoryDictionary.TYPES);
+        private final CodeCache locations = new CodeCache(CategoryDictionary.LOCATIONS);
+        private final int unknownLocation = CategoryDictionary.LOCATIONS.intern(UNKNOWN_LOCATION);
+
+        private boolean parseLine(ByteBuffer buffer, int start, int end, long importedAt, TransactionBatch out) {
+            int length = end - start;
+            if (length > scratch.length) {
+                return false;
+            }
+            buffer.get(start, scratch, 0, length);
+
+            int fields = 0;
+            int i = 0;
+            while (fields < fieldStart.length) {
+                fieldStart[fields] = i;
+                if (i < length && scratch[i] == '"') {
+                    i = unquote(fields, length);
+                    if (i < 0) {
+                        return false;
+                    }
+                } else {
+                    while (i < length && scratch[i] != ',') {
+                        i++;
+                    }
+                    fieldEnd[fields] = i;
+                }
+                fields++;
+                if (i == length) {
+                    break;
+                }
+                i++;
+            }
+            if (fields < 4 || fieldEnd[0] == fieldStart[0]) {
+                return false;
+            }
+
+            double amount = parseDouble(fieldStart[1], fieldEnd[1]);
+            double probability = parseDouble(fieldStart[3], fieldEnd[3]);
+            if (Double.isNaN(amount) || Double.isNaN(probability) || fieldEnd[2] == fieldStart[2]) {
+                return false;
+            }
+            int type = types.codeOf(scratch, fieldStart[2], fieldEnd[2]);
+            int location = fields > 4 && fieldEnd[4] > fieldStart[4]
+                    ? locations.codeOf(scratch, fieldStart[4], fieldEnd[4])
+                    : unknownLocation;
+            String id = new String(scratch, fieldStart[0], fieldEnd[0] - fieldStart[0], StandardCharsets.UTF_8);
+
+            out.add(id, importedAt, amount, type, (float) probability, location);
+            return true;
+        }
+
+        // Unescapes a quoted field in place, leaving its value in scratch[fieldStart, fieldEnd).
+        // Returns the index of the byte after the closing quote, or -1 when the quote is never
+        // closed or is followed by anything but a separator.
+        private int unquote(int field, int length) {
+            int write = fieldStart[field];
+            int i = write + 1;
+            while (i < length) {
+                if (scratch[i] != '"') {
+                    scratch[write++] = scratch[i++];
+                } else if (i + 1 < length && scratch[i + 1] == '"') {
+                    scratch[write++] = '"';
+                    i += 2;
+                } else {
+                    fieldEnd[field] = write;
+                    i++;
+                    return i == length || scratch[i] == ',' ? i : -1;
+                }
+            }
+            return -1;
+        }
+
+        // Returns NaN for anything that is not a number. Plain decimals with up to 18 significant
+        // digits and a mantissa below 2^53 take the exact fast path; everything else goes through
+        // Double.parseDouble.
+        private double parseDouble(int start, int end) {
+            while (start < end && scratch[start] == ' ') {
+                start++;
+            }
+            while (end > start && scratch[end - 1] == ' ') {
+                end--;
+            }
+            if (start == end) {
+                return Double.NaN;
+            }
+            int i = start;
+            boolean negative = false;
+            if (scratch[i] == '-' || scratch[i] == '+') {
+                negative = scratch[i] == '-';
+                i++;
+            }
+            long mantissa = 0;
+            int digits = 0;
+            int fractionDigits = 0;
+            boolean anyDigit = false;
+            boolean seenDot = false;
+            boolean simple = true;
+            for (; i < end && simple; i++) {
+                byte b = scratch[i];
+                if (b >= '0' && b <= '9') {
+                    anyDigit = true;
+                    if (digits == 18) {
+                        simple = false;
+                        break;
+                    }
+                    mantissa = mantissa * 10 + (b - '0');
+                    if (mantissa != 0) {
+                        digits++;
+                    }
+                    if (seenDot) {
+                        fractionDigits++;
+                    }
+                } else if (b == '.' && !seenDot) {
+                    seenDot = true;
+                } else {
+                    simple = false;
+                }
+            }
+            if (simple && anyDigit && fractionDigits < POWERS_OF_TEN.length && mantissa < (1L << 53)) {
+                // Both operands are exact doubles, so one division gives the correctly rounded result
+                double value = mantissa / POWERS_OF_TEN[fractionDigits];
+                return negative ? -value : value;
+            }
+            try {
+                return Double.parseDouble(new String(scratch, start, end - start, StandardCharsets.ISO_8859_1));
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+    }
+
+    // Open-addressing cache from raw field bytes to dictionary codes
+    private static final class CodeCache {
+        private final CategoryDictionary dictionary;
+        private byte[][] keys = new byte[64][];
+        private int[] codes = new int[64];
+        private int size;
+
+        private CodeCache(CategoryDictionary dictionary) {
+            this.dictionary = dictionary;
+        }
+
+        private int codeOf(byte[] bytes, int start, int end) {
+            int hash = 1;
+            for (int i = start; i < end; i++) {
+                hash = 31 * hash + bytes[i];
+            }
+            int mask = keys.length - 1;
+            int slot = (hash ^ (hash >>> 16)) & mask;
+            while (keys[slot] != null) {
+                if (Arrays.equals(keys[slot], 0, keys[slot].length, bytes, start, end)) {
+                    return codes[slot];
+                }
+                slot = (slot + 1) & mask;
+            }
+            int code = dictionary.intern(new String(bytes, start, end - start, StandardCharsets.UTF_8));
+            if (size * 2 >= keys.length) {
+                // Don't let a high-cardinality column grow the cache without bound
+                if (keys.length >= 1 << 16) {
+                    return code;
+                }
+                rehash();
+                return codeOf(bytes, start, end);
+            }
+            keys[slot] = Arrays.copyOfRange(bytes, start, end);
+            codes[slot] = code;
+            size++;
+            return code;
+        }
+
+        private void rehash() {
+            byte[][] oldKeys = keys;
+            int[] oldCodes = codes;
+            keys = new byte[oldKeys.length * 2][];
+            codes = new int[oldKeys.length * 2];
+            int mask = keys.length - 1;
+            for (int i = 0; i < oldKeys.length; i++) {
+                if (oldKeys[i] != null) {
+                    int hash = 1;
+                    for (byte b : oldKeys[i]) {
+                        hash = 31 * hash + b;
+                    }
+                    int slot = (hash ^ (hash >>> 16)) & mask;
+                    while (keys[slot] != null) {
+                        slot = (slot + 1) & mask;
+                    }
+                    keys[slot] = oldKeys[i];
+                    codes[slot] = oldCodes[i];
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,301 @@
+package com.frauddetection.service;
+
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+// Behavioural features computed per entity over a sliding time window as transactions are scored:
+// how many transactions the entity made, how far the amount is from its recent mean, and how often
+// its location changed. The entity is the account when a transaction carries one, otherwise the
+// location. Each entity's recent events live in fixed-size primitive ring buffers, so an update is
+// O(1) amortized, and a time wheel frees entities that have been idle for a whole window. The number
+// of tracked entities is capped; when the cap is hit the longest idle entities are evicted early.
+public class FeatureEngine {
+    public static final String[] FEATURE_NAMES = { "velocity", "amountDeviation", "locationChanges" };
+    public static final int FEATURE_COUNT = FEATURE_NAMES.length;
+
+    private static final int STRIPES = 16;
+    private static final int WHEEL_TICKS = 64;
+
+    private final Stripe[] stripes = new Stripe[STRIPES];
+    private final long windowNanos;
+    private final long tickNanos;
+
+    public FeatureEngine() {
+        this(Duration.ofMinutes(10), 16, 1 << 15);
+    }
+
+    // historySize bounds the events kept per entity, so velocity saturates at that count
+    public FeatureEngine(Duration window, int historySize, int maxEntities) {
+        if (window.isNegative() || window.isZero() || historySize < 1 || maxEntities < STRIPES) {
+            throw new IllegalArgumentException("Invalid window, history size or entity limit");
+        }
+        this.windowNanos = window.toNanos();
+        // A full turn of the wheel spans at least a window plus one tick, so an entity is only freed
+        // once its newest event has left the window
+        this.tickNanos = Math.max(1, (windowNanos + WHEEL_TICKS - 2) / (WHEEL_TICKS - 1));
+        for (int i = 0; i < STRIPES; i++) {
+            stripes[i] = new Stripe(maxEntities / STRIPES, historySize);
+        }
+    }
+
+    // Writes the features for the transaction at out[offset..] and adds it to its entity's history
+    public void observe(Transaction transaction, double[] out, int offset) {
+        extract(transaction, out, offset, true);
+    }
+
+    // Same features without recording the transaction, for rows that were already observed
+    public void peek(Transaction transaction, double[] out, int offset) {
+        extract(transaction, out, offset, false);
+    }
+
+    private void extract(Transaction transaction, double[] out, int offset, boolean record) {
+        String location = transaction.getLocation();
+        String entity = transaction.getAccountId() != null ? transaction.getAccountId() : location;
+        update(entity, TransactionBatch.toEpochNanos(transaction.getTimestamp()), transaction.getAmount(),
+                location != null ? location.hashCode() : 0, out, offset, record);
+    }
+
+    // Primitive form for columnar callers; location is any value that is equal for equal locations
+    public void observe(String entity, long timestamp, double amount, int location, double[] out, int offset) {
+        update(entity, timestamp, amount, location, out, offset, true);
+    }
+
+    private void update(String entity, long timestamp, double amount, int location, double[] out, int offset,
+            boolean record) {
+        if (entity == null) {
+            Arrays.fill(out, offset, offset + FEATURE_COUNT, 0.0);
+            return;
+        }
+        int hash = entity.hashCode();
+        Stripe stripe = stripes[(hash ^ (hash >>> 16)) & (STRIPES - 1)];
+        synchronized (stripe) {
+            stripe.update(entity, timestamp, amount, location, out, offset, record);
+        }
+    }
+
+    public int getTrackedEntities() {
+        int total = 0;
+        for (Stripe stripe : stripes) {
+            synchronized (stripe) {
+                total += stripe.slots.size();
+            }
+        }
+        return total;
+    }
+
+    private final class Stripe {
+        final Map<String, Integer> slots = new HashMap<>();
+        final int capacity;
+        final int historySize;
+
+        // Entity slots; slot s owns ring positions [s * historySize, (s + 1) * historySize)
+        final String[] owners;
+        final int[] freeSlots;
+        int freeCount;
+        final int[] head;
+        final int[] size;
+        final double[] sum;
+        final double[] sumOfSquares;
+        final int[] changes;
+        final long[] lastTick;
+
+        final long[] times;
+        final double[] amounts;
+        final int[] locations;
+        final boolean[] changed;
+
+        // Bucket b lists the slots last seen at wheelTick[b]; a slot is listed once per tick it was seen
+        final int[][] wheel = new int[WHEEL_TICKS][];
+        final int[] wheelSize = new int[WHEEL_TICKS];
+        final long[] wheelTick = new long[WHEEL_TICKS];
+        long currentTick = Long.MIN_VALUE;
+
+        Stripe(int capacity, int historySize) {
+            this.capacity = capacity;
+            this.historySize = historySize;
+            owners = new String[capacity];
+            freeSlots = new int[capacity];
+            for (int i = 0; i < capacity; i++) {
+                freeSlots[i] = capacity - 1 - i;
+            }
+            freeCount = capacity;
+            head = new int[capacity];
+            size = new int[capacity];
+            sum = new double[capacity];
+            sumOfSquares = new double[capacity];
+            changes = new int[capacity];
+            lastTick = new long[capacity];
+            times = new long[capacity * historySize];
+            amounts = new double[capacity * historySize];
+            locations = new int[capacity * historySize];
+            changed = new boolean[capacity * historySize];
+            for (int b = 0; b < WHEEL_TICKS; b++) {
+                wheel[b] = new int[16];
+            }
+        }
+
+        void update(String entity, long timestamp, double amount, int location, double[] out, int offset,
+                boolean record) {
+            advance(Math.floorDiv(timestamp, tickNanos));
+            Integer existing = slots.get(entity);
+            int slot = existing != null ? existing : -1;
+            if (slot >= 0) {
+                expire(slot, timestamp - windowNanos);
+            }
+            writeFeatures(slot, amount, location, out, offset);
+            if (!record) {
+                return;
+            }
+            if (slot < 0) {
+                slot = allocate(entity);
+                if (slot < 0) {
+                    return;
+                }
+            }
+            push(slot, timestamp, amount, location);
+            touch(slot);
+        }
+
+        private void writeFeatures(int slot, double amount, int location, double[] out, int offset) {
+            int count = slot >= 0 ? size[slot] : 0;
+            double deviation = 0.0;
+            int locationChanges = 0;
+            if (count > 0) {
+                double mean = sum[slot] / count;
+                double variance = Math.max(0.0, sumOfSquares[slot] / count - mean * mean);
+                // A floor on the spread keeps one or two identical amounts from producing huge scores
+                deviation = count > 1 ? (amount - mean) / Math.max(Math.sqrt(variance), 1.0) : 0.0;
+                int newest = slot * historySize + (head[slot] + count - 1) % historySize;
+                locationChanges = changes[slot] + (locations[newest] != location ? 1 : 0);
+            }
+            out[offset] = count;
+            out[offset + 1] = deviation;
+            out[offset + 2] = locationChanges;
+        }
+
+        private void push(int slot, long timestamp, double amount, int location) {
+            if (size[slot] == historySize) {
+                removeOldest(slot);
+            }
+            int base = slot * historySize;
+            int count = size[slot];
+            int index = base + (head[slot] + count) % historySize;
+            boolean moved = count > 0 && locations[base + (head[slot] + count - 1) % historySize] != location;
+            times[index] = timestamp;
+            amounts[index] = amount;
+            locations[index] = location;
+            changed[index] = moved;
+            if (moved) {
+                changes[slot]++;
+            }
+            sum[slot] += amount;
+            sumOfSquares[slot] += amount * amount;
+            size[slot] = count + 1;
+        }
+
+        private void expire(int slot, long cutoff) {
+            int base = slot * historySize;
+            while (size[slot] > 0 && times[base + head[slot]] < cutoff) {
+                removeOldest(slot);
+            }
+        }
+
+        private void removeOldest(int slot) {
+            int base = slot * historySize;
+            double amount = amounts[base + head[slot]];
+            head[slot] = (head[slot] + 1) % historySize;
+            if (--size[slot] == 0) {
+                // Start from exact zeros rather than accumulated rounding error
+                sum[slot] = 0.0;
+                sumOfSquares[slot] = 0.0;
+                changes[slot] = 0;
+                return;
+            }
+            sum[slot] -= amount;
+            sumOfSquares[slot] -= amount * amount;
+            // The change into the new oldest event came from an event that is no longer in the window
+            int newHead = base + head[slot];
+            if (changed[newHead]) {
+                changed[newHead] = false;
+                changes[slot]--;
+            }
+        }
+
+        private int allocate(String entity) {
+            if (freeCount == 0 && !evictIdle()) {
+                // Every tracked entity was active this tick; score this one without history
+                return -1;
+            }
+            int slot = freeSlots[--freeCount];
+            owners[slot] = entity;
+            head[slot] = 0;
+            size[slot] = 0;
+            sum[slot] = 0.0;
+            sumOfSquares[slot] = 0.0;
+            changes[slot] = 0;
+            lastTick[slot] = Long.MIN_VALUE;
+            slots.put(entity, slot);
+            return slot;
+        }
+
+        private void touch(int slot) {
+            if (lastTick[slot] == currentTick) {
+                return;
+            }
+            lastTick[slot] = currentTick;
+            int bucket = (int) Math.floorMod(currentTick, (long) WHEEL_TICKS);
+            if (wheelSize[bucket] == wheel[bucket].length) {
+                wheel[bucket] = Arrays.copyOf(wheel[bucket], Math.min(capacity, wheel[bucket].length * 2));
+            }
+            wheel[bucket][wheelSize[bucket]++] = slot;
+        }
+
+        // Moves the wheel to tick, freeing entities whose last event is a full window old. Event time
+        // drives the wheel, and late events are filed under the current tick.
+        private void advance(long tick) {
+            if (currentTick == Long.MIN_VALUE) {
+                currentTick = tick;
+                Arrays.fill(wheelTick, tick);
+                return;
+            }
+            if (tick <= currentTick) {
+                return;
+            }
+            long steps = Math.min(tick - currentTick, WHEEL_TICKS);
+            for (long step = 1; step <= steps; step++) {
+                long next = tick - steps + step;
+                int bucket = (int) Math.floorMod(next, (long) WHEEL_TICKS);
+                release(bucket);
+                wheelTick[bucket] = next;
+            }
+            currentTick = tick;
+        }
+
+        // Evicts the longest idle entities, oldest bucket first, until a slot is free
+        private boolean evictIdle() {
+            for (int step = 1; step < WHEEL_TICKS && freeCount == 0; step++) {
+                release((int) Math.floorMod(currentTick + step, (long) WHEEL_TICKS));
+            }
+            return freeCount > 0;
+        }
+
+        private void release(int bucket) {
+            long tick = wheelTick[bucket];
+            int[] entries = wheel[bucket];
+            for (int i = 0; i < wheelSize[bucket]; i++) {
+                int slot = entries[i];
+                // Entities seen again later are listed in a newer bucket
+                if (owners[slot] != null && lastTick[slot] == tick) {
+                    slots.remove(owners[slot]);
+                    owners[slot] = null;
+                    freeSlots[freeCount++] = slot;
+                }
+            }
+            wheelSize[bucket] = 0;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+package com.frauddetection.service;
+
+import com.frauddetection.metrics.Gauge;
+import com.frauddetection.metrics.MetricsRegistry;
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+import weka.classifiers.Classifier;
+import weka.classifiers.IteratedSingleClassifierEnhancer;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Instances;
+
+// Builds a RandomForest as independent chunks of trees on a dedicated pool, one chunk per task with
+// its own seed, then joins the chunks into one forest. Splitting the work this way lets training use
+// every execution slot, report progress as chunks finish and stop at the time budget with the trees
+// built so far instead of failing or running on indefinitely.
+public class ForestTrainer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ForestTrainer.class.getName());
+    private static final Gauge TREES_BUILT = MetricsRegistry.global().gauge("model.treesBuilt");
+    // Small chunks, several per slot, keep progress fine-grained and let a budget cut off less work
+    private static final int CHUNKS_PER_SLOT = 4;
+    private static final int MAX_TREES_PER_CHUNK = 8;
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        void onProgress(int treesBuilt, int totalTrees);
+    }
+
+    private final TrainingConfig config;
+    private final ExecutorService pool;
+
+    public ForestTrainer(TrainingConfig config) {
+        this.config = config;
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(config.getExecutionSlots(), runnable -> {
+            Thread thread = new Thread(runnable, "model-trainer-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public TrainingConfig getConfig() {
+        return config;
+    }
+
+    public RandomForest train(Instances data, ProgressListener progress) throws Exception {
+        Instances prepared = balance(data);
+        int totalTrees = config.getTrees();
+        int chunks = Math.min(totalTrees, Math.max(config.getExecutionSlots() * CHUNKS_PER_SLOT,
+                (totalTrees + MAX_TREES_PER_CHUNK - 1) / MAX_TREES_PER_CHUNK));
+        CompletionService<RandomForest> completion = new ExecutorCompletionService<>(pool);
+        List<Future<RandomForest>> tasks = new ArrayList<>(chunks);
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int trees = totalTrees / chunks + (chunk < totalTrees % chunks ? 1 : 0);
+            long seed = config.getSeed() + chunk;
+            tasks.add(completion.submit(() -> buildChunk(prepared, trees, seed)));
+        }
+
+        long deadline = System.nanoTime() + config.getTimeBudget().toNanos();
+        List<RandomForest> built = new ArrayList<>(chunks);
+        int treesBuilt = 0;
+        TREES_BUILT.set(0);
+        try {
+            for (int i = 0; i < chunks; i++) {
+                long remaining = deadline - System.nanoTime();
+                Future<RandomForest> done = remaining > 0 ? completion.poll(remaining, TimeUnit.NANOSECONDS) : null;
+                if (done == null) {
+                    break;
+                }
+                RandomForest chunk = result(done);
+                built.add(chunk);
+                treesBuilt += chunk.getNumIterations();
+                TREES_BUILT.set(treesBuilt);
+                if (progress != null) {
+                    progress.onProgress(treesBuilt, totalTrees);
+                }
+            }
+        } finally {
+            // Queued chunks never start; Weka ignores interrupts, so running ones finish unused
+            for (Future<RandomForest> task : tasks) {
+                task.cancel(true);
+            }
+        }
+        if (built.isEmpty()) {
+            throw new TimeoutException("No trees were built within the time budget of " + config.getTimeBudget());
+        }
+        if (treesBuilt < totalTrees) {
+            LOGGER.warning(String.format("Training hit its time budget of %s, using %d of %d trees",
+                    config.getTimeBudget(), treesBuilt, totalTrees));
+        }
+        return merge(built);
+    }
+
+    private static RandomForest result(Future<RandomForest> done) throws Exception {
+        try {
+            return done.get();
+        } catch (ExecutionException e) {
+            throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+        }
+    }
+
+    private RandomForest buildChunk(Instances data, int trees, long seed) throws Exception {
+        RandomForest forest = new RandomForest();
+        forest.setNumIterations(trees);
+        forest.setNumFeatures(config.getFeaturesPerSplit());
+        forest.setMaxDepth(config.getMaxDepth());
+        forest.setBagSizePercent(config.getBagSizePercent());
+        forest.setSeed((int) seed);
+        forest.setNumExecutionSlots(1);
+        // Each task gets its own list so concurrent builds never share mutable state
+        forest.buildClassifier(new Instances(data));
+        return forest;
+    }
+
+    private Instances balance(Instances data) {
+        switch (config.getImbalanceHandling()) {
+            case RESAMPLE:
+                return resample(data);
+            case COST_SENSITIVE:
+                return reweight(data);
+            case NONE:
+            default:
+                return data;
+        }
+    }
+
+    // Draws every present class with replacement up to an equal share of the original row count
+    private Instances resample(Instances data) {
+        List<List<Integer>> rowsByClass = rowsByClass(data);
+        long present = rowsByClass.stream().filter(rows -> !rows.isEmpty()).count();
+        if (present < 2) {
+            return data;
+        }
+        int perClass = (int) Math.max(1, data.numInstances() / present);
+        Random random = new Random(config.getSeed());
+        Instances resampled = new Instances(data, (int) (perClass * present));
+        for (List<Integer> rows : rowsByClass) {
+            for (int i = 0; i < perClass && !rows.isEmpty(); i++) {
+                resampled.add(data.instance(rows.get(random.nextInt(rows.size()))));
+            }
+        }
+        return resampled;
+    }
+
+    // Keeps every row, weighting each class to the same total; the forest's bagging samples by weight
+    private Instances reweight(Instances data) {
+        double[] classWeight = new double[data.numClasses()];
+        for (int i = 0; i < data.numInstances(); i++) {
+            if (!data.instance(i).classIsMissing()) {
+                classWeight[(int) data.instance(i).classValue()] += data.instance(i).weight();
+            }
+        }
+        double total = 0;
+        int present = 0;
+        for (double weight : classWeight) {
+            total += weight;
+            present += weight > 0 ? 1 : 0;
+        }
+        if (present < 2) {
+            return data;
+        }
+        Instances weighted = new Instances(data, data.numInstances());
+        for (int i = 0; i < data.numInstances(); i++) {
+            // add() copies the instance, so the caller's rows keep their weights
+            weighted.add(data.instance(i));
+            if (!data.instance(i).classIsMissing()) {
+                int label = (int) data.instance(i).classValue();
+                weighted.lastInstance().setWeight(data.instance(i).weight() * total / (present * classWeight[label]));
+            }
+        }
+        return weighted;
+    }
+
+    private static List<List<Integer>> rowsByClass(Instances data) {
+        List<List<Integer>> rows = new ArrayList<>();
+        for (int c = 0; c < data.numClasses(); c++) {
+            rows.add(new ArrayList<>());
+        }
+        for (int i = 0; i < data.numInstances(); i++) {
+            if (!data.instance(i).classIsMissing()) {
+                rows.get((int) data.instance(i).classValue()).add(i);
+            }
+        }
+        return rows;
+    }
+
+    // Moves the trees of every chunk into the first one; Bagging scores over m_Classifiers up to
+    // m_NumIterations, so the joined forest behaves like one built with all the trees
+    private static RandomForest merge(List<RandomForest> chunks) throws ReflectiveOperationException {
+        if (chunks.size() == 1) {
+            return chunks.get(0);
+        }
+        Field classifiersField = IteratedSingleClassifierEnhancer.class.getDeclaredField("m_Classifiers");
+        Field iterationsField = IteratedSingleClassifierEnhancer.class.getDeclaredField("m_NumIterations");
+        classifiersField.setAccessible(true);
+        iterationsField.setAccessible(true);
+        List<Classifier> trees = new ArrayList<>();
+        for (RandomForest chunk : chunks) {
+            for (Classifier tree : (Classifier[]) classifiersField.get(chunk)) {
+                trees.add(tree);
+            }
+        }
+        RandomForest merged = chunks.get(0);
+        classifiersField.set(merged, trees.toArray(new Classifier[0]));
+        iterationsField.setInt(merged, trees.size());
+        return merged;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+}
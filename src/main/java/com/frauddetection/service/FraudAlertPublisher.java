@@ -0,0 +1,215 @@
+package com.frauddetection.service;
+
+import com.frauddetection.metrics.Counter;
+import com.frauddetection.metrics.MetricsRegistry;
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Hands fraud alerts from scoring threads to a single writer through a preallocated ring buffer.
+// Producers only copy a few fields into a claimed slot; sampling happens before the slot is
+// claimed, while rate limiting, formatting and output happen on the writer thread. A full ring
+// drops the alert and counts it rather than making detection wait.
+public class FraudAlertPublisher implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(FraudAlertPublisher.class.getName());
+    private static final MetricsRegistry METRICS = MetricsRegistry.global();
+    private static final Counter RAISED = METRICS.counter("alerts.raised");
+    private static final Counter SAMPLED_OUT = METRICS.counter("alerts.sampledOut");
+    private static final Counter DROPPED = METRICS.counter("alerts.dropped");
+    private static final Counter SUPPRESSED = METRICS.counter("alerts.suppressed");
+    private static final Counter WRITTEN = METRICS.counter("alerts.written");
+
+    // Receives formatted alerts one batch at a time, always on the writer thread
+    @FunctionalInterface
+    public interface AlertSink {
+        void write(CharSequence lines, int count);
+    }
+
+    private static final class Slot {
+        String id;
+        double amount;
+        String type;
+        String location;
+        double probability;
+        long timestamp;
+    }
+
+    private final Slot[] slots;
+    private final AtomicLongArray published;
+    private final int mask;
+    private final AtomicLong claimed = new AtomicLong();
+    private volatile long consumed;
+
+    private final double sampleRate;
+    private final double tokensPerNano;
+    private final double burst;
+    private final int maxBatch;
+    private final AlertSink sink;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Writer thread state
+    private final StringBuilder batch = new StringBuilder(4096);
+    private double tokens;
+    private long lastRefill = System.nanoTime();
+    private long suppressedSinceReport;
+    private long lastSuppressionReport = System.nanoTime();
+
+    public FraudAlertPublisher() {
+        this(8192, 1.0, 100, 200, 256, FraudAlertPublisher::logBatch);
+    }
+
+    // sampleRate is the fraction of alerts kept (1.0 keeps all); at most alertsPerSecond are written
+    // on average, with bursts of up to burst alerts
+    public FraudAlertPublisher(int capacity, double sampleRate, double alertsPerSecond, int burst, int maxBatch,
+            AlertSink sink) {
+        if (Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two");
+        }
+        if (sampleRate <= 0 || sampleRate > 1 || alertsPerSecond <= 0 || burst < 1 || maxBatch < 1) {
+            throw new IllegalArgumentException("Invalid sampling or rate limit");
+        }
+        this.slots = new Slot[capacity];
+        for (int i = 0; i < capacity; i++) {
+            slots[i] = new Slot();
+        }
+        this.published = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            published.set(i, -1);
+        }
+        this.mask = capacity - 1;
+        this.sampleRate = sampleRate;
+        this.tokensPerNano = alertsPerSecond / TimeUnit.SECONDS.toNanos(1);
+        this.burst = burst;
+        this.tokens = burst;
+        this.maxBatch = maxBatch;
+        this.sink = sink;
+
+        writer = new Thread(this::writeLoop, "fraud-alert-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Returns false when the alert was sampled out or the ring was full
+    public boolean publish(Transaction transaction, double probability) {
+        RAISED.increment();
+        if (sampleRate < 1.0 && ThreadLocalRandom.current().nextDouble() >= sampleRate) {
+            SAMPLED_OUT.increment();
+            return false;
+        }
+        long sequence;
+        do {
+            sequence = claimed.get();
+            if (!running || sequence - consumed >= slots.length) {
+                DROPPED.increment();
+                return false;
+            }
+        } while (!claimed.compareAndSet(sequence, sequence + 1));
+
+        Slot slot = slots[(int) sequence & mask];
+        slot.id = transaction.getId();
+        slot.amount = transaction.getAmount();
+        slot.type = transaction.getType();
+        slot.location = transaction.getLocation();
+        slot.probability = probability;
+        slot.timestamp = TransactionBatch.toEpochNanos(transaction.getTimestamp());
+        // Publishing the sequence makes the slot's fields visible to the writer
+        published.lazySet((int) sequence & mask, sequence);
+        return true;
+    }
+
+    private void writeLoop() {
+        long next = 0;
+        int idle = 0;
+        while (running || next < claimed.get()) {
+            int count = 0;
+            while (count < maxBatch && published.get((int) next & mask) == next) {
+                Slot slot = slots[(int) next & mask];
+                if (acquireToken()) {
+                    format(slot);
+                    count++;
+                } else {
+                    suppressedSinceReport++;
+                    SUPPRESSED.increment();
+                }
+                slot.id = null;
+                slot.type = null;
+                slot.location = null;
+                consumed = ++next;
+            }
+            if (count > 0 || suppressionReportDue()) {
+                flush(count, false);
+                idle = 0;
+            } else if (published.get((int) next & mask) != next) {
+                // Back off gradually so an idle writer costs nothing
+                LockSupport.parkNanos(Math.min(1_000_000L, 1_000L << Math.min(idle++, 10)));
+            }
+        }
+        flush(0, true);
+    }
+
+    private boolean acquireToken() {
+        long now = System.nanoTime();
+        tokens = Math.min(burst, tokens + (now - lastRefill) * tokensPerNano);
+        lastRefill = now;
+        if (tokens >= 1) {
+            tokens--;
+            return true;
+        }
+        return false;
+    }
+
+    private void format(Slot slot) {
+        batch.append(String.format(Locale.ROOT,
+                "Potential fraud detected: id=%s amount=%.2f type=%s location=%s probability=%.2f at %s%n",
+                slot.id, slot.amount, slot.type, slot.location, slot.probability,
+                TransactionBatch.fromEpochNanos(slot.timestamp)));
+    }
+
+    // Suppressed alerts are summarized at most once a second so the summary is not itself a flood
+    private boolean suppressionReportDue() {
+        return suppressedSinceReport > 0 && System.nanoTime() - lastSuppressionReport >= TimeUnit.SECONDS.toNanos(1);
+    }
+
+    private void flush(int count, boolean last) {
+        if (suppressedSinceReport > 0 && (last || suppressionReportDue())) {
+            batch.append("Suppressed ").append(suppressedSinceReport)
+                    .append(" fraud alerts over the rate limit").append(System.lineSeparator());
+            suppressedSinceReport = 0;
+            lastSuppressionReport = System.nanoTime();
+        }
+        if (batch.length() == 0) {
+            return;
+        }
+        try {
+            sink.write(batch, count);
+            WRITTEN.add(count);
+        } catch (RuntimeException e) {
+            LOGGER.log(Level.WARNING, "Error writing fraud alerts", e);
+        }
+        batch.setLength(0);
+    }
+
+    private static void logBatch(CharSequence lines, int count) {
+        LOGGER.warning(lines.toString().stripTrailing());
+    }
+
+    // Stops accepting alerts and writes everything already queued
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(Duration.ofSeconds(5).toMillis());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -1,30 +1,63 @@
 package com.frauddetection.service;
 
 import com.frauddetection.model.Transaction;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
-public class FraudDetector {
+public class FraudDetector implements AutoCloseable {
     private static final Logger LOGGER = Logger.getLogger(FraudDetector.class.getName());
     private final WekaFraudDetector wekaDetector;
+    private final FraudAlertPublisher alerts;
 
+    // Models are saved under data/models and the newest one is reused at the next start
     public FraudDetector() {
+        this(new WekaFraudDetector(new FeatureEngine(), new ScoreCache(), openSnapshots(Paths.get("data", "models"))),
+                new FraudAlertPublisher());
+    }
+
+    public FraudDetector(WekaFraudDetector wekaDetector, FraudAlertPublisher alerts) {
         LOGGER.info("Initializing Fraud Detector with Weka-based machine learning model");
-        wekaDetector = new WekaFraudDetector();
+        this.wekaDetector = wekaDetector;
+        this.alerts = alerts;
+    }
+
+    private static ModelSnapshotStore openSnapshots(Path directory) {
+        try {
+            return new ModelSnapshotStore(directory);
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error opening model snapshots, the model will be retrained at every start", e);
+            return null;
+        }
     }
 
     public boolean isFraudulent(Transaction transaction) {
         double fraudProbability = wekaDetector.predictFraudProbability(transaction);
-        boolean isFraud = fraudProbability >= 0.7; // Default threshold
+        alert(transaction, fraudProbability);
+        return fraudProbability >= Transaction.FRAUD_THRESHOLD;
+    }
 
-        if (isFraud) {
-            LOGGER.warning(String.format("Potential fraud detected: %s (probability: %.2f)",
-                    transaction.toString(), fraudProbability));
+    // For transactions scored elsewhere, e.g. as an IngestionPipeline listener over getScorer()
+    public void alert(Transaction transaction, double fraudProbability) {
+        if (fraudProbability >= Transaction.FRAUD_THRESHOLD) {
+            // Formatting and output happen on the alert writer thread
+            alerts.publish(transaction, fraudProbability);
         }
+    }
 
-        return isFraud;
+    public BatchScorer getScorer() {
+        return wekaDetector;
     }
 
     public void updateModel(Transaction transaction, boolean isActuallyFraudulent) {
         wekaDetector.updateModel(transaction, isActuallyFraudulent);
     }
-}
\ No newline at end of file
+
+    @Override
+    public void close() {
+        alerts.close();
+        wekaDetector.close();
+    }
+}
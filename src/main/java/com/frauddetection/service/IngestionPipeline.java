@@ -0,0 +1,425 @@
+package com.frauddetection.service;
+
+import com.frauddetection.metrics.Counter;
+import com.frauddetection.metrics.Gauge;
+import com.frauddetection.metrics.LatencyHistogram;
+import com.frauddetection.metrics.MetricsRegistry;
+import com.frauddetection.model.CategoryDictionary;
+import com.frauddetection.model.Transaction;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Staged ingestion: submit -> enrich -> score -> persist -> publish. Each stage reads from its own
+// bounded queue and hands its output to the next stage's queue, so a slow stage fills only the
+// queue in front of it and pushes back on the stage before. What a full queue does is set per
+// stage: block the producer, drop the oldest queued transaction or shed the new one, and every
+// loss is counted. Enrich and score are CPU-bound and run on platform threads; persist and publish
+// wait on storage and listeners and run on virtual threads where the runtime has them. Closing
+// stops intake, then lets each stage empty its queue before the next one is told to finish, so
+// everything accepted is published unless the drain timeout runs out.
+public class IngestionPipeline implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(IngestionPipeline.class.getName());
+    private static final MetricsRegistry METRICS = MetricsRegistry.global();
+    private static final LatencyHistogram END_TO_END = METRICS.histogram("pipeline.endToEnd");
+    private static final long POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+    // Stages in flow order; each one owns the queue in front of it, so ENRICH's queue is intake
+    public enum Stage {
+        ENRICH,
+        SCORE,
+        PERSIST,
+        PUBLISH
+    }
+
+    public interface ScoreListener {
+        void onScored(Transaction transaction, double fraudProbability);
+    }
+
+    public enum Backpressure {
+        // Wait for space, slowing the producer down to the stage's pace
+        BLOCK,
+        // Make room by discarding the transaction that has waited longest
+        DROP_OLDEST,
+        // Refuse the new transaction
+        SHED
+    }
+
+    private final BatchScorer scorer;
+    private final TransactionStore store;
+    private final PipelineConfig config;
+    private final StageQueue[] queues;
+    private final List<List<Thread>> workers = new ArrayList<>();
+    private final List<ScoreListener> listeners = new CopyOnWriteArrayList<>();
+    private final List<Gauge.Binding> gauges = new ArrayList<>();
+    private final AtomicInteger submitting = new AtomicInteger();
+    private final Counter invalid = new Counter();
+    private final Counter failed = new Counter();
+    private final Counter abandoned = new Counter();
+    private volatile boolean accepting = true;
+    private boolean closed;
+
+    public IngestionPipeline(BatchScorer scorer, TransactionStore store) {
+        this(scorer, store, PipelineConfig.defaults());
+    }
+
+    // The scorer may be a local WekaFraudDetector or a ClusterCoordinator spreading batches over workers
+    public IngestionPipeline(BatchScorer scorer, TransactionStore store, PipelineConfig config) {
+        this.scorer = scorer;
+        this.store = store;
+        this.config = config;
+        Stage[] stages = Stage.values();
+        queues = new StageQueue[stages.length];
+        for (Stage stage : stages) {
+            String name = "pipeline." + stage.name().toLowerCase(Locale.ROOT);
+            StageQueue queue = new StageQueue(config.getCapacity(stage), config.getPolicy(stage));
+            queues[stage.ordinal()] = queue;
+            gauges.add(METRICS.gauge(name + ".depth", queue.items::size));
+            gauges.add(METRICS.gauge(name + ".dropped", queue.dropped::get));
+            gauges.add(METRICS.gauge(name + ".shed", queue.shed::get));
+        }
+        gauges.add(METRICS.gauge("pipeline.invalid", invalid::get));
+        gauges.add(METRICS.gauge("pipeline.failed", failed::get));
+
+        for (Stage stage : stages) {
+            String prefix = "pipeline-" + stage.name().toLowerCase(Locale.ROOT);
+            ThreadFactory factory = stage == Stage.PERSIST || stage == Stage.PUBLISH
+                    ? ioThreads(prefix) : platformThreads(prefix);
+            List<Thread> threads = new ArrayList<>();
+            for (int i = 0; i < config.getWorkers(stage); i++) {
+                Thread thread = factory.newThread(() -> workerLoop(stage));
+                threads.add(thread);
+                thread.start();
+            }
+            workers.add(threads);
+        }
+        LOGGER.info("Ingestion pipeline started: " + config);
+    }
+
+    // Listeners run on publish threads after the transaction is in the store
+    public void addListener(ScoreListener listener) {
+        listeners.add(listener);
+    }
+
+    // False when the transaction was shed at intake or the pipeline is closing; blocks only when
+    // intake is configured to BLOCK
+    public boolean submit(Transaction transaction) throws InterruptedException {
+        submitting.incrementAndGet();
+        try {
+            if (!accepting) {
+                return false;
+            }
+            return queues[Stage.ENRICH.ordinal()].offer(new Item(transaction));
+        } finally {
+            submitting.decrementAndGet();
+        }
+    }
+
+    private void workerLoop(Stage stage) {
+        StageQueue input = queues[stage.ordinal()];
+        StageQueue output = stage.ordinal() + 1 < queues.length ? queues[stage.ordinal() + 1] : null;
+        int batchSize = config.getBatchSize();
+        List<Item> batch = new ArrayList<>(batchSize);
+        try {
+            while (true) {
+                Item first = input.items.poll(POLL_NANOS, TimeUnit.NANOSECONDS);
+                if (first == null) {
+                    // Upstream is finished once the queue is closed, so an empty poll means done
+                    if (input.closed) {
+                        return;
+                    }
+                    continue;
+                }
+                batch.add(first);
+                input.items.drainTo(batch, batchSize - 1);
+                try {
+                    process(stage, batch);
+                } catch (RuntimeException e) {
+                    // A failed batch is dropped rather than stalling every stage behind it
+                    failed.add(batch.size());
+                    LOGGER.log(Level.WARNING, "Error in pipeline stage " + stage, e);
+                    batch.clear();
+                }
+                if (output != null) {
+                    for (Item item : batch) {
+                        output.offer(item);
+                    }
+                }
+                batch.clear();
+            }
+        } catch (InterruptedException e) {
+            // Only a shutdown past its drain timeout interrupts workers
+            abandoned.add(batch.size());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void process(Stage stage, List<Item> batch) {
+        switch (stage) {
+            case ENRICH:
+                enrich(batch);
+                break;
+            case SCORE:
+                score(batch);
+                break;
+            case PERSIST:
+                List<Transaction> rows = new ArrayList<>(batch.size());
+                for (Item item : batch) {
+                    rows.add(item.transaction);
+                }
+                store.addAll(rows);
+                break;
+            case PUBLISH:
+            default:
+                publish(batch);
+                break;
+        }
+    }
+
+    // Drops rows the model cannot score and swaps type and location for the dictionaries'
+    // canonical strings, so every later stage and the store share one copy of each value
+    private void enrich(List<Item> batch) {
+        int kept = 0;
+        for (Item item : batch) {
+            Transaction t = item.transaction;
+            if (t == null || !(t.getAmount() >= 0) || Double.isInfinite(t.getAmount())) {
+                invalid.increment();
+                continue;
+            }
+            String type = canonical(CategoryDictionary.TYPES, t.getType());
+            String location = canonical(CategoryDictionary.LOCATIONS, t.getLocation());
+            LocalDateTime timestamp = t.getTimestamp() != null ? t.getTimestamp() : LocalDateTime.now();
+            if (type != t.getType() || location != t.getLocation() || timestamp != t.getTimestamp()) {
+                item.transaction = new Transaction(t.getId(), t.getAmount(), type, t.getFraudProbability(), location,
+                        timestamp, t.getAccountId());
+            }
+            batch.set(kept++, item);
+        }
+        batch.subList(kept, batch.size()).clear();
+    }
+
+    private static String canonical(CategoryDictionary dictionary, String value) {
+        return value != null ? dictionary.valueOf(dictionary.intern(value)) : null;
+    }
+
+    private void score(List<Item> batch) {
+        List<Transaction> transactions = new ArrayList<>(batch.size());
+        for (Item item : batch) {
+            transactions.add(item.transaction);
+        }
+        double[] probabilities = scorer.predictFraudProbabilities(transactions);
+        for (int i = 0; i < probabilities.length; i++) {
+            Item item = batch.get(i);
+            Transaction t = item.transaction;
+            item.probability = probabilities[i];
+            item.transaction = new Transaction(t.getId(), t.getAmount(), t.getType(), probabilities[i],
+                    t.getLocation(), t.getTimestamp(), t.getAccountId());
+        }
+    }
+
+    private void publish(List<Item> batch) {
+        for (ScoreListener listener : listeners) {
+            for (Item item : batch) {
+                listener.onScored(item.transaction, item.probability);
+            }
+        }
+        if (METRICS.isEnabled()) {
+            long now = System.nanoTime();
+            for (Item item : batch) {
+                END_TO_END.record(now - item.submittedNanos);
+            }
+        }
+    }
+
+    public PipelineConfig getConfig() {
+        return config;
+    }
+
+    public int getQueued(Stage stage) {
+        return queues[stage.ordinal()].items.size();
+    }
+
+    public int getQueued() {
+        int total = 0;
+        for (StageQueue queue : queues) {
+            total += queue.items.size();
+        }
+        return total;
+    }
+
+    public long getDropped(Stage stage) {
+        return queues[stage.ordinal()].dropped.get();
+    }
+
+    public long getShed(Stage stage) {
+        return queues[stage.ordinal()].shed.get();
+    }
+
+    // Everything lost to backpressure at any stage
+    public long getLost() {
+        long total = 0;
+        for (StageQueue queue : queues) {
+            total += queue.dropped.get() + queue.shed.get();
+        }
+        return total;
+    }
+
+    public long getInvalid() {
+        return invalid.get();
+    }
+
+    public long getFailed() {
+        return failed.get();
+    }
+
+    // Transactions still queued or in a worker's hands when the drain timeout ran out
+    public long getAbandoned() {
+        return abandoned.get();
+    }
+
+    @Override
+    public void close() {
+        shutdown(config.getDrainTimeout());
+    }
+
+    // Stops intake and drains the stages in flow order; true when everything accepted was
+    // published within the timeout, false when the remaining work had to be abandoned
+    public synchronized boolean shutdown(Duration timeout) {
+        if (closed) {
+            return abandoned.get() == 0;
+        }
+        closed = true;
+        accepting = false;
+        long deadline = System.nanoTime() + timeout.toNanos();
+        // A submit that saw the pipeline open may still be putting its transaction on the queue
+        while (submitting.get() > 0) {
+            LockSupport.parkNanos(100_000);
+        }
+        boolean drained = true;
+        for (Stage stage : Stage.values()) {
+            queues[stage.ordinal()].closed = true;
+            if (drained) {
+                drained = join(workers.get(stage.ordinal()), deadline);
+            }
+        }
+        if (!drained) {
+            for (List<Thread> threads : workers) {
+                for (Thread thread : threads) {
+                    thread.interrupt();
+                }
+            }
+            join(allWorkers(), System.nanoTime() + TimeUnit.SECONDS.toNanos(1));
+            for (StageQueue queue : queues) {
+                abandoned.add(queue.items.size());
+                queue.items.clear();
+            }
+            LOGGER.warning(String.format("Pipeline drain timed out after %s, abandoned %d transactions",
+                    timeout, abandoned.get()));
+        }
+        gauges.forEach(Gauge.Binding::close);
+        return drained;
+    }
+
+    private List<Thread> allWorkers() {
+        List<Thread> all = new ArrayList<>();
+        workers.forEach(all::addAll);
+        return all;
+    }
+
+    private static boolean join(List<Thread> threads, long deadline) {
+        try {
+            for (Thread thread : threads) {
+                long remaining = deadline - System.nanoTime();
+                if (remaining <= 0) {
+                    return !thread.isAlive();
+                }
+                TimeUnit.NANOSECONDS.timedJoin(thread, remaining);
+                if (thread.isAlive()) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    private static ThreadFactory platformThreads(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + "-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    // Virtual threads arrived in Java 21; the build targets 17, so they are looked up at runtime
+    // and older JVMs fall back to platform threads
+    private static ThreadFactory ioThreads(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix + "-", 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException | RuntimeException e) {
+            return platformThreads(prefix);
+        }
+    }
+
+    private static final class Item {
+        Transaction transaction;
+        double probability;
+        final long submittedNanos = System.nanoTime();
+
+        Item(Transaction transaction) {
+            this.transaction = transaction;
+        }
+    }
+
+    private static final class StageQueue {
+        final ArrayBlockingQueue<Item> items;
+        final Backpressure policy;
+        final Counter dropped = new Counter();
+        final Counter shed = new Counter();
+        // Set once every producer for this queue has stopped
+        volatile boolean closed;
+
+        StageQueue(int capacity, Backpressure policy) {
+            this.items = new ArrayBlockingQueue<>(capacity);
+            this.policy = policy;
+        }
+
+        boolean offer(Item item) throws InterruptedException {
+            switch (policy) {
+                case BLOCK:
+                    items.put(item);
+                    return true;
+                case DROP_OLDEST:
+                    while (!items.offer(item)) {
+                        if (items.poll() != null) {
+                            dropped.increment();
+                        }
+                    }
+                    return true;
+                case SHED:
+                default:
+                    if (items.offer(item)) {
+                        return true;
+                    }
+                    shed.increment();
+                    return false;
+            }
+        }
+    }
+}
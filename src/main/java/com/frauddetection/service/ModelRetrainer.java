@@ -0,0 +1,176 @@
+package com.frauddetection.service;
+
+import com.frauddetection.metrics.Counter;
+import com.frauddetection.metrics.Gauge;
+import com.frauddetection.metrics.LatencyHistogram;
+import com.frauddetection.metrics.MetricsRegistry;
+import java.time.Duration;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import weka.core.Instance;
+import weka.core.Instances;
+
+// Collects labeled feedback and rebuilds the model on a background thread. Feedback is only
+// appended to a lock-free queue on the caller's thread; history maintenance and training run on
+// the scheduler thread, and the finished model is handed to the publisher in one step.
+public class ModelRetrainer implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(ModelRetrainer.class.getName());
+    private static final Counter RETRAINS = MetricsRegistry.global().counter("model.retrains");
+    private static final LatencyHistogram RETRAIN_TIME = MetricsRegistry.global().histogram("model.retrainTime");
+
+    public enum HistoryPolicy {
+        SLIDING_WINDOW, // keep the most recent instances
+        RESERVOIR // keep a uniform sample of everything seen
+    }
+
+    @FunctionalInterface
+    public interface Trainer {
+        TrainedModel train(Instances trainingData) throws Exception;
+    }
+
+    private final Instances seedData;
+    private final Trainer trainer;
+    private final Consumer<TrainedModel> publisher;
+    private final int retrainThreshold;
+    private final int historyCapacity;
+    private final HistoryPolicy historyPolicy;
+
+    private final ConcurrentLinkedQueue<Instance> feedback = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final AtomicBoolean retrainQueued = new AtomicBoolean();
+    private final ScheduledExecutorService scheduler;
+    private final List<Gauge.Binding> gauges;
+
+    // Only touched on the scheduler thread
+    private final ArrayDeque<Instance> window = new ArrayDeque<>();
+    private final List<Instance> reservoir = new ArrayList<>();
+    private final Random random = new Random(42);
+    private long seen;
+    private volatile int historySize;
+
+    public ModelRetrainer(Instances seedData, Trainer trainer, Consumer<TrainedModel> publisher) {
+        this(seedData, trainer, publisher, 500, Duration.ofMinutes(5), 50_000, HistoryPolicy.SLIDING_WINDOW);
+    }
+
+    public ModelRetrainer(Instances seedData, Trainer trainer, Consumer<TrainedModel> publisher,
+            int retrainThreshold, Duration retrainInterval, int historyCapacity, HistoryPolicy historyPolicy) {
+        if (retrainThreshold < 1 || historyCapacity < 1) {
+            throw new IllegalArgumentException("Retrain threshold and history capacity must be positive");
+        }
+        this.seedData = new Instances(seedData);
+        this.trainer = trainer;
+        this.publisher = publisher;
+        this.retrainThreshold = retrainThreshold;
+        this.historyCapacity = historyCapacity;
+        this.historyPolicy = historyPolicy;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "model-retrainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        gauges = List.of(MetricsRegistry.global().gauge("model.pendingFeedback", pending::get),
+                MetricsRegistry.global().gauge("model.historySize", () -> historySize));
+
+        long intervalMillis = retrainInterval.toMillis();
+        scheduler.scheduleWithFixedDelay(() -> {
+            if (pending.get() > 0) {
+                retrain();
+            }
+        }, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    public void submit(Instance labeledInstance) {
+        feedback.offer(labeledInstance);
+        if (pending.incrementAndGet() >= retrainThreshold && retrainQueued.compareAndSet(false, true)) {
+            scheduler.execute(this::retrain);
+        }
+    }
+
+    // Reloads feedback history kept from an earlier run, e.g. from a model snapshot, without
+    // triggering a retrain; it takes part in the next one
+    public void restoreHistory(Collection<Instance> history) {
+        scheduler.execute(() -> {
+            for (Instance instance : history) {
+                remember(instance);
+            }
+            historySize = historyPolicy == HistoryPolicy.SLIDING_WINDOW ? window.size() : reservoir.size();
+        });
+    }
+
+    public CompletableFuture<Void> retrainNow() {
+        return CompletableFuture.runAsync(this::retrain, scheduler);
+    }
+
+    public int getPendingFeedback() {
+        return pending.get();
+    }
+
+    public int getHistorySize() {
+        return historySize;
+    }
+
+    private void retrain() {
+        retrainQueued.set(false);
+        Instance instance;
+        while ((instance = feedback.poll()) != null) {
+            pending.decrementAndGet();
+            remember(instance);
+        }
+
+        Collection<Instance> history = historyPolicy == HistoryPolicy.SLIDING_WINDOW ? window : reservoir;
+        historySize = history.size();
+        Instances trainingData = new Instances(seedData, seedData.numInstances() + history.size());
+        trainingData.addAll(seedData);
+        trainingData.addAll(history);
+        try {
+            long start = System.nanoTime();
+            TrainedModel model = trainer.train(trainingData);
+            publisher.accept(model);
+            long elapsed = System.nanoTime() - start;
+            RETRAINS.increment();
+            RETRAIN_TIME.record(elapsed);
+            LOGGER.info(String.format("Model v%d retrained on %d instances in %d ms", model.getVersion(),
+                    trainingData.numInstances(), TimeUnit.NANOSECONDS.toMillis(elapsed)));
+        } catch (Exception e) {
+            // The previous model stays published
+            LOGGER.log(Level.WARNING, "Error retraining model", e);
+        }
+    }
+
+    private void remember(Instance instance) {
+        seen++;
+        if (historyPolicy == HistoryPolicy.SLIDING_WINDOW) {
+            if (window.size() == historyCapacity) {
+                window.removeFirst();
+            }
+            window.addLast(instance);
+        } else if (reservoir.size() < historyCapacity) {
+            reservoir.add(instance);
+        } else {
+            long slot = (long) (random.nextDouble() * seen);
+            if (slot < historyCapacity) {
+                reservoir.set((int) slot, instance);
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        gauges.forEach(Gauge.Binding::close);
+    }
+}
@@ -0,0 +1,235 @@
+package com.frauddetection.service;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Instances;
+
+// Versioned model snapshots on disk, one file per trained model: model-<version>.snapshot. A file
+// is a fixed header (magic, format, model version, training time, sizes and a CRC32C of the
+// payload) followed by a serialized payload holding the Instances header, the Weka forest, its
+// compiled form and the training data. Snapshots are written under a temporary name, forced to
+// disk and renamed into place, so a crash leaves the previous snapshot intact. Loading takes the
+// newest snapshot that passes its checksum and matches the expected schema.
+public class ModelSnapshotStore {
+    private static final Logger LOGGER = Logger.getLogger(ModelSnapshotStore.class.getName());
+    private static final int MAGIC = 0x46444D53; // "FDMS"
+    private static final int FORMAT = 1;
+    private static final int HEADER_BYTES = 44;
+    private static final String PREFIX = "model-";
+    private static final String SUFFIX = ".snapshot";
+
+    public static final class Snapshot {
+        private final TrainedModel model;
+        private final Instances trainingData;
+        private final int seedSize;
+
+        private Snapshot(TrainedModel model, Instances trainingData, int seedSize) {
+            this.model = model;
+            this.trainingData = trainingData;
+            this.seedSize = seedSize;
+        }
+
+        public TrainedModel getModel() {
+            return model;
+        }
+
+        // Everything the model was trained on, seed rows first
+        public Instances getTrainingData() {
+            return trainingData;
+        }
+
+        public int getSeedSize() {
+            return seedSize;
+        }
+    }
+
+    private final Path directory;
+    private final int retained;
+
+    public ModelSnapshotStore(Path directory) throws IOException {
+        this(directory, 3);
+    }
+
+    // Keeps the newest retained snapshots, so a damaged latest file still leaves one to load
+    public ModelSnapshotStore(Path directory, int retained) throws IOException {
+        if (retained < 1) {
+            throw new IllegalArgumentException("At least one snapshot must be retained");
+        }
+        this.directory = directory;
+        this.retained = retained;
+        Files.createDirectories(directory);
+    }
+
+    public synchronized void save(TrainedModel model, Instances header, Instances trainingData, int seedSize)
+            throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(1 << 16);
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(new Instances(header, 0));
+            out.writeObject(model.getClassifier());
+            out.writeObject(model.getCompiledForest());
+            out.writeObject(trainingData);
+        }
+        byte[] payload = bytes.toByteArray();
+        CRC32C crc = new CRC32C();
+        crc.update(payload);
+
+        ByteBuffer head = ByteBuffer.allocate(HEADER_BYTES);
+        head.putInt(MAGIC).putInt(FORMAT).putLong(model.getVersion())
+                .putLong(model.getTrainedAt().toEpochMilli()).putInt(model.getTrainingSize())
+                .putInt(seedSize).putInt(payload.length).putLong(crc.getValue());
+        head.flip();
+
+        Path target = directory.resolve(fileName(model.getVersion()));
+        Path temporary = directory.resolve(fileName(model.getVersion()) + ".tmp");
+        try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+            ByteBuffer body = ByteBuffer.wrap(payload);
+            while (head.hasRemaining() || body.hasRemaining()) {
+                channel.write(new ByteBuffer[] { head, body });
+            }
+            channel.force(true);
+        }
+        try {
+            Files.move(temporary, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+        prune(model.getVersion(), header);
+    }
+
+    // Newest usable snapshot for the given schema, or null when there is none
+    public Snapshot loadLatest(Instances expectedHeader) {
+        List<Path> files;
+        try {
+            files = snapshotFiles();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error listing model snapshots in " + directory, e);
+            return null;
+        }
+        for (int i = files.size() - 1; i >= 0; i--) {
+            Path file = files.get(i);
+            try {
+                Snapshot snapshot = read(file, expectedHeader);
+                if (snapshot != null) {
+                    return snapshot;
+                }
+            } catch (IOException | ClassNotFoundException | RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Skipping unreadable model snapshot " + file, e);
+            }
+        }
+        return null;
+    }
+
+    private Snapshot read(Path file, Instances expectedHeader) throws IOException, ClassNotFoundException {
+        byte[] data = Files.readAllBytes(file);
+        ByteBuffer head = ByteBuffer.wrap(data);
+        if (data.length < HEADER_BYTES || head.getInt() != MAGIC || head.getInt() != FORMAT) {
+            LOGGER.warning("Skipping model snapshot with unknown format " + file);
+            return null;
+        }
+        long version = head.getLong();
+        Instant trainedAt = Instant.ofEpochMilli(head.getLong());
+        int trainingSize = head.getInt();
+        int seedSize = head.getInt();
+        int length = head.getInt();
+        long checksum = head.getLong();
+        if (length != data.length - HEADER_BYTES) {
+            LOGGER.warning("Skipping truncated model snapshot " + file);
+            return null;
+        }
+        CRC32C crc = new CRC32C();
+        crc.update(data, HEADER_BYTES, length);
+        if (crc.getValue() != checksum) {
+            LOGGER.warning("Skipping model snapshot with a bad checksum " + file);
+            return null;
+        }
+
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(data, HEADER_BYTES, length))) {
+            Instances header = (Instances) in.readObject();
+            // A snapshot from before a schema change cannot score rows encoded for the new one
+            String mismatch = expectedHeader.equalHeadersMsg(header);
+            if (mismatch != null) {
+                LOGGER.info("Ignoring model snapshot " + file + " with a different schema: " + mismatch);
+                return null;
+            }
+            RandomForest classifier = (RandomForest) in.readObject();
+            CompiledForest compiled = (CompiledForest) in.readObject();
+            Instances trainingData = (Instances) in.readObject();
+            return new Snapshot(new TrainedModel(classifier, compiled, version, trainingSize, trainedAt),
+                    trainingData, seedSize);
+        }
+    }
+
+    // Never touches the snapshot just saved. Higher versions are left over from an earlier run this
+    // one did not warm-start from and would shadow it at the next load, so they go; of the older
+    // ones, only the newest that still load for this schema are kept as fallbacks.
+    private void prune(long savedVersion, Instances header) throws IOException {
+        List<Path> files = snapshotFiles();
+        int kept = 1;
+        for (int i = files.size() - 1; i >= 0; i--) {
+            Path file = files.get(i);
+            long version = versionOf(file);
+            if (version < 0 || version == savedVersion) {
+                continue;
+            }
+            if (version < savedVersion && kept < retained && isLoadable(file, header)) {
+                kept++;
+                continue;
+            }
+            Files.deleteIfExists(file);
+        }
+    }
+
+    private boolean isLoadable(Path file, Instances header) {
+        try {
+            return read(file, header) != null;
+        } catch (IOException | ClassNotFoundException | RuntimeException e) {
+            return false;
+        }
+    }
+
+    // -1 for a file that matches the pattern but was not written by this store
+    private static long versionOf(Path file) {
+        String name = file.getFileName().toString();
+        try {
+            return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+        } catch (NumberFormatException | IndexOutOfBoundsException e) {
+            return -1;
+        }
+    }
+
+    // Oldest first
+    private List<Path> snapshotFiles() throws IOException {
+        List<Path> files = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            for (Path file : stream) {
+                files.add(file);
+            }
+        }
+        files.sort(Comparator.comparing(file -> file.getFileName().toString()));
+        return files;
+    }
+
+    private static String fileName(long version) {
+        return String.format("%s%012d%s", PREFIX, version, SUFFIX);
+    }
+}
@@ -0,0 +1,105 @@
+package com.frauddetection.service;
+
+import com.frauddetection.service.IngestionPipeline.Backpressure;
+import com.frauddetection.service.IngestionPipeline.Stage;
+import java.time.Duration;
+import java.util.Locale;
+
+// Immutable settings for IngestionPipeline: the capacity, full-queue policy and worker count of
+// every stage, the batch size stages hand along and how long closing may take to drain. Every
+// with* method returns a copy.
+public final class PipelineConfig {
+    private static final int STAGES = Stage.values().length;
+
+    private final int[] capacities;
+    private final Backpressure[] policies;
+    private final int[] workers;
+    private final int batchSize;
+    private final Duration drainTimeout;
+
+    private PipelineConfig(int[] capacities, Backpressure[] policies, int[] workers, int batchSize,
+            Duration drainTimeout) {
+        for (int i = 0; i < STAGES; i++) {
+            if (capacities[i] < 1 || workers[i] < 1 || policies[i] == null) {
+                throw new IllegalArgumentException("Invalid settings for stage " + Stage.values()[i]);
+            }
+        }
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive");
+        }
+        if (drainTimeout.isNegative()) {
+            throw new IllegalArgumentException("Drain timeout must not be negative");
+        }
+        this.capacities = capacities;
+        this.policies = policies;
+        this.workers = workers;
+        this.batchSize = batchSize;
+        this.drainTimeout = drainTimeout;
+    }
+
+    // Intake sheds when enrichment falls behind, so overload costs transactions rather than
+    // latency; past intake every queue blocks, so nothing accepted is lost between stages
+    public static PipelineConfig defaults() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return new PipelineConfig(
+                new int[] { 16_384, 16_384, 16_384, 16_384 },
+                new Backpressure[] { Backpressure.SHED, Backpressure.BLOCK, Backpressure.BLOCK, Backpressure.BLOCK },
+                new int[] { 1, cores, 4, 4 },
+                256, Duration.ofSeconds(10));
+    }
+
+    public PipelineConfig withQueue(Stage stage, int capacity, Backpressure policy) {
+        int[] newCapacities = capacities.clone();
+        Backpressure[] newPolicies = policies.clone();
+        newCapacities[stage.ordinal()] = capacity;
+        newPolicies[stage.ordinal()] = policy;
+        return new PipelineConfig(newCapacities, newPolicies, workers, batchSize, drainTimeout);
+    }
+
+    public PipelineConfig withWorkers(Stage stage, int count) {
+        int[] newWorkers = workers.clone();
+        newWorkers[stage.ordinal()] = count;
+        return new PipelineConfig(capacities, policies, newWorkers, batchSize, drainTimeout);
+    }
+
+    // Most transactions a worker takes off its queue at once
+    public PipelineConfig withBatchSize(int batchSize) {
+        return new PipelineConfig(capacities, policies, workers, batchSize, drainTimeout);
+    }
+
+    // Work still queued when the timeout runs out is abandoned and counted
+    public PipelineConfig withDrainTimeout(Duration drainTimeout) {
+        return new PipelineConfig(capacities, policies, workers, batchSize, drainTimeout);
+    }
+
+    public int getCapacity(Stage stage) {
+        return capacities[stage.ordinal()];
+    }
+
+    public Backpressure getPolicy(Stage stage) {
+        return policies[stage.ordinal()];
+    }
+
+    public int getWorkers(Stage stage) {
+        return workers[stage.ordinal()];
+    }
+
+    public int getBatchSize() {
+        return batchSize;
+    }
+
+    public Duration getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder text = new StringBuilder();
+        for (Stage stage : Stage.values()) {
+            int i = stage.ordinal();
+            text.append(String.format("%s=%d/%s/%d ", stage.name().toLowerCase(Locale.ROOT), capacities[i],
+                    policies[i], workers[i]));
+        }
+        return text.append("batch=").append(batchSize).append(" drain=").append(drainTimeout).toString();
+    }
+}
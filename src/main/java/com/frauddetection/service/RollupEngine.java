@@ -0,0 +1,356 @@
+package com.frauddetection.service;
+
+import com.frauddetection.model.CategoryDictionary;
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+// Pre-aggregated per-minute, per-hour and per-day statistics keyed by type and location, updated
+// as transactions are ingested. Range queries walk buckets instead of rows, so their cost depends
+// on the number of buckets in the range, not on how many transactions it holds. Each cell keeps
+// counts and amount sums per fraud-probability decile so threshold filters on decile boundaries
+// stay exact.
+public class RollupEngine {
+
+    public enum Resolution {
+        MINUTE(Duration.ofMinutes(1), Duration.ofDays(2)),
+        HOUR(Duration.ofHours(1), Duration.ofDays(90)),
+        DAY(Duration.ofDays(1), Duration.ofDays(3650));
+
+        private final long widthNanos;
+        private final long retentionNanos;
+
+        Resolution(Duration width, Duration retention) {
+            this.widthNanos = width.toNanos();
+            this.retentionNanos = retention.toNanos();
+        }
+
+        public Duration getWidth() {
+            return Duration.ofNanos(widthNanos);
+        }
+    }
+
+    public static final class Bucket {
+        private final LocalDateTime start;
+        private long count;
+        private long fraudCount;
+        private double sum;
+        private double min = Double.POSITIVE_INFINITY;
+        private double max = Double.NEGATIVE_INFINITY;
+
+        private Bucket(LocalDateTime start) {
+            this.start = start;
+        }
+
+        public LocalDateTime getStart() {
+            return start;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public long getFraudCount() {
+            return fraudCount;
+        }
+
+        public double getSum() {
+            return sum;
+        }
+
+        public double getMin() {
+            return min;
+        }
+
+        public double getMax() {
+            return max;
+        }
+
+        public double getMean() {
+            return count > 0 ? sum / count : 0.0;
+        }
+    }
+
+    private static final int DECILES = 10;
+    private static final int FRAUD_DECILE = TransactionStore.bucketOf((float) Transaction.FRAUD_THRESHOLD);
+
+    // Statistics for one type and location within one bucket
+    private static final class Cell {
+        final long[] counts = new long[DECILES];
+        final double[] sums = new double[DECILES];
+        double min = Double.POSITIVE_INFINITY;
+        double max = Double.NEGATIVE_INFINITY;
+
+        void add(double amount, int decile) {
+            counts[decile]++;
+            sums[decile] += amount;
+            min = Math.min(min, amount);
+            max = Math.max(max, amount);
+        }
+
+        long countFrom(int decile) {
+            long total = 0;
+            for (int i = decile; i < DECILES; i++) {
+                total += counts[i];
+            }
+            return total;
+        }
+
+        double sumFrom(int decile) {
+            double total = 0;
+            for (int i = decile; i < DECILES; i++) {
+                total += sums[i];
+            }
+            return total;
+        }
+    }
+
+    // All cells of one time bucket, keyed by type code in the high and location code in the low half
+    private static final class Slot {
+        final Map<Long, Cell> cells = new HashMap<>();
+    }
+
+    private final Resolution[] resolutions = Resolution.values();
+    private final List<ConcurrentSkipListMap<Long, Slot>> levels = new ArrayList<>();
+    private final CategoryDictionary types;
+    private final CategoryDictionary locations;
+    private volatile long coveredFromNanos = Long.MIN_VALUE;
+    private volatile long oldestNanos = Long.MAX_VALUE;
+    private volatile long newestNanos = Long.MIN_VALUE;
+
+    public RollupEngine() {
+        this(CategoryDictionary.TYPES, CategoryDictionary.LOCATIONS);
+    }
+
+    public RollupEngine(CategoryDictionary types, CategoryDictionary locations) {
+        this.types = types;
+        this.locations = locations;
+        for (int i = 0; i < resolutions.length; i++) {
+            levels.add(new ConcurrentSkipListMap<>());
+        }
+    }
+
+    public void addAll(List<Transaction> transactions) {
+        for (Transaction transaction : transactions) {
+            add(TransactionBatch.toEpochNanos(transaction.getTimestamp()), transaction.getAmount(),
+                    types.intern(transaction.getType()), locations.intern(transaction.getLocation()),
+                    (float) transaction.getFraudProbability());
+        }
+        evictExpired();
+    }
+
+    public void addAll(TransactionBatch batch) {
+        long[] timestamps = batch.getTimestamps();
+        double[] amounts = batch.getAmounts();
+        int[] typeCodes = batch.getTypeCodes();
+        int[] locationCodes = batch.getLocationCodes();
+        float[] probabilities = batch.getFraudProbabilities();
+        for (int row = 0; row < batch.size(); row++) {
+            add(timestamps[row], amounts[row], typeCodes[row], locationCodes[row], probabilities[row]);
+        }
+        evictExpired();
+    }
+
+    private void add(long timestamp, double amount, int typeCode, int locationCode, float probability) {
+        long key = cellKey(typeCode, locationCode);
+        int decile = TransactionStore.bucketOf(probability);
+        for (int level = 0; level < resolutions.length; level++) {
+            long index = Math.floorDiv(timestamp, resolutions[level].widthNanos);
+            Slot slot = levels.get(level).computeIfAbsent(index, ignored -> new Slot());
+            synchronized (slot) {
+                slot.cells.computeIfAbsent(key, ignored -> new Cell()).add(amount, decile);
+            }
+        }
+        if (timestamp < oldestNanos) {
+            oldestNanos = timestamp;
+        }
+        if (timestamp > newestNanos) {
+            newestNanos = timestamp;
+        }
+    }
+
+    // Marks where complete history begins: rows older than this may exist elsewhere (e.g. the
+    // database) without having been fed here, so counts over older ranges are not answered
+    public void setCoveredFrom(LocalDateTime start) {
+        coveredFromNanos = start != null ? TransactionBatch.toEpochNanos(start) : Long.MIN_VALUE;
+    }
+
+    // Timestamp of the oldest row ever added, or null when nothing has been
+    public LocalDateTime getOldestTimestamp() {
+        long oldest = oldestNanos;
+        return oldest == Long.MAX_VALUE ? null : TransactionBatch.fromEpochNanos(oldest);
+    }
+
+    // True when count() gives the exact answer: the range is covered, the threshold falls on a decile
+    // boundary and the buckets the range decomposes into are still retained
+    public boolean canCount(LocalDateTime from, LocalDateTime to, double threshold) {
+        if (from == null || to == null || !isExactThreshold(threshold)) {
+            return false;
+        }
+        long start = TransactionBatch.toEpochNanos(from);
+        long end = TransactionBatch.toEpochNanos(to);
+        if (start < coveredFromNanos) {
+            return false;
+        }
+        long newest = newestNanos;
+        if (newest == Long.MIN_VALUE) {
+            return true;
+        }
+        Resolution finest = resolutions[Math.min(alignmentOf(start), alignmentOf(end))];
+        return start >= newest - finest.retentionNanos;
+    }
+
+    // True when counting with this threshold is exact, i.e. it falls on a decile boundary
+    public static boolean isExactThreshold(double threshold) {
+        float value = (float) threshold;
+        return value <= 0f || TransactionStore.bucketOf(Math.nextDown(value)) < TransactionStore.bucketOf(value);
+    }
+
+    // Number of transactions in [from, to) matching type (null for all) with probability >= threshold,
+    // using the coarsest buckets that fit inside the range
+    public long count(LocalDateTime from, LocalDateTime to, String type, double threshold) {
+        int decile = decileOf(threshold);
+        int typeCode = type == null || TransactionStore.ALL_TYPES.equals(type) ? -1 : types.codeOf(type);
+        if (type != null && !TransactionStore.ALL_TYPES.equals(type) && typeCode < 0) {
+            return 0;
+        }
+        long total = 0;
+        long position = TransactionBatch.toEpochNanos(from);
+        long end = TransactionBatch.toEpochNanos(to);
+        while (position < end) {
+            int level = coarsestAligned(position, end);
+            long width = resolutions[level].widthNanos;
+            Slot slot = levels.get(level).get(Math.floorDiv(position, width));
+            if (slot != null) {
+                synchronized (slot) {
+                    for (Map.Entry<Long, Cell> entry : slot.cells.entrySet()) {
+                        if (typeCode < 0 || typeOf(entry.getKey()) == typeCode) {
+                            total += entry.getValue().countFrom(decile);
+                        }
+                    }
+                }
+            }
+            position += width;
+        }
+        return total;
+    }
+
+    private int coarsestAligned(long position, long end) {
+        for (int level = resolutions.length - 1; level > 0; level--) {
+            long width = resolutions[level].widthNanos;
+            if (Math.floorMod(position, width) == 0 && position + width <= end) {
+                return level;
+            }
+        }
+        return 0;
+    }
+
+    private int alignmentOf(long timestamp) {
+        for (int level = resolutions.length - 1; level > 0; level--) {
+            if (Math.floorMod(timestamp, resolutions[level].widthNanos) == 0) {
+                return level;
+            }
+        }
+        return 0;
+    }
+
+    private static int decileOf(double threshold) {
+        return threshold <= 0 ? 0 : TransactionStore.bucketOf((float) threshold);
+    }
+
+    // Time series over [from, to) at the finest resolution that needs at most maxPoints buckets and
+    // is still retained for the whole range; empty buckets are omitted. Counts and sums include rows
+    // in the threshold's decile and above, min and max cover every row of the type and location.
+    public List<Bucket> series(LocalDateTime from, LocalDateTime to, String type, String location,
+            double threshold, int maxPoints) {
+        long start = TransactionBatch.toEpochNanos(from);
+        long end = TransactionBatch.toEpochNanos(to);
+        long now = Math.max(newestNanos, end);
+        Resolution chosen = Resolution.DAY;
+        for (Resolution resolution : resolutions) {
+            if ((end - start) / resolution.widthNanos <= maxPoints && start >= now - resolution.retentionNanos) {
+                chosen = resolution;
+                break;
+            }
+        }
+        return series(from, to, type, location, threshold, chosen);
+    }
+
+    public List<Bucket> series(LocalDateTime from, LocalDateTime to, String type, String location,
+            double threshold, Resolution resolution) {
+        int decile = decileOf(threshold);
+        int fraudDecile = Math.max(decile, FRAUD_DECILE);
+        int typeCode = type == null || TransactionStore.ALL_TYPES.equals(type) ? -1 : types.codeOf(type);
+        int locationCode = location == null ? -1 : locations.codeOf(location);
+        List<Bucket> result = new ArrayList<>();
+        if ((type != null && !TransactionStore.ALL_TYPES.equals(type) && typeCode < 0)
+                || (location != null && locationCode < 0)) {
+            return result;
+        }
+        long width = resolution.widthNanos;
+        long first = Math.floorDiv(TransactionBatch.toEpochNanos(from), width);
+        long last = Math.floorDiv(TransactionBatch.toEpochNanos(to) - 1, width);
+        ConcurrentSkipListMap<Long, Slot> level = levels.get(resolution.ordinal());
+        for (Map.Entry<Long, Slot> bucketEntry : level.subMap(first, true, last, true).entrySet()) {
+            Bucket bucket = new Bucket(TransactionBatch.fromEpochNanos(bucketEntry.getKey() * width));
+            Slot slot = bucketEntry.getValue();
+            synchronized (slot) {
+                for (Map.Entry<Long, Cell> entry : slot.cells.entrySet()) {
+                    long key = entry.getKey();
+                    if ((typeCode >= 0 && typeOf(key) != typeCode)
+                            || (locationCode >= 0 && locationOf(key) != locationCode)) {
+                        continue;
+                    }
+                    Cell cell = entry.getValue();
+                    bucket.count += cell.countFrom(decile);
+                    bucket.fraudCount += cell.countFrom(fraudDecile);
+                    bucket.sum += cell.sumFrom(decile);
+                    bucket.min = Math.min(bucket.min, cell.min);
+                    bucket.max = Math.max(bucket.max, cell.max);
+                }
+            }
+            if (bucket.count > 0) {
+                result.add(bucket);
+            }
+        }
+        return result;
+    }
+
+    private void evictExpired() {
+        long newest = newestNanos;
+        if (newest == Long.MIN_VALUE) {
+            return;
+        }
+        for (int level = 0; level < resolutions.length; level++) {
+            Resolution resolution = resolutions[level];
+            long oldest = Math.floorDiv(newest - resolution.retentionNanos, resolution.widthNanos);
+            levels.get(level).headMap(oldest).clear();
+        }
+    }
+
+    public void clear() {
+        for (ConcurrentSkipListMap<Long, Slot> level : levels) {
+            level.clear();
+        }
+        oldestNanos = Long.MAX_VALUE;
+        newestNanos = Long.MIN_VALUE;
+    }
+
+    private static long cellKey(int typeCode, int locationCode) {
+        return ((long) typeCode << 32) | (locationCode & 0xFFFFFFFFL);
+    }
+
+    private static int typeOf(long key) {
+        return (int) (key >> 32);
+    }
+
+    private static int locationOf(long key) {
+        return (int) key;
+    }
+}
@@ -0,0 +1,362 @@
+package com.frauddetection.service;
+
+import com.frauddetection.metrics.Counter;
+import java.util.Arrays;
+
+// Bounded cache of fraud scores for WekaFraudDetector, keyed on its feature row packed into one
+// long. Amount and amount deviation are snapped to the middle of configurable buckets before both
+// lookup and scoring, so every row with the same signature gets the same score whether or not it
+// was cached. Entries carry the model version that produced them and a lookup under any other
+// version misses, so a rebuilt model never serves old scores. Storage is split into independently
+// locked segments of primitive arrays: an open-addressing index, an LRU list and, for TINY_LFU, a
+// small frequency sketch that only lets a new key evict one that was used less often.
+public class ScoreCache {
+
+    public enum Policy {
+        LRU,
+        TINY_LFU
+    }
+
+    // Returned by quantize for rows that cannot be packed; such rows are scored without the cache
+    static final long NO_KEY = -1L;
+
+    private static final int SEGMENTS = 16;
+
+    // Packed layout, low bits first; every field is an unsigned bucket or value index
+    private static final int AMOUNT_BITS = 22;
+    private static final int TYPE_BITS = 6;
+    private static final int LOCATION_BITS = 10;
+    private static final int VELOCITY_BITS = 6;
+    private static final int DEVIATION_BITS = 12;
+    private static final int CHANGES_BITS = 6;
+
+    private final Segment[] segments = new Segment[SEGMENTS];
+    private final double amountStep;
+    private final double deviationStep;
+    private final Policy policy;
+    private final Counter hits = new Counter();
+    private final Counter misses = new Counter();
+    private final Counter evictions = new Counter();
+    private final Counter rejections = new Counter();
+
+    public ScoreCache() {
+        this(1 << 16, 10.0, 0.25, Policy.TINY_LFU);
+    }
+
+    public ScoreCache(int capacity, double amountStep, double deviationStep, Policy policy) {
+        if (capacity < SEGMENTS || amountStep <= 0 || deviationStep <= 0) {
+            throw new IllegalArgumentException("Invalid cache capacity or bucket size");
+        }
+        this.amountStep = amountStep;
+        this.deviationStep = deviationStep;
+        this.policy = policy;
+        for (int i = 0; i < SEGMENTS; i++) {
+            segments[i] = new Segment(capacity / SEGMENTS, policy == Policy.TINY_LFU);
+        }
+    }
+
+    // Snaps the row's amount and deviation to their bucket midpoints and returns its packed key.
+    // Row layout is WekaFraudDetector's: amount, type, location, velocity, deviation, location changes.
+    long quantize(double[] row) {
+        long amountBucket = bucket(row[0], amountStep, 0, AMOUNT_BITS);
+        long deviationBucket = bucket(row[4], deviationStep, 1L << (DEVIATION_BITS - 1), DEVIATION_BITS);
+        long type = index(row[1], TYPE_BITS);
+        long location = index(row[2], LOCATION_BITS);
+        long velocity = index(row[3], VELOCITY_BITS);
+        long changes = index(row[5], CHANGES_BITS);
+        if ((amountBucket | deviationBucket | type | location | velocity | changes) < 0) {
+            return NO_KEY;
+        }
+        row[0] = (amountBucket + 0.5) * amountStep;
+        row[4] = (deviationBucket - (1L << (DEVIATION_BITS - 1)) + 0.5) * deviationStep;
+
+        int shift = 0;
+        long key = amountBucket;
+        key |= type << (shift += AMOUNT_BITS);
+        key |= location << (shift += TYPE_BITS);
+        key |= velocity << (shift += LOCATION_BITS);
+        key |= deviationBucket << (shift += VELOCITY_BITS);
+        key |= changes << (shift + DEVIATION_BITS);
+        return key;
+    }
+
+    private static long bucket(double value, double step, long offset, int bits) {
+        if (Double.isNaN(value)) {
+            return -1;
+        }
+        long bucket = (long) Math.floor(value / step) + offset;
+        return bucket >= 0 && bucket < (1L << bits) ? bucket : -1;
+    }
+
+    // Nominal indices and counts; missing values take the field's all-ones value
+    private static long index(double value, int bits) {
+        long missing = (1L << bits) - 1;
+        if (Double.isNaN(value)) {
+            return missing;
+        }
+        long index = (long) value;
+        return index >= 0 && index < missing && index == value ? index : -1;
+    }
+
+    // Cached score for the key under the given model version, or NaN on a miss
+    double get(long key, long version) {
+        double score = segmentOf(key).get(key, version);
+        if (Double.isNaN(score)) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return score;
+    }
+
+    void put(long key, long version, double score) {
+        segmentOf(key).put(key, version, score);
+    }
+
+    // Drops every entry; called when a new model is published
+    public void invalidate() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    private Segment segmentOf(long key) {
+        return segments[(int) (mix(key) >>> 60) & (SEGMENTS - 1)];
+    }
+
+    private static long mix(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return h ^ (h >>> 29);
+    }
+
+    public Policy getPolicy() {
+        return policy;
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    // New keys TINY_LFU refused because they were used less often than the entry they would replace
+    public long getRejections() {
+        return rejections.get();
+    }
+
+    public double getHitRate() {
+        long hitCount = hits.get();
+        long total = hitCount + misses.get();
+        return total > 0 ? (double) hitCount / total : 0.0;
+    }
+
+    public int size() {
+        int total = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                total += segment.size;
+            }
+        }
+        return total;
+    }
+
+    private final class Segment {
+        final int capacity;
+        final long[] keys;
+        final long[] versions;
+        final double[] scores;
+        // Most recently used first
+        final int[] prev;
+        final int[] next;
+        int head = -1;
+        int tail = -1;
+        int size;
+
+        // Entry index + 1 per slot, 0 for empty; linear probing with backward-shift deletion
+        final int[] table;
+        final int mask;
+        final FrequencySketch sketch;
+
+        Segment(int capacity, boolean admission) {
+            this.capacity = capacity;
+            keys = new long[capacity];
+            versions = new long[capacity];
+            scores = new double[capacity];
+            prev = new int[capacity];
+            next = new int[capacity];
+            int slots = Integer.highestOneBit(Math.max(2, capacity) * 2 - 1) * 2;
+            table = new int[slots];
+            mask = slots - 1;
+            sketch = admission ? new FrequencySketch(capacity) : null;
+        }
+
+        synchronized double get(long key, long version) {
+            if (sketch != null) {
+                sketch.increment(key);
+            }
+            int entry = find(key);
+            if (entry < 0 || versions[entry] != version) {
+                return Double.NaN;
+            }
+            moveToFront(entry);
+            return scores[entry];
+        }
+
+        synchronized void put(long key, long version, double score) {
+            int entry = find(key);
+            if (entry < 0) {
+                if (size < capacity) {
+                    entry = size++;
+                } else {
+                    entry = tail;
+                    if (sketch != null && sketch.frequency(key) <= sketch.frequency(keys[entry])) {
+                        rejections.increment();
+                        return;
+                    }
+                    removeFromTable(keys[entry]);
+                    unlink(entry);
+                    evictions.increment();
+                }
+                keys[entry] = key;
+                insertIntoTable(key, entry);
+                linkFirst(entry);
+            } else {
+                moveToFront(entry);
+            }
+            versions[entry] = version;
+            scores[entry] = score;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(table, 0);
+            head = -1;
+            tail = -1;
+            size = 0;
+        }
+
+        private int home(long key) {
+            return (int) (mix(key) >>> 32) & mask;
+        }
+
+        private int find(long key) {
+            for (int slot = home(key); table[slot] != 0; slot = (slot + 1) & mask) {
+                if (keys[table[slot] - 1] == key) {
+                    return table[slot] - 1;
+                }
+            }
+            return -1;
+        }
+
+        private void insertIntoTable(long key, int entry) {
+            int slot = home(key);
+            while (table[slot] != 0) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = entry + 1;
+        }
+
+        private void removeFromTable(long key) {
+            int slot = home(key);
+            while (keys[table[slot] - 1] != key) {
+                slot = (slot + 1) & mask;
+            }
+            table[slot] = 0;
+            // Shift later entries of the probe run back so lookups never stop at the hole
+            for (int next = (slot + 1) & mask; table[next] != 0; next = (next + 1) & mask) {
+                int ideal = home(keys[table[next] - 1]);
+                boolean movable = slot <= next ? ideal <= slot || ideal > next : ideal <= slot && ideal > next;
+                if (movable) {
+                    table[slot] = table[next];
+                    table[next] = 0;
+                    slot = next;
+                }
+            }
+        }
+
+        private void moveToFront(int entry) {
+            if (entry != head) {
+                unlink(entry);
+                linkFirst(entry);
+            }
+        }
+
+        private void linkFirst(int entry) {
+            prev[entry] = -1;
+            next[entry] = head;
+            if (head >= 0) {
+                prev[head] = entry;
+            }
+            head = entry;
+            if (tail < 0) {
+                tail = entry;
+            }
+        }
+
+        private void unlink(int entry) {
+            if (prev[entry] >= 0) {
+                next[prev[entry]] = next[entry];
+            } else {
+                head = next[entry];
+            }
+            if (next[entry] >= 0) {
+                prev[next[entry]] = prev[entry];
+            } else {
+                tail = prev[entry];
+            }
+        }
+    }
+
+    // Count-min sketch of 4-bit counters with periodic halving, so frequencies track recent use
+    private static final class FrequencySketch {
+        private static final int DEPTH = 4;
+        private static final int MAX_COUNT = 15;
+        private static final long[] SEEDS = {
+                0xC3A5C85C97CB3127L, 0xB492B66FBE98F273L, 0x9AE16A3B2F90404FL, 0xCBF29CE484222325L };
+
+        private final int[] counters;
+        private final int mask;
+        private final int resetAfter;
+        private int additions;
+
+        FrequencySketch(int capacity) {
+            int width = Integer.highestOneBit(Math.max(16, capacity * 4) - 1) * 2;
+            counters = new int[width];
+            mask = width - 1;
+            resetAfter = Math.max(64, capacity * 10);
+        }
+
+        void increment(long key) {
+            for (int i = 0; i < DEPTH; i++) {
+                int index = indexOf(key, i);
+                if (counters[index] < MAX_COUNT) {
+                    counters[index]++;
+                }
+            }
+            if (++additions >= resetAfter) {
+                for (int i = 0; i < counters.length; i++) {
+                    counters[i] >>>= 1;
+                }
+                additions /= 2;
+            }
+        }
+
+        int frequency(long key) {
+            int min = MAX_COUNT;
+            for (int i = 0; i < DEPTH; i++) {
+                min = Math.min(min, counters[indexOf(key, i)]);
+            }
+            return min;
+        }
+
+        private int indexOf(long key, int row) {
+            long h = (key ^ SEEDS[row]) * 0x9E3779B97F4A7C15L;
+            return (int) (h >>> 40) & mask;
+        }
+    }
+}
@@ -0,0 +1,43 @@
+package com.frauddetection.service;
+
+import java.time.Instant;
+import weka.classifiers.trees.RandomForest;
+
+// Immutable result of one training run. A new instance is published for every retrain, so a
+// scorer that reads the reference once always sees a fully built classifier.
+public final class TrainedModel {
+    private final RandomForest classifier;
+    private final CompiledForest compiledForest;
+    private final long version;
+    private final int trainingSize;
+    private final Instant trainedAt;
+
+    public TrainedModel(RandomForest classifier, CompiledForest compiledForest, long version,
+            int trainingSize, Instant trainedAt) {
+        this.classifier = classifier;
+        this.compiledForest = compiledForest;
+        this.version = version;
+        this.trainingSize = trainingSize;
+        this.trainedAt = trainedAt;
+    }
+
+    public RandomForest getClassifier() {
+        return classifier;
+    }
+
+    public CompiledForest getCompiledForest() {
+        return compiledForest;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int getTrainingSize() {
+        return trainingSize;
+    }
+
+    public Instant getTrainedAt() {
+        return trainedAt;
+    }
+}
@@ -0,0 +1,132 @@
+package com.frauddetection.service;
+
+import java.time.Duration;
+
+// Immutable settings for building the random forest. Every with* method returns a copy, so a
+// config can be shared between detectors and adjusted without affecting a training run in flight.
+public final class TrainingConfig {
+
+    public enum ImbalanceHandling {
+        NONE,
+        // Sample with replacement until every class has the same number of rows
+        RESAMPLE,
+        // Keep every row but weight each class to the same total weight
+        COST_SENSITIVE
+    }
+
+    private final int trees;
+    private final int executionSlots;
+    private final int maxDepth;
+    private final int bagSizePercent;
+    private final int featuresPerSplit;
+    private final long seed;
+    private final ImbalanceHandling imbalanceHandling;
+    private final Duration timeBudget;
+
+    private TrainingConfig(int trees, int executionSlots, int maxDepth, int bagSizePercent, int featuresPerSplit,
+            long seed, ImbalanceHandling imbalanceHandling, Duration timeBudget) {
+        if (trees < 1 || executionSlots < 1 || maxDepth < 0 || bagSizePercent < 1 || bagSizePercent > 100
+                || featuresPerSplit < 0) {
+            throw new IllegalArgumentException("Invalid forest settings");
+        }
+        if (timeBudget.isNegative() || timeBudget.isZero()) {
+            throw new IllegalArgumentException("Time budget must be positive");
+        }
+        this.trees = trees;
+        this.executionSlots = executionSlots;
+        this.maxDepth = maxDepth;
+        this.bagSizePercent = bagSizePercent;
+        this.featuresPerSplit = featuresPerSplit;
+        this.seed = seed;
+        this.imbalanceHandling = imbalanceHandling;
+        this.timeBudget = timeBudget;
+    }
+
+    // 100 unlimited-depth trees on full-size bags with 3 features per split, one slot per core
+    public static TrainingConfig defaults() {
+        return new TrainingConfig(100, Runtime.getRuntime().availableProcessors(), 0, 100, 3, 42,
+                ImbalanceHandling.NONE, Duration.ofMinutes(10));
+    }
+
+    public TrainingConfig withTrees(int trees) {
+        return new TrainingConfig(trees, executionSlots, maxDepth, bagSizePercent, featuresPerSplit, seed,
+                imbalanceHandling, timeBudget);
+    }
+
+    public TrainingConfig withExecutionSlots(int executionSlots) {
+        return new TrainingConfig(trees, executionSlots, maxDepth, bagSizePercent, featuresPerSplit, seed,
+                imbalanceHandling, timeBudget);
+    }
+
+    // 0 leaves depth unlimited
+    public TrainingConfig withMaxDepth(int maxDepth) {
+        return new TrainingConfig(trees, executionSlots, maxDepth, bagSizePercent, featuresPerSplit, seed,
+                imbalanceHandling, timeBudget);
+    }
+
+    public TrainingConfig withBagSizePercent(int bagSizePercent) {
+        return new TrainingConfig(trees, executionSlots, maxDepth, bagSizePercent, featuresPerSplit, seed,
+                imbalanceHandling, timeBudget);
+    }
+
+    // 0 lets Weka pick log2(attributes) + 1
+    public TrainingConfig withFeaturesPerSplit(int featuresPerSplit) {
+        return new TrainingConfig(trees, executionSlots, maxDepth, bagSizePercent, featuresPerSplit, seed,
+                imbalanceHandling, timeBudget);
+    }
+
+    public TrainingConfig withSeed(long seed) {
+        return new TrainingConfig(trees, executionSlots, maxDepth, bagSizePercent, featuresPerSplit, seed,
+                imbalanceHandling, timeBudget);
+    }
+
+    public TrainingConfig withImbalanceHandling(ImbalanceHandling imbalanceHandling) {
+        return new TrainingConfig(trees, executionSlots, maxDepth, bagSizePercent, featuresPerSplit, seed,
+                imbalanceHandling, timeBudget);
+    }
+
+    // Trees still unbuilt when the budget runs out are dropped and the forest ships with the rest
+    public TrainingConfig withTimeBudget(Duration timeBudget) {
+        return new TrainingConfig(trees, executionSlots, maxDepth, bagSizePercent, featuresPerSplit, seed,
+                imbalanceHandling, timeBudget);
+    }
+
+    public int getTrees() {
+        return trees;
+    }
+
+    public int getExecutionSlots() {
+        return executionSlots;
+    }
+
+    public int getMaxDepth() {
+        return maxDepth;
+    }
+
+    public int getBagSizePercent() {
+        return bagSizePercent;
+    }
+
+    public int getFeaturesPerSplit() {
+        return featuresPerSplit;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    public ImbalanceHandling getImbalanceHandling() {
+        return imbalanceHandling;
+    }
+
+    public Duration getTimeBudget() {
+        return timeBudget;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("trees=%d slots=%d maxDepth=%d bag=%d%% K=%d seed=%d imbalance=%s budget=%s",
+                trees, executionSlots, maxDepth, bagSizePercent, featuresPerSplit, seed, imbalanceHandling,
+                timeBudget);
+    }
+}
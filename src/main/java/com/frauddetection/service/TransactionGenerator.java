@@ -1,65 +1,264 @@
 package com.frauddetection.service;
 
+import com.frauddetection.metrics.Counter;
+import com.frauddetection.metrics.LatencyHistogram;
+import com.frauddetection.metrics.MetricsRegistry;
+import com.frauddetection.model.CategoryDictionary;
 import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import com.frauddetection.model.TransactionEvent;
+import java.time.LocalDateTime;
 import java.util.Random;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
+// Open-loop generator: arrivals follow a schedule that does not wait for the pipeline, and each
+// transaction is stamped with its scheduled arrival time. When the queue is full the generator
+// falls behind schedule and the backlog shows up as latency instead of silently lowering the rate;
+// a sink that sheds instead keeps the schedule and the refusals are counted.
 public class TransactionGenerator implements Runnable {
     private static final Logger LOGGER = Logger.getLogger(TransactionGenerator.class.getName());
+    private static final MetricsRegistry METRICS = MetricsRegistry.global();
+    private static final Counter GENERATED = METRICS.counter("generator.transactions");
+    // How far behind schedule each transaction got into the queue, i.e. time blocked on a full queue
+    private static final LatencyHistogram SCHEDULE_LAG = METRICS.histogram("generator.scheduleLag");
+    private static final LatencyHistogram QUEUE_WAIT = METRICS.histogram("generator.queueWait");
+
+    public enum ArrivalPattern {
+        FIXED,
+        POISSON,
+        // Poisson arrivals at BURST_FACTOR times the rate for BURST_FRACTION of every second, slower
+        // the rest of the time so the mean rate is unchanged
+        BURSTY
+    }
+
+    // Where generated transactions go; false means the transaction was refused and is lost
+    @FunctionalInterface
+    public interface Sink {
+        boolean accept(Transaction transaction) throws InterruptedException;
+    }
+
+    private static final double BURST_FACTOR = 5.0;
+    private static final double BURST_FRACTION = 0.1;
+
     private final BlockingQueue<Transaction> transactionQueue;
-    private final Random random = new Random();
+    private final TransactionRingBuffer ring;
+    private final Sink sink;
+    private final Random random;
+    private final double ratePerSecond;
+    private final ArrivalPattern pattern;
+    private final String idPrefix;
     private volatile boolean running = true;
+    private volatile long generated;
+    private volatile long refused;
+    private volatile long startNanos;
+    private volatile long startEpochNanos;
+    private volatile boolean clockSet;
 
     // Sample data for simulation
-    private static final String[] TYPES = {"Credit Card", "Wire Transfer", "Cash Deposit"};
-    private static final String[] LOCATIONS = {
-        "New York", "London", "Tokyo", "Singapore", "Hong Kong",
-        "Dubai", "Paris", "Sydney", "Mumbai", "Shanghai"
-    };
+    private static final String[] TYPES = CategoryDictionary.TYPES.seedValues();
+    private static final String[] LOCATIONS = CategoryDictionary.LOCATIONS.seedValues();
+    private static final int[] TYPE_CODES = codesOf(CategoryDictionary.TYPES, TYPES);
+    private static final int[] LOCATION_CODES = codesOf(CategoryDictionary.LOCATIONS, LOCATIONS);
+    // Simulated accounts, enough for the feature engine to see per-account behaviour; the ids are
+    // built once so generating a transaction does not format one
+    private static final int ACCOUNTS = 10_000;
+    private static final String[] ACCOUNT_IDS = new String[ACCOUNTS];
+
+    static {
+        for (int i = 0; i < ACCOUNTS; i++) {
+            ACCOUNT_IDS[i] = "AC-" + i;
+        }
+    }
 
     public TransactionGenerator() {
-        this.transactionQueue = new LinkedBlockingQueue<>(1000);
+        this(new LinkedBlockingQueue<>(1000), System.nanoTime(), 2.0, ArrivalPattern.POISSON, "TX");
+    }
+
+    public TransactionGenerator(BlockingQueue<Transaction> transactionQueue, long seed, double ratePerSecond,
+            ArrivalPattern pattern, String idPrefix) {
+        this(transactionQueue, null, transaction -> {
+            transactionQueue.put(transaction);
+            return true;
+        }, seed, ratePerSecond, pattern, idPrefix);
+    }
+
+    // Hands transactions straight to the sink, e.g. IngestionPipeline::submit, whose backpressure
+    // policy then decides whether the generator waits or the transaction is shed
+    public TransactionGenerator(Sink sink, long seed, double ratePerSecond, ArrivalPattern pattern,
+            String idPrefix) {
+        this(null, null, sink, seed, ratePerSecond, pattern, idPrefix);
+    }
+
+    // Writes each transaction straight into a claimed ring slot, allocating nothing per event;
+    // this generator must be the ring's only producer
+    public TransactionGenerator(TransactionRingBuffer ring, long seed, double ratePerSecond, ArrivalPattern pattern,
+            String idPrefix) {
+        this(null, ring, null, seed, ratePerSecond, pattern, idPrefix);
+    }
+
+    private TransactionGenerator(BlockingQueue<Transaction> transactionQueue, TransactionRingBuffer ring, Sink sink,
+            long seed, double ratePerSecond, ArrivalPattern pattern, String idPrefix) {
+        if (ratePerSecond <= 0) {
+            throw new IllegalArgumentException("Rate must be positive");
+        }
+        this.transactionQueue = transactionQueue;
+        this.ring = ring;
+        this.sink = sink;
+        this.random = new Random(seed);
+        this.ratePerSecond = ratePerSecond;
+        this.pattern = pattern;
+        this.idPrefix = idPrefix;
+    }
+
+    // Lets several generators share one schedule origin; otherwise each starts its own clock on run()
+    public void setClock(long startNanos, LocalDateTime startTime) {
+        this.startNanos = startNanos;
+        this.startEpochNanos = TransactionBatch.toEpochNanos(startTime);
+        this.clockSet = true;
     }
 
     @Override
     public void run() {
+        if (!clockSet) {
+            setClock(System.nanoTime(), LocalDateTime.now());
+        }
+        long scheduled = 0;
         while (running) {
             try {
-                Transaction transaction = generateRandomTransaction();
-                transactionQueue.put(transaction);
-                LOGGER.info("Generated transaction: " + transaction);
-                Thread.sleep(random.nextInt(1000)); // Random delay between 0-1000ms
+                scheduled += nextInterval(scheduled);
+                long wait = startNanos + scheduled - System.nanoTime();
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+                if (ring != null) {
+                    fillRandomEvent(ring.claim(), startEpochNanos + scheduled);
+                    ring.publish();
+                } else {
+                    Transaction transaction = generateRandomTransaction(startEpochNanos + scheduled);
+                    if (!sink.accept(transaction)) {
+                        refused++;
+                    }
+                    if (LOGGER.isLoggable(Level.FINE)) {
+                        LOGGER.fine("Generated transaction: " + transaction);
+                    }
+                }
+                GENERATED.increment();
+                if (METRICS.isEnabled()) {
+                    SCHEDULE_LAG.record(System.nanoTime() - (startNanos + scheduled));
+                }
             } catch (InterruptedException e) {
-                LOGGER.log(Level.WARNING, "Transaction generation interrupted", e);
+                LOGGER.log(Level.FINE, "Transaction generation interrupted", e);
                 Thread.currentThread().interrupt();
                 break;
             }
         }
     }
 
-    private Transaction generateRandomTransaction() {
+    // Nanoseconds from the given schedule offset to the next arrival
+    private long nextInterval(long scheduled) {
+        double rate = ratePerSecond;
+        switch (pattern) {
+            case FIXED:
+                return (long) (TimeUnit.SECONDS.toNanos(1) / rate);
+            case BURSTY:
+                double phase = (scheduled % TimeUnit.SECONDS.toNanos(1)) / 1e9;
+                rate *= phase < BURST_FRACTION
+                        ? BURST_FACTOR
+                        : (1.0 - BURST_FRACTION * BURST_FACTOR) / (1.0 - BURST_FRACTION);
+                // Exponential gaps at the phase's rate
+                return exponentialInterval(rate);
+            case POISSON:
+            default:
+                return exponentialInterval(rate);
+        }
+    }
+
+    private long exponentialInterval(double rate) {
+        return (long) (-Math.log(1.0 - random.nextDouble()) / rate * 1e9);
+    }
+
+    private Transaction generateRandomTransaction(long epochNanos) {
         double amount = 10 + random.nextDouble() * 990; // Random amount between 10 and 1000
         String type = TYPES[random.nextInt(TYPES.length)];
         String location = LOCATIONS[random.nextInt(LOCATIONS.length)];
         double fraudProb = random.nextDouble();
+        String accountId = ACCOUNT_IDS[random.nextInt(ACCOUNTS)];
 
         return new Transaction(
-            "TX" + System.currentTimeMillis(),
+            idPrefix + "-" + (++generated),
             amount,
             type,
             fraudProb,
-            location
+            location,
+            TransactionBatch.fromEpochNanos(epochNanos),
+            accountId
         );
     }
 
+    // Same draws as generateRandomTransaction, so a seed yields the same transactions either way
+    private void fillRandomEvent(TransactionEvent event, long epochNanos) {
+        double amount = 10 + random.nextDouble() * 990;
+        int type = TYPE_CODES[random.nextInt(TYPE_CODES.length)];
+        int location = LOCATION_CODES[random.nextInt(LOCATION_CODES.length)];
+        double fraudProb = random.nextDouble();
+        String accountId = ACCOUNT_IDS[random.nextInt(ACCOUNTS)];
+        event.set(idPrefix, ++generated, amount, type, location, epochNanos, fraudProb, accountId);
+    }
+
+    private static int[] codesOf(CategoryDictionary dictionary, String[] values) {
+        int[] codes = new int[values.length];
+        for (int i = 0; i < values.length; i++) {
+            codes[i] = dictionary.intern(values[i]);
+        }
+        return codes;
+    }
+
+    // Converts a transaction's scheduled arrival back to System.nanoTime() so latency can be
+    // measured from when it should have arrived rather than when the generator got round to it
+    public long scheduledNanoTime(Transaction transaction) {
+        return startNanos + (TransactionBatch.toEpochNanos(transaction.getTimestamp()) - startEpochNanos);
+    }
+
+    public long scheduledNanoTime(TransactionEvent event) {
+        return startNanos + (event.getTimestamp() - startEpochNanos);
+    }
+
     public Transaction getNextTransaction() throws InterruptedException {
-        return transactionQueue.take();
+        if (transactionQueue == null && ring == null) {
+            throw new IllegalStateException("Generator writes to a sink, not a queue");
+        }
+        Transaction transaction = ring != null ? ring.takeTransaction() : transactionQueue.take();
+        if (METRICS.isEnabled()) {
+            QUEUE_WAIT.record(System.nanoTime() - scheduledNanoTime(transaction));
+        }
+        return transaction;
+    }
+
+    // Null when the generator writes to a ring or a sink
+    public BlockingQueue<Transaction> getQueue() {
+        return transactionQueue;
+    }
+
+    // Null unless the generator writes to a ring
+    public TransactionRingBuffer getRing() {
+        return ring;
+    }
+
+    public long getGenerated() {
+        return generated;
+    }
+
+    // Transactions the sink refused, e.g. shed by a full pipeline
+    public long getRefused() {
+        return refused;
     }
 
     public void stop() {
         running = false;
     }
-} 
\ No newline at end of file
+}
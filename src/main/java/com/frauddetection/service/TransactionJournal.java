@@ -0,0 +1,559 @@
+package com.frauddetection.service;
+
+import com.frauddetection.model.CategoryDictionary;
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.zip.CRC32C;
+
+// Append-only binary log of transactions. Every record is 64 bytes and starts with a CRC32C of the
+// remaining 60 bytes:
+//
+//   TRANSACTION  kind, id length, id tail (26 bytes), timestamp, amount, type code, location code,
+//                fraud probability, account code (-1 for none)
+//   DICTIONARY   kind, dictionary (type, location or account), code, value length, value tail (50 bytes)
+//   CONTINUATION kind, length, up to 58 bytes prepended to the next record's string
+//
+// Codes are only meaningful within a segment: each segment re-declares the dictionary entries it
+// uses, so old segments can be deleted and replay re-interns values into the current dictionaries.
+// A transaction never straddles two segments together with the entries and continuations it needs;
+// replay treats a code its segment has not declared as corruption.
+// Segments written before accounts were journaled declare none and replay without them.
+// A single writer thread group-commits appends with one fsync per drained batch.
+public class TransactionJournal implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(TransactionJournal.class.getName());
+
+    static final int RECORD_SIZE = 64;
+    private static final byte TRANSACTION = 1;
+    private static final byte DICTIONARY = 2;
+    private static final byte CONTINUATION = 3;
+    private static final int TYPES = 0;
+    private static final int LOCATIONS = 1;
+    private static final int ACCOUNTS = 2;
+    private static final int ID_BYTES = 26;
+    private static final int VALUE_BYTES = 50;
+    private static final int CONTINUATION_BYTES = 58;
+    private static final String PREFIX = "journal-";
+    private static final String SUFFIX = ".log";
+    private static final int REPLAY_BATCH = 65_536;
+
+    private final Path directory;
+    private final long segmentBytes;
+    private final int retainedSegments;
+    private final long commitIntervalNanos;
+    private final BlockingQueue<Object> pending = new LinkedBlockingQueue<>();
+    private final AtomicLong appendedRows = new AtomicLong();
+    private final AtomicLong durableRows = new AtomicLong();
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    // Writer thread state
+    private final ByteBuffer record = ByteBuffer.allocate(RECORD_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    private final ByteBuffer output = ByteBuffer.allocateDirect(RECORD_SIZE * 16_384).order(ByteOrder.LITTLE_ENDIAN);
+    private final CRC32C crc = new CRC32C();
+    private final BitSet declaredTypes = new BitSet();
+    private final BitSet declaredLocations = new BitSet();
+    private final Map<String, Integer> declaredAccounts = new HashMap<>();
+    private FileChannel segment;
+    private long segmentIndex;
+    private long segmentLength;
+
+    public TransactionJournal(Path directory) throws IOException {
+        this(directory, 64L * 1024 * 1024, 64, Duration.ofMillis(10));
+    }
+
+    public TransactionJournal(Path directory, long segmentBytes, int retainedSegments, Duration commitInterval)
+            throws IOException {
+        if (segmentBytes < RECORD_SIZE * 16L || retainedSegments < 1) {
+            throw new IllegalArgumentException("Segments must hold at least 16 records and one must be kept");
+        }
+        this.directory = directory;
+        this.segmentBytes = segmentBytes;
+        this.retainedSegments = retainedSegments;
+        this.commitIntervalNanos = commitInterval.toNanos();
+        Files.createDirectories(directory);
+
+        // Recover the tail before writing so new records never follow a torn one
+        List<Path> segments = segments();
+        if (!segments.isEmpty()) {
+            Path last = segments.get(segments.size() - 1);
+            truncateTornTail(last);
+            segmentIndex = indexOf(last);
+        }
+        openNextSegment();
+
+        writer = new Thread(this::writeLoop, "transaction-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public void append(List<Transaction> transactions) {
+        if (!running || transactions.isEmpty()) {
+            return;
+        }
+        appendedRows.addAndGet(transactions.size());
+        pending.offer(transactions);
+    }
+
+    // Completes once everything appended before the call has been fsynced
+    public CompletableFuture<Void> sync() {
+        CompletableFuture<Void> marker = new CompletableFuture<>();
+        if (!running) {
+            marker.complete(null);
+        } else {
+            pending.offer(marker);
+        }
+        return marker;
+    }
+
+    // Completes once every segment, including everything appended before the call, has been deleted
+    public CompletableFuture<Void> clear() {
+        Truncation truncation = new Truncation();
+        if (!running) {
+            truncation.completeExceptionally(new IllegalStateException("Transaction journal is closed"));
+        } else {
+            pending.offer(truncation);
+        }
+        return truncation;
+    }
+
+    // Replays every intact record in order. Call before appending anything new.
+    public long replay(Consumer<TransactionBatch> sink) throws IOException {
+        long rows = 0;
+        for (Path path : segments()) {
+            rows += replaySegment(path, sink);
+        }
+        return rows;
+    }
+
+    private long replaySegment(Path path, Consumer<TransactionBatch> sink) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long length = channel.size() - channel.size() % RECORD_SIZE;
+            if (length == 0) {
+                return 0;
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+            ByteBuffer view = mapped.duplicate();
+            CRC32C checksum = new CRC32C();
+
+            // Segment-local code -> current dictionary code, -1 until declared
+            int[] typeCodes = new int[16];
+            int[] locationCodes = new int[16];
+            Arrays.fill(typeCodes, -1);
+            Arrays.fill(locationCodes, -1);
+            String[] accounts = new String[16];
+            byte[] prefix = new byte[0];
+            byte[] text = new byte[256];
+
+            TransactionBatch batch = new TransactionBatch(REPLAY_BATCH);
+            long rows = 0;
+            for (int offset = 0; offset < length; offset += RECORD_SIZE) {
+                view.limit(offset + RECORD_SIZE).position(offset + 4);
+                checksum.reset();
+                checksum.update(view);
+                if ((int) checksum.getValue() != mapped.getInt(offset)) {
+                    LOGGER.warning(String.format("Corrupt journal record in %s at offset %d, skipping rest of segment",
+                            path.getFileName(), offset));
+                    break;
+                }
+
+                byte kind = mapped.get(offset + 4);
+                if (kind == CONTINUATION) {
+                    int partLength = mapped.get(offset + 5) & 0xFF;
+                    byte[] grown = new byte[prefix.length + partLength];
+                    System.arraycopy(prefix, 0, grown, 0, prefix.length);
+                    mapped.get(offset + 6, grown, prefix.length, partLength);
+                    prefix = grown;
+                } else if (kind == DICTIONARY) {
+                    int dictionary = mapped.get(offset + 5);
+                    int code = mapped.getInt(offset + 8);
+                    int valueLength = mapped.getShort(offset + 12);
+                    text = ensure(text, prefix.length + valueLength);
+                    System.arraycopy(prefix, 0, text, 0, prefix.length);
+                    mapped.get(offset + 14, text, prefix.length, valueLength);
+                    String value = new String(text, 0, prefix.length + valueLength, StandardCharsets.UTF_8);
+                    prefix = new byte[0];
+                    if (dictionary == TYPES) {
+                        typeCodes = put(typeCodes, code, CategoryDictionary.TYPES.intern(value));
+                    } else if (dictionary == LOCATIONS) {
+                        locationCodes = put(locationCodes, code, CategoryDictionary.LOCATIONS.intern(value));
+                    } else if (dictionary == ACCOUNTS) {
+                        accounts = put(accounts, code, value);
+                    }
+                } else if (kind == TRANSACTION) {
+                    int idLength = mapped.get(offset + 5) & 0xFF;
+                    text = ensure(text, prefix.length + idLength);
+                    System.arraycopy(prefix, 0, text, 0, prefix.length);
+                    mapped.get(offset + 6, text, prefix.length, idLength);
+                    String id = new String(text, 0, prefix.length + idLength, StandardCharsets.UTF_8);
+                    prefix = new byte[0];
+
+                    int type = mapped.getInt(offset + 48);
+                    int location = mapped.getInt(offset + 52);
+                    int account = mapped.getInt(offset + 60);
+                    // Every code a record uses is declared earlier in its segment
+                    if (!declared(typeCodes, type) || !declared(locationCodes, location)
+                            || account >= 0 && (account >= accounts.length || accounts[account] == null)) {
+                        LOGGER.warning(String.format(
+                                "Journal record in %s at offset %d uses an undeclared code, skipping rest of segment",
+                                path.getFileName(), offset));
+                        break;
+                    }
+                    batch.add(id, mapped.getLong(offset + 32), mapped.getDouble(offset + 40),
+                            type >= 0 ? typeCodes[type] : -1, mapped.getFloat(offset + 56),
+                            location >= 0 ? locationCodes[location] : -1, account >= 0 ? accounts[account] : null);
+                    rows++;
+                    if (batch.size() == REPLAY_BATCH) {
+                        sink.accept(batch);
+                        batch = new TransactionBatch(REPLAY_BATCH);
+                    }
+                }
+            }
+            if (batch.size() > 0) {
+                sink.accept(batch);
+            }
+            return rows;
+        }
+    }
+
+    private void writeLoop() {
+        List<Object> drained = new ArrayList<>();
+        List<CompletableFuture<Void>> waiters = new ArrayList<>();
+        while (running || !pending.isEmpty()) {
+            try {
+                Object first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                drained.add(first);
+                // Give concurrent appenders a moment to join this commit
+                long deadline = System.nanoTime() + commitIntervalNanos;
+                long remaining;
+                while ((remaining = deadline - System.nanoTime()) > 0) {
+                    Object next = pending.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) {
+                        break;
+                    }
+                    drained.add(next);
+                    pending.drainTo(drained);
+                }
+
+                long rows = 0;
+                for (Object item : drained) {
+                    if (item instanceof Truncation) {
+                        waiters.add((Truncation) item);
+                        truncate();
+                    } else if (item instanceof CompletableFuture) {
+                        @SuppressWarnings("unchecked")
+                        CompletableFuture<Void> waiter = (CompletableFuture<Void>) item;
+                        waiters.add(waiter);
+                    } else {
+                        @SuppressWarnings("unchecked")
+                        List<Transaction> transactions = (List<Transaction>) item;
+                        for (Transaction transaction : transactions) {
+                            writeTransaction(transaction);
+                        }
+                        rows += transactions.size();
+                    }
+                }
+                flushOutput();
+                segment.force(false);
+                durableRows.addAndGet(rows);
+                for (CompletableFuture<Void> waiter : waiters) {
+                    waiter.complete(null);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException e) {
+                LOGGER.log(Level.SEVERE, "Error writing transaction journal", e);
+                for (CompletableFuture<Void> waiter : waiters) {
+                    waiter.completeExceptionally(e);
+                }
+            } finally {
+                drained.clear();
+                waiters.clear();
+            }
+        }
+    }
+
+    private void writeTransaction(Transaction transaction) throws IOException {
+        int type = CategoryDictionary.TYPES.intern(transaction.getType());
+        int location = CategoryDictionary.LOCATIONS.intern(transaction.getLocation());
+        byte[] id = transaction.getId() != null ? transaction.getId().getBytes(StandardCharsets.UTF_8) : new byte[0];
+
+        // A transaction and the dictionary entries and continuations it needs go into one segment,
+        // since replay only resolves codes and prefixes declared earlier in the same segment
+        if (segmentLength + output.position() > 0
+                && segmentLength + output.position() + recordsFor(transaction, type, location, id) * RECORD_SIZE
+                        > segmentBytes) {
+            rollSegment();
+        }
+
+        if (type >= 0 && !declaredTypes.get(type)) {
+            writeDictionary(TYPES, type, transaction.getType().getBytes(StandardCharsets.UTF_8));
+            declaredTypes.set(type);
+        }
+        if (location >= 0 && !declaredLocations.get(location)) {
+            writeDictionary(LOCATIONS, location, transaction.getLocation().getBytes(StandardCharsets.UTF_8));
+            declaredLocations.set(location);
+        }
+        int account = -1;
+        if (transaction.getAccountId() != null) {
+            Integer declared = declaredAccounts.get(transaction.getAccountId());
+            if (declared == null) {
+                declared = declaredAccounts.size();
+                writeDictionary(ACCOUNTS, declared, transaction.getAccountId().getBytes(StandardCharsets.UTF_8));
+                declaredAccounts.put(transaction.getAccountId(), declared);
+            }
+            account = declared;
+        }
+
+        int head = writeContinuations(id, ID_BYTES);
+        record.clear();
+        record.putInt(0);
+        record.put(TRANSACTION);
+        record.put((byte) (id.length - head));
+        record.put(id, head, id.length - head);
+        record.position(32);
+        record.putLong(TransactionBatch.toEpochNanos(transaction.getTimestamp()));
+        record.putDouble(transaction.getAmount());
+        record.putInt(type);
+        record.putInt(location);
+        record.putFloat((float) transaction.getFraudProbability());
+        record.putInt(account);
+        emit();
+    }
+
+    // Records writeTransaction emits for this transaction in the current segment
+    private long recordsFor(Transaction transaction, int type, int location, byte[] id) {
+        long records = recordsFor(id.length, ID_BYTES);
+        if (type >= 0 && !declaredTypes.get(type)) {
+            records += recordsFor(transaction.getType().getBytes(StandardCharsets.UTF_8).length, VALUE_BYTES);
+        }
+        if (location >= 0 && !declaredLocations.get(location)) {
+            records += recordsFor(transaction.getLocation().getBytes(StandardCharsets.UTF_8).length, VALUE_BYTES);
+        }
+        if (transaction.getAccountId() != null && !declaredAccounts.containsKey(transaction.getAccountId())) {
+            records += recordsFor(transaction.getAccountId().getBytes(StandardCharsets.UTF_8).length, VALUE_BYTES);
+        }
+        return records;
+    }
+
+    private static long recordsFor(int length, int tailCapacity) {
+        int head = Math.max(0, length - tailCapacity);
+        return 1 + (head + CONTINUATION_BYTES - 1) / CONTINUATION_BYTES;
+    }
+
+    private void writeDictionary(int dictionary, int code, byte[] bytes) throws IOException {
+        int head = writeContinuations(bytes, VALUE_BYTES);
+        record.clear();
+        record.putInt(0);
+        record.put(DICTIONARY);
+        record.put((byte) dictionary);
+        record.position(8);
+        record.putInt(code);
+        record.putShort((short) (bytes.length - head));
+        record.put(bytes, head, bytes.length - head);
+        emit();
+    }
+
+    // Emits the leading bytes that do not fit into the final record; returns how many were written
+    private int writeContinuations(byte[] bytes, int tailCapacity) throws IOException {
+        int head = Math.max(0, bytes.length - tailCapacity);
+        for (int offset = 0; offset < head; offset += CONTINUATION_BYTES) {
+            int part = Math.min(CONTINUATION_BYTES, head - offset);
+            record.clear();
+            record.putInt(0);
+            record.put(CONTINUATION);
+            record.put((byte) part);
+            record.put(bytes, offset, part);
+            emit();
+        }
+        return head;
+    }
+
+    private void emit() throws IOException {
+        while (record.position() < RECORD_SIZE) {
+            record.put((byte) 0);
+        }
+        crc.reset();
+        crc.update(record.array(), 4, RECORD_SIZE - 4);
+        record.putInt(0, (int) crc.getValue());
+        record.flip();
+        if (output.remaining() < RECORD_SIZE) {
+            flushOutput();
+        }
+        output.put(record);
+    }
+
+    // Drops what is buffered and every segment, then starts an empty one
+    private void truncate() throws IOException {
+        output.clear();
+        segment.close();
+        for (Path path : segments()) {
+            Files.deleteIfExists(path);
+        }
+        openNextSegment();
+    }
+
+    private void rollSegment() throws IOException {
+        flushOutput();
+        segment.force(false);
+        segment.close();
+        openNextSegment();
+    }
+
+    private void flushOutput() throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            segmentLength += segment.write(output);
+        }
+        output.clear();
+    }
+
+    private void openNextSegment() throws IOException {
+        segmentIndex++;
+        Path path = directory.resolve(String.format("%s%012d%s", PREFIX, segmentIndex, SUFFIX));
+        segment = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segmentLength = segment.size();
+        declaredTypes.clear();
+        declaredLocations.clear();
+        declaredAccounts.clear();
+
+        List<Path> segments = segments();
+        for (int i = 0; i < segments.size() - retainedSegments; i++) {
+            Files.deleteIfExists(segments.get(i));
+        }
+    }
+
+    // Cuts the last segment back to its last record with a valid checksum
+    private void truncateTornTail(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long length = channel.size() - channel.size() % RECORD_SIZE;
+            long valid = 0;
+            if (length > 0) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+                mapped.order(ByteOrder.LITTLE_ENDIAN);
+                ByteBuffer view = mapped.duplicate();
+                CRC32C checksum = new CRC32C();
+                while (valid < length) {
+                    int offset = (int) valid;
+                    view.limit(offset + RECORD_SIZE).position(offset + 4);
+                    checksum.reset();
+                    checksum.update(view);
+                    if ((int) checksum.getValue() != mapped.getInt(offset)) {
+                        break;
+                    }
+                    valid += RECORD_SIZE;
+                }
+            }
+            if (valid < channel.size()) {
+                LOGGER.warning(String.format("Truncating journal %s from %d to %d bytes after unclean shutdown",
+                        path.getFileName(), channel.size(), valid));
+                channel.truncate(valid);
+                channel.force(true);
+            }
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        List<Path> paths = new ArrayList<>();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(paths::add);
+        }
+        // Zero-padded indexes make lexical order the write order
+        paths.sort(null);
+        return paths;
+    }
+
+    private static long indexOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    // -1 is the writer's code for a missing value
+    private static boolean declared(int[] codes, int code) {
+        return code < 0 ? code == -1 : code < codes.length && codes[code] >= 0;
+    }
+
+    // Slots grown into are -1 until declared
+    private static final class Truncation extends CompletableFuture<Void> {
+    }
+
+    private static int[] put(int[] codes, int index, int value) {
+        if (index < 0) {
+            return codes;
+        }
+        if (index >= codes.length) {
+            int length = codes.length;
+            codes = Arrays.copyOf(codes, Math.max(index + 1, length * 2));
+            Arrays.fill(codes, length, codes.length, -1);
+        }
+        codes[index] = value;
+        return codes;
+    }
+
+    private static String[] put(String[] values, int index, String value) {
+        if (index < 0) {
+            return values;
+        }
+        if (index >= values.length) {
+            values = Arrays.copyOf(values, Math.max(index + 1, values.length * 2));
+        }
+        values[index] = value;
+        return values;
+    }
+
+    private static byte[] ensure(byte[] buffer, int size) {
+        return buffer.length >= size ? buffer : new byte[Math.max(size, buffer.length * 2)];
+    }
+
+    public long getAppendedRows() {
+        return appendedRows.get();
+    }
+
+    public long getDurableRows() {
+        return durableRows.get();
+    }
+
+    // Stops accepting appends, commits what is queued and closes the current segment
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+            segment.close();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error closing transaction journal", e);
+        }
+    }
+}
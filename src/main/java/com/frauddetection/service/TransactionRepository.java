@@ -0,0 +1,307 @@
+package com.frauddetection.service;
+
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+// Persists transactions to an embedded H2 database. Writes go through a write-behind queue that a
+// single writer thread flushes with JDBC batch inserts, so callers never wait on disk. Reads use a
+// separate connection and push the dashboard filters down to SQL. Clearing goes through the same
+// queue, so it removes every row enqueued before it and none enqueued after.
+public class TransactionRepository implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(TransactionRepository.class.getName());
+    public static final String DEFAULT_URL = "jdbc:h2:./data/frauddetection";
+
+    private static final String INSERT_SQL = "INSERT INTO transactions "
+            + "(tx_id, ts, amount, tx_type, location, fraud_probability, account_id) VALUES (?, ?, ?, ?, ?, ?, ?)";
+
+    private final Connection writeConnection;
+    private final Connection readConnection;
+    // Row lists, and futures standing for clear requests
+    private final BlockingQueue<Object> pending = new LinkedBlockingQueue<>();
+    private final AtomicLong pendingRows = new AtomicLong();
+    private final AtomicLong droppedRows = new AtomicLong();
+    private final AtomicLong writtenRows = new AtomicLong();
+    private final long maxPendingRows;
+    private final int batchSize;
+    private final Thread writer;
+    private volatile boolean running = true;
+
+    public TransactionRepository() throws SQLException {
+        this(DEFAULT_URL, 1_000_000, 5_000);
+    }
+
+    public TransactionRepository(String jdbcUrl, long maxPendingRows, int batchSize) throws SQLException {
+        this.maxPendingRows = maxPendingRows;
+        this.batchSize = batchSize;
+        this.writeConnection = DriverManager.getConnection(jdbcUrl, "sa", "");
+        this.readConnection = DriverManager.getConnection(jdbcUrl, "sa", "");
+        createSchema();
+        writeConnection.setAutoCommit(false);
+
+        writer = new Thread(this::writeLoop, "transaction-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private void createSchema() throws SQLException {
+        try (Statement statement = writeConnection.createStatement()) {
+            statement.execute("CREATE TABLE IF NOT EXISTS transactions ("
+                    + "seq BIGINT AUTO_INCREMENT PRIMARY KEY, "
+                    + "tx_id VARCHAR(64), "
+                    + "ts TIMESTAMP NOT NULL, "
+                    + "amount DOUBLE PRECISION NOT NULL, "
+                    + "tx_type VARCHAR(64), "
+                    + "location VARCHAR(128), "
+                    + "fraud_probability REAL NOT NULL, "
+                    + "account_id VARCHAR(128))");
+            // Databases created before accounts were stored get the column, with null for old rows
+            statement.execute("ALTER TABLE transactions ADD COLUMN IF NOT EXISTS account_id VARCHAR(128)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_transactions_ts ON transactions (ts)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_transactions_type_ts ON transactions (tx_type, ts)");
+            statement.execute("CREATE INDEX IF NOT EXISTS idx_transactions_probability "
+                    + "ON transactions (fraud_probability)");
+        }
+    }
+
+    // Never blocks: when the backlog is full the rows are dropped and counted instead
+    public void enqueue(List<Transaction> transactions) {
+        if (!running || transactions.isEmpty()) {
+            return;
+        }
+        if (pendingRows.addAndGet(transactions.size()) > maxPendingRows) {
+            pendingRows.addAndGet(-transactions.size());
+            droppedRows.addAndGet(transactions.size());
+            return;
+        }
+        pending.offer(transactions);
+    }
+
+    // Completes once every row enqueued before the call has been deleted from the database
+    public CompletableFuture<Void> clear() {
+        CompletableFuture<Void> cleared = new CompletableFuture<>();
+        if (!running) {
+            cleared.completeExceptionally(new IllegalStateException("Transaction repository is closed"));
+        } else {
+            pending.offer(cleared);
+        }
+        return cleared;
+    }
+
+    private void writeLoop() {
+        List<Object> drained = new ArrayList<>();
+        List<List<Transaction>> chunks = new ArrayList<>();
+        while (running || !pending.isEmpty()) {
+            try {
+                Object first = pending.poll(200, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                drained.add(first);
+                pending.drainTo(drained);
+                for (Object item : drained) {
+                    if (item instanceof CompletableFuture) {
+                        write(chunks);
+                        chunks.clear();
+                        @SuppressWarnings("unchecked")
+                        CompletableFuture<Void> cleared = (CompletableFuture<Void>) item;
+                        truncate(cleared);
+                    } else {
+                        @SuppressWarnings("unchecked")
+                        List<Transaction> chunk = (List<Transaction>) item;
+                        chunks.add(chunk);
+                    }
+                }
+                write(chunks);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                drained.clear();
+                chunks.clear();
+            }
+        }
+    }
+
+    private void truncate(CompletableFuture<Void> cleared) {
+        try (Statement statement = writeConnection.createStatement()) {
+            statement.execute("TRUNCATE TABLE transactions");
+            writeConnection.commit();
+            cleared.complete(null);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error clearing transactions", e);
+            cleared.completeExceptionally(e);
+        }
+    }
+
+    private void write(List<List<Transaction>> chunks) {
+        if (chunks.isEmpty()) {
+            return;
+        }
+        long rows = 0;
+        try (PreparedStatement insert = writeConnection.prepareStatement(INSERT_SQL)) {
+            int batched = 0;
+            for (List<Transaction> chunk : chunks) {
+                for (Transaction transaction : chunk) {
+                    insert.setString(1, transaction.getId());
+                    insert.setObject(2, transaction.getTimestamp());
+                    insert.setDouble(3, transaction.getAmount());
+                    insert.setString(4, transaction.getType());
+                    insert.setString(5, transaction.getLocation());
+                    insert.setFloat(6, (float) transaction.getFraudProbability());
+                    insert.setString(7, transaction.getAccountId());
+                    insert.addBatch();
+                    if (++batched == batchSize) {
+                        insert.executeBatch();
+                        batched = 0;
+                    }
+                }
+                rows += chunk.size();
+            }
+            if (batched > 0) {
+                insert.executeBatch();
+            }
+            writeConnection.commit();
+            writtenRows.addAndGet(rows);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error writing transactions, dropping " + rows + " rows", e);
+            droppedRows.addAndGet(rows);
+            try {
+                writeConnection.rollback();
+            } catch (SQLException rollbackError) {
+                LOGGER.log(Level.WARNING, "Error rolling back transaction batch", rollbackError);
+            }
+        } finally {
+            long total = 0;
+            for (List<Transaction> chunk : chunks) {
+                total += chunk.size();
+            }
+            pendingRows.addAndGet(-total);
+        }
+    }
+
+    public List<Transaction> findTransactions(LocalDate startDate, LocalDate endDate, String type,
+            double fraudThreshold, LocalDateTime before, int limit) throws SQLException {
+        StringBuilder sql = new StringBuilder(
+                "SELECT tx_id, ts, amount, tx_type, location, fraud_probability, account_id "
+                        + "FROM transactions WHERE 1 = 1");
+        List<Object> parameters = new ArrayList<>();
+        appendFilters(sql, parameters, startDate, endDate, type, fraudThreshold, before);
+        // Newest first so the limit keeps the most recent rows; reversed below
+        sql.append(" ORDER BY seq DESC LIMIT ?");
+        parameters.add(limit);
+
+        List<Transaction> result = new ArrayList<>();
+        synchronized (readConnection) {
+            try (PreparedStatement query = prepare(sql.toString(), parameters);
+                    ResultSet rows = query.executeQuery()) {
+                while (rows.next()) {
+                    result.add(new Transaction(
+                            rows.getString(1),
+                            rows.getDouble(3),
+                            rows.getString(4),
+                            rows.getFloat(6),
+                            rows.getString(5),
+                            rows.getObject(2, LocalDateTime.class),
+                            rows.getString(7)));
+                }
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    public long countTransactions(LocalDate startDate, LocalDate endDate, String type, double fraudThreshold,
+            LocalDateTime before) throws SQLException {
+        StringBuilder sql = new StringBuilder("SELECT COUNT(*) FROM transactions WHERE 1 = 1");
+        List<Object> parameters = new ArrayList<>();
+        appendFilters(sql, parameters, startDate, endDate, type, fraudThreshold, before);
+        synchronized (readConnection) {
+            try (PreparedStatement query = prepare(sql.toString(), parameters);
+                    ResultSet rows = query.executeQuery()) {
+                return rows.next() ? rows.getLong(1) : 0;
+            }
+        }
+    }
+
+    // Most recent rows in insertion order, for warming the in-memory store at startup
+    public TransactionBatch loadRecent(int limit) throws SQLException {
+        List<Transaction> recent = findTransactions(null, null, TransactionStore.ALL_TYPES, 0.0, null, limit);
+        return TransactionBatch.of(recent);
+    }
+
+    private void appendFilters(StringBuilder sql, List<Object> parameters, LocalDate startDate, LocalDate endDate,
+            String type, double fraudThreshold, LocalDateTime before) {
+        if (startDate != null && endDate != null) {
+            sql.append(" AND ts >= ? AND ts < ?");
+            parameters.add(startDate.atStartOfDay());
+            parameters.add(endDate.plusDays(1).atStartOfDay());
+        }
+        if (before != null) {
+            sql.append(" AND ts < ?");
+            parameters.add(before);
+        }
+        if (!TransactionStore.ALL_TYPES.equals(type)) {
+            sql.append(" AND tx_type = ?");
+            parameters.add(type);
+        }
+        if (fraudThreshold > 0.0) {
+            sql.append(" AND fraud_probability >= ?");
+            parameters.add((float) fraudThreshold);
+        }
+    }
+
+    private PreparedStatement prepare(String sql, List<Object> parameters) throws SQLException {
+        PreparedStatement statement = readConnection.prepareStatement(sql);
+        for (int i = 0; i < parameters.size(); i++) {
+            statement.setObject(i + 1, parameters.get(i));
+        }
+        return statement;
+    }
+
+    public long getPendingRows() {
+        return pendingRows.get();
+    }
+
+    public long getWrittenRows() {
+        return writtenRows.get();
+    }
+
+    public long getDroppedRows() {
+        return droppedRows.get();
+    }
+
+    // Stops accepting writes, flushes the backlog and closes the database
+    @Override
+    public void close() {
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(30));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        try {
+            writeConnection.close();
+            readConnection.close();
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error closing transaction database", e);
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.frauddetection.service;
+
+import com.frauddetection.metrics.Counter;
+import com.frauddetection.metrics.MetricsRegistry;
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionEvent;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Preallocated single-producer, multi-consumer handoff of transactions. Every slot holds a
+// reusable TransactionEvent and a sequence number: the producer may fill slot p & mask once its
+// sequence is p, publishing sets it to p + 1, and a consumer that claims position p by advancing
+// the shared read cursor releases the slot by setting it to p + capacity. Each event goes to
+// exactly one consumer, nothing is allocated per event and no locks or condition signals are
+// involved; a side that has to wait does so according to the ring's WaitStrategy.
+public class TransactionRingBuffer {
+    private static final Counter PRODUCER_STALLS = MetricsRegistry.global().counter("ring.producerStalls");
+    private static final int SPIN_TRIES = 100;
+    private static final int YIELD_TRIES = 200;
+    private static final long PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(20);
+
+    public enum WaitStrategy {
+        // Lowest handoff latency; burns a core per waiting thread
+        BUSY_SPIN,
+        // Spins briefly, then yields the core to other runnable threads
+        YIELD,
+        // Spins, yields, then sleeps in short parks; cheapest when idle, slowest to wake
+        PARK
+    }
+
+    // Called on the consumer's thread with a slot that is only valid until the call returns
+    @FunctionalInterface
+    public interface EventHandler {
+        void onEvent(TransactionEvent event);
+    }
+
+    private final TransactionEvent[] events;
+    private final AtomicLongArray sequences;
+    private final int mask;
+    private final WaitStrategy waitStrategy;
+    private final AtomicLong readCursor = new AtomicLong();
+    // Published count for size(); the producer's release store is all it costs
+    private final AtomicLong publishedCount = new AtomicLong();
+    // Producer state, touched only by the producing thread
+    private long writeCursor;
+    private boolean claimed;
+
+    public TransactionRingBuffer(int capacity, WaitStrategy waitStrategy) {
+        if (capacity < 2 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two of at least 2");
+        }
+        this.events = new TransactionEvent[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        for (int i = 0; i < capacity; i++) {
+            events[i] = new TransactionEvent();
+            sequences.set(i, i);
+        }
+        this.mask = capacity - 1;
+        this.waitStrategy = waitStrategy;
+    }
+
+    // Producer side: claim a slot, fill the returned event in place, then publish it
+
+    public TransactionEvent claim() throws InterruptedException {
+        checkNotClaimed();
+        int slot = (int) writeCursor & mask;
+        for (int attempt = 0; sequences.getAcquire(slot) != writeCursor; attempt++) {
+            if (attempt == 0) {
+                PRODUCER_STALLS.increment();
+            }
+            idle(attempt);
+        }
+        claimed = true;
+        return events[slot];
+    }
+
+    // Null when the ring is full
+    public TransactionEvent tryClaim() {
+        checkNotClaimed();
+        int slot = (int) writeCursor & mask;
+        if (sequences.getAcquire(slot) != writeCursor) {
+            return null;
+        }
+        claimed = true;
+        return events[slot];
+    }
+
+    public void publish() {
+        if (!claimed) {
+            throw new IllegalStateException("No slot has been claimed");
+        }
+        claimed = false;
+        sequences.setRelease((int) writeCursor & mask, writeCursor + 1);
+        writeCursor++;
+        publishedCount.setRelease(writeCursor);
+    }
+
+    private void checkNotClaimed() {
+        if (claimed) {
+            throw new IllegalStateException("The claimed slot has not been published");
+        }
+    }
+
+    // Consumer side, safe from any number of threads
+
+    // Copies the next event into the caller's event; false when the ring is empty
+    public boolean poll(TransactionEvent into) {
+        while (true) {
+            long position = readCursor.get();
+            int slot = (int) position & mask;
+            long sequence = sequences.getAcquire(slot);
+            if (sequence < position + 1) {
+                return false;
+            }
+            if (sequence == position + 1 && readCursor.compareAndSet(position, position + 1)) {
+                into.copyFrom(events[slot]);
+                sequences.setRelease(slot, position + events.length);
+                return true;
+            }
+            // Another consumer took this position first; look again
+        }
+    }
+
+    public void take(TransactionEvent into) throws InterruptedException {
+        for (int attempt = 0; !poll(into); attempt++) {
+            idle(attempt);
+        }
+    }
+
+    // Materializes the next event; for callers that want Transactions rather than raw events
+    public Transaction takeTransaction() throws InterruptedException {
+        TransactionEvent event = new TransactionEvent();
+        take(event);
+        return event.toTransaction();
+    }
+
+    // Hands up to max published events to the handler in order, in place; returns how many. If the
+    // handler throws, the events after the failing one in this claim are skipped, but their slots are
+    // still released so producers never wait on them.
+    public int drain(EventHandler handler, int max) {
+        while (true) {
+            long position = readCursor.get();
+            int available = 0;
+            while (available < max
+                    && sequences.getAcquire((int) (position + available) & mask) == position + available + 1) {
+                available++;
+            }
+            if (available == 0) {
+                return 0;
+            }
+            if (readCursor.compareAndSet(position, position + available)) {
+                int released = 0;
+                try {
+                    for (; released < available; released++) {
+                        int slot = (int) (position + released) & mask;
+                        handler.onEvent(events[slot]);
+                        sequences.setRelease(slot, position + released + events.length);
+                    }
+                } finally {
+                    for (; released < available; released++) {
+                        sequences.setRelease((int) (position + released) & mask, position + released + events.length);
+                    }
+                }
+                return available;
+            }
+        }
+    }
+
+    // Waits until at least one event is available, then drains like drain
+    public int take(EventHandler handler, int max) throws InterruptedException {
+        int drained;
+        for (int attempt = 0; (drained = drain(handler, max)) == 0; attempt++) {
+            idle(attempt);
+        }
+        return drained;
+    }
+
+    // Approximate while producers and consumers are running
+    public int size() {
+        return (int) Math.max(0, publishedCount.getAcquire() - readCursor.get());
+    }
+
+    public int capacity() {
+        return events.length;
+    }
+
+    public WaitStrategy getWaitStrategy() {
+        return waitStrategy;
+    }
+
+    private void idle(int attempt) throws InterruptedException {
+        switch (waitStrategy) {
+            case BUSY_SPIN:
+                Thread.onSpinWait();
+                break;
+            case YIELD:
+                if (attempt < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else {
+                    Thread.yield();
+                }
+                break;
+            case PARK:
+            default:
+                if (attempt < SPIN_TRIES) {
+                    Thread.onSpinWait();
+                } else if (attempt < YIELD_TRIES) {
+                    Thread.yield();
+                } else {
+                    LockSupport.parkNanos(PARK_NANOS);
+                }
+                break;
+        }
+        // Checked on a slow cadence so spinning stays cheap but a waiting thread can still be stopped
+        if ((attempt & 0xFF) == 0xFF && Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+}
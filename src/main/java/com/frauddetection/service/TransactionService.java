@@ -1,69 +1,219 @@
 package com.frauddetection.service;
 
+import com.frauddetection.analytics.StreamingAnalytics;
+import com.frauddetection.model.CategoryDictionary;
 import com.frauddetection.model.Transaction;
-import javafx.collections.FXCollections;
-import javafx.collections.ObservableList;
+import com.frauddetection.model.TransactionBatch;
+import java.sql.SQLException;
 import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.stream.Collectors;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.Random;
-import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileReader;
 import java.io.IOException;
 
 public class TransactionService {
-    private ObservableList<Transaction> transactions;
+    private static final Logger LOGGER = Logger.getLogger(TransactionService.class.getName());
+    // Rows the dashboard table shows
+    public static final int VIEW_CAPACITY = 1000;
+    private static final int STARTUP_HISTORY_ROWS = 200_000;
+
+    private final TransactionStore store;
+    private final TransactionRepository repository;
+    private final TransactionJournal journal;
+    private final RollupEngine rollups = new RollupEngine();
+    private final StreamingAnalytics analytics;
+    private final CsvTransactionImporter importer = new CsvTransactionImporter();
+    // Rate of the simulated arrivals the dashboard's simulation toggle starts
+    private static final double SIMULATION_RATE = 2.0;
+
     private Random random;
+    private IngestionPipeline pipeline;
+    private TransactionGenerator simulation;
+    private Thread simulationThread;
     private boolean simulationEnabled;
     private double fraudProbability;
     private double maxTransactionAmount;
-    private final String[] LOCATIONS = {
-            "New York", "London", "Tokyo", "Singapore", "Hong Kong",
-            "Dubai", "Paris", "Sydney", "Mumbai", "Shanghai"
-    };
+    // Simulated transactions draw from the dictionaries' seed vocabulary
+    private final String[] types = CategoryDictionary.TYPES.seedValues();
+    private final String[] locations = CategoryDictionary.LOCATIONS.seedValues();
 
     public TransactionService() {
-        this.transactions = FXCollections.observableArrayList();
+        this(new TransactionStore());
+    }
+
+    public TransactionService(TransactionStore store) {
+        this(store, null);
+    }
+
+    // With a repository, recent history is restored into the store and every new transaction is
+    // persisted in the background; queries reaching past the in-memory window go to the database
+    public TransactionService(TransactionStore store, TransactionRepository repository) {
+        this(store, repository, null);
+    }
+
+    // A journal, when present, is the source of truth at startup: replaying it rebuilds the store
+    // exactly, so the database is then only consulted for queries beyond the in-memory window
+    public TransactionService(TransactionStore store, TransactionRepository repository,
+            TransactionJournal journal) {
+        this(store, repository, journal, new StreamingAnalytics());
+    }
+
+    // Analytics loaded from a snapshot keep their history; restored rows it already covers are skipped
+    public TransactionService(TransactionStore store, TransactionRepository repository,
+            TransactionJournal journal, StreamingAnalytics analytics) {
+        this.store = store;
+        this.analytics = analytics;
+        this.repository = repository;
+        this.journal = journal;
         this.random = new Random();
         this.simulationEnabled = false;
         this.fraudProbability = 0.1;
         this.maxTransactionAmount = 10000.0;
+        // Rows already in the store never reach the listeners, so the aggregates start from them
+        store.forEachBatch(this::aggregate);
+        store.addListener(rollups::addAll);
+        store.addListener(analytics::addAll);
+        boolean replayed = journal != null && replayJournal(journal);
+        if (repository != null) {
+            if (!replayed) {
+                restoreHistory();
+            }
+            // Older rows may only exist in the database, so rollups answer for restored time onwards
+            LocalDateTime oldest = rollups.getOldestTimestamp();
+            rollups.setCoveredFrom(oldest != null ? oldest : LocalDateTime.now());
+            store.addListener(repository::enqueue);
+        }
+        if (journal != null) {
+            store.addListener(journal::append);
+        }
+    }
+
+    private boolean replayJournal(TransactionJournal journal) {
+        try {
+            long start = System.nanoTime();
+            long rows = journal.replay(this::restore);
+            LOGGER.info(String.format("Replayed %d transactions from the journal in %d ms",
+                    rows, (System.nanoTime() - start) / 1_000_000));
+            return rows > 0;
+        } catch (IOException e) {
+            LOGGER.log(Level.WARNING, "Error replaying transaction journal", e);
+            return false;
+        }
+    }
+
+    private void restoreHistory() {
+        try {
+            TransactionBatch history = repository.loadRecent(STARTUP_HISTORY_ROWS);
+            restore(history);
+            LOGGER.info("Restored " + history.size() + " transactions from the database");
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error restoring transaction history", e);
+        }
+    }
+
+    // Restored rows do not reach store listeners, so the rollups and analytics are fed here
+    private void restore(TransactionBatch batch) {
+        store.restore(batch);
+        aggregate(batch);
+    }
+
+    private void aggregate(TransactionBatch batch) {
+        rollups.addAll(batch);
+        analytics.restore(batch);
     }
 
     public List<Transaction> getFilteredTransactions(LocalDate startDate, LocalDate endDate,
             String type, double fraudThreshold) {
-        return transactions.stream()
-                .filter(t -> {
-                    boolean dateMatch = true;
-                    if (startDate != null && endDate != null) {
-                        dateMatch = !t.getTimestamp().toLocalDate().isBefore(startDate) &&
-                                !t.getTimestamp().toLocalDate().isAfter(endDate);
-                    }
-                    boolean typeMatch = type.equals("All") || t.getType().equals(type);
-                    boolean fraudMatch = t.getFraudProbability() >= fraudThreshold;
-                    return dateMatch && typeMatch && fraudMatch;
-                })
-                .collect(Collectors.toList());
+        return getFilteredTransactions(startDate, endDate, type, fraudThreshold, Integer.MAX_VALUE);
     }
 
-    public void importTransactions(File file) throws IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line;
-            while ((line = reader.readLine()) != null) {
-                String[] parts = line.split(",");
-                if (parts.length >= 4) {
-                    Transaction transaction = new Transaction(
-                            parts[0], // id
-                            Double.parseDouble(parts[1]), // amount
-                            parts[2], // type
-                            Double.parseDouble(parts[3]), // fraudProbability
-                            parts.length > 4 ? parts[4] : LOCATIONS[random.nextInt(LOCATIONS.length)] // location
-                    );
-                    transactions.add(transaction);
-                }
+    // Newest matches only, for views that cannot show every row
+    public List<Transaction> getFilteredTransactions(LocalDate startDate, LocalDate endDate,
+            String type, double fraudThreshold, int limit) {
+        LocalDateTime oldest = store.getOldestTimestamp();
+        List<Transaction> recent = store.query(startDate, endDate, type, fraudThreshold, limit);
+        if (recent.size() >= limit || !needsHistory(startDate, endDate, oldest)) {
+            return recent;
+        }
+        try {
+            List<Transaction> result = new ArrayList<>(repository.findTransactions(
+                    startDate, endDate, type, fraudThreshold, oldest, limit - recent.size()));
+            result.addAll(recent);
+            return result;
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error querying transaction history", e);
+            return recent;
+        }
+    }
+
+    public long countFilteredTransactions(LocalDate startDate, LocalDate endDate,
+            String type, double fraudThreshold) {
+        // Bounded ranges on decile thresholds are answered from the rollups in O(buckets)
+        if (startDate != null && endDate != null) {
+            LocalDateTime from = startDate.atStartOfDay();
+            LocalDateTime to = endDate.plusDays(1).atStartOfDay();
+            if (rollups.canCount(from, to, fraudThreshold)) {
+                return rollups.count(from, to, type, fraudThreshold);
             }
         }
+        LocalDateTime oldest = store.getOldestTimestamp();
+        long count = store.count(startDate, endDate, type, fraudThreshold);
+        if (!needsHistory(startDate, endDate, oldest)) {
+            return count;
+        }
+        try {
+            return count + repository.countTransactions(startDate, endDate, type, fraudThreshold, oldest);
+        } catch (SQLException e) {
+            LOGGER.log(Level.WARNING, "Error counting transaction history", e);
+            return count;
+        }
+    }
+
+    // Rows older than the oldest in-memory row only exist in the database
+    private boolean needsHistory(LocalDate startDate, LocalDate endDate, LocalDateTime oldest) {
+        if (repository == null) {
+            return false;
+        }
+        if (oldest == null || startDate == null || endDate == null) {
+            return true;
+        }
+        return startDate.atStartOfDay().isBefore(oldest);
+    }
+
+    // Evaluates the dashboard filter directly over a batch's columns and returns matching row indices;
+    // large batches are scanned in parallel
+    public int[] getFilteredRows(TransactionBatch batch, LocalDate startDate, LocalDate endDate,
+            String type, double fraudThreshold) {
+        boolean anyType = TransactionStore.ALL_TYPES.equals(type);
+        int typeCode = anyType ? -1 : batch.getTypeDictionary().codeOf(type);
+        if (!anyType && typeCode < 0) {
+            return new int[0];
+        }
+        return FilterKernel.rows(FilterKernel.of(startDate, endDate, typeCode, fraudThreshold).select(batch));
+    }
+
+    public void importTransactions(File file) throws IOException {
+        importTransactions(file, null);
+    }
+
+    // Each parsed chunk goes to the store as one bulk insert, in file order
+    public CsvTransactionImporter.ImportResult importTransactions(File file,
+            CsvTransactionImporter.ProgressListener progress) throws IOException {
+        return importer.importFile(file.toPath(), store::addAll, progress);
+    }
+
+    // Transactions simulated or generated from here enter through the pipeline, which scores them
+    // and raises alerts before they reach the store; without one they go straight to the store
+    public void setPipeline(IngestionPipeline pipeline) {
+        this.pipeline = pipeline;
     }
 
     public void generateTransaction() {
@@ -71,11 +221,10 @@ public class TransactionService {
             return;
         }
 
-        String[] types = { "Credit Card", "Wire Transfer", "Cash Deposit" };
         String type = types[random.nextInt(types.length)];
         double amount = random.nextDouble() * maxTransactionAmount;
         double fraudProb = random.nextDouble();
-        String location = LOCATIONS[random.nextInt(LOCATIONS.length)];
+        String location = locations[random.nextInt(locations.length)];
 
         Transaction transaction = new Transaction(
                 "TX" + System.currentTimeMillis(),
@@ -84,11 +233,32 @@ public class TransactionService {
                 fraudProb,
                 location);
 
-        transactions.add(transaction);
+        if (pipeline == null) {
+            store.add(transaction);
+            return;
+        }
+        try {
+            pipeline.submit(transaction);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
     }
 
-    public void setSimulationEnabled(boolean enabled) {
+    // With a pipeline, enabling starts a generator thread offering Poisson arrivals to it
+    public synchronized void setSimulationEnabled(boolean enabled) {
         this.simulationEnabled = enabled;
+        if (enabled && pipeline != null && simulation == null) {
+            simulation = new TransactionGenerator(pipeline::submit, random.nextLong(), SIMULATION_RATE,
+                    TransactionGenerator.ArrivalPattern.POISSON, "TX" + System.currentTimeMillis());
+            simulationThread = new Thread(simulation, "transaction-simulation");
+            simulationThread.setDaemon(true);
+            simulationThread.start();
+        } else if (!enabled && simulation != null) {
+            simulation.stop();
+            simulationThread.interrupt();
+            simulation = null;
+            simulationThread = null;
+        }
     }
 
     public void setFraudProbability(double probability) {
@@ -99,11 +269,40 @@ public class TransactionService {
         this.maxTransactionAmount = Math.max(0.0, amount);
     }
 
-    public ObservableList<Transaction> getTransactions() {
-        return transactions;
+    public TransactionStore getStore() {
+        return store;
     }
 
+    // Per-minute, per-hour and per-day aggregates of everything ingested, for charts over any range
+    public RollupEngine getRollups() {
+        return rollups;
+    }
+
+    // Sketch-based percentiles, heavy hitters and distinct counts over hour and day windows
+    public StreamingAnalytics getAnalytics() {
+        return analytics;
+    }
+
+    // Also empties the database and journal, waiting for both so neither a query reaching past the
+    // store nor a restart can bring cleared rows back
     public void clearTransactions() {
-        transactions.clear();
+        store.clear();
+        rollups.clear();
+        analytics.clear();
+        List<CompletableFuture<Void>> backends = new ArrayList<>();
+        if (repository != null) {
+            rollups.setCoveredFrom(LocalDateTime.now());
+            backends.add(repository.clear());
+        }
+        if (journal != null) {
+            backends.add(journal.clear());
+        }
+        try {
+            CompletableFuture.allOf(backends.toArray(new CompletableFuture<?>[0])).get(30, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            LOGGER.log(Level.WARNING, "Error clearing stored transactions", e);
+        }
     }
-}
\ No newline at end of file
+}
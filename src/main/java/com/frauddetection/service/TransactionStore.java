@@ -0,0 +1,475 @@
+package com.frauddetection.service;
+
+import com.frauddetection.model.CategoryDictionary;
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.stream.Collectors;
+
+// In-memory transaction store partitioned into fixed time segments. Each segment keeps its rows in
+// a columnar TransactionBatch and indexes them by type code and fraud-probability bucket, so
+// filtered queries only visit segments in the date range and only the rows of matching index
+// entries. Segments where the indexes would still yield a large share of rows are scanned with
+// the branch-free FilterKernel instead, and unlimited queries over many rows filter segments in
+// parallel. Retention drops whole segments.
+public class TransactionStore {
+    private static final Logger LOGGER = Logger.getLogger(TransactionStore.class.getName());
+    public static final String ALL_TYPES = "All";
+    private static final int BUCKETS = 10;
+    private static final int ANY = -1;
+    private static final int NONE = -2;
+    // A segment is scanned whole once the best index yields at least 1/8 of its rows
+    private static final int DENSE_SCAN_DIVISOR = 8;
+
+    private final long partitionNanos;
+    private final long retentionNanos;
+    private final long maxTransactions;
+    private final ConcurrentSkipListMap<Long, Segment> segments = new ConcurrentSkipListMap<>();
+    private final AtomicLong size = new AtomicLong();
+    private final List<Consumer<List<Transaction>>> listeners = new CopyOnWriteArrayList<>();
+
+    public TransactionStore() {
+        this(Duration.ofHours(1), Duration.ofDays(90), 5_000_000);
+    }
+
+    public TransactionStore(Duration partitionDuration, Duration retention, long maxTransactions) {
+        if (partitionDuration.toNanos() <= 0 || maxTransactions < 1) {
+            throw new IllegalArgumentException("Partition duration and capacity must be positive");
+        }
+        this.partitionNanos = partitionDuration.toNanos();
+        this.retentionNanos = retention.toNanos();
+        this.maxTransactions = maxTransactions;
+    }
+
+    public void add(Transaction transaction) {
+        addAll(Collections.singletonList(transaction));
+    }
+
+    public void addAll(Collection<Transaction> transactions) {
+        if (transactions.isEmpty()) {
+            return;
+        }
+        Segment current = null;
+        for (Transaction transaction : transactions) {
+            long key = partitionOf(TransactionBatch.toEpochNanos(transaction.getTimestamp()));
+            if (current == null || current.start != key) {
+                if (current != null) {
+                    current.lock.writeLock().unlock();
+                }
+                current = segments.computeIfAbsent(key, Segment::new);
+                current.lock.writeLock().lock();
+            }
+            current.append(transaction);
+        }
+        current.lock.writeLock().unlock();
+        size.addAndGet(transactions.size());
+        evict();
+
+        List<Transaction> added = transactions instanceof List
+                ? Collections.unmodifiableList((List<Transaction>) transactions)
+                : List.copyOf(transactions);
+        notifyListeners(added);
+    }
+
+    public void addAll(TransactionBatch batch) {
+        if (batch.size() == 0) {
+            return;
+        }
+        insert(batch);
+        notifyListeners(batch.asList());
+    }
+
+    // A failing listener must not keep the rows from the ones after it, such as persistence
+    private void notifyListeners(List<Transaction> added) {
+        for (Consumer<List<Transaction>> listener : listeners) {
+            try {
+                listener.accept(added);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Error notifying transaction store listener", e);
+            }
+        }
+    }
+
+    // Loads previously persisted rows without notifying listeners, so they are not written back
+    public void restore(TransactionBatch batch) {
+        if (batch.size() > 0) {
+            insert(batch);
+        }
+    }
+
+    private void insert(TransactionBatch batch) {
+        long[] timestamps = batch.getTimestamps();
+        Segment current = null;
+        for (int row = 0; row < batch.size(); row++) {
+            long key = partitionOf(timestamps[row]);
+            if (current == null || current.start != key) {
+                if (current != null) {
+                    current.lock.writeLock().unlock();
+                }
+                current = segments.computeIfAbsent(key, Segment::new);
+                current.lock.writeLock().lock();
+            }
+            current.append(batch, row);
+        }
+        current.lock.writeLock().unlock();
+        size.addAndGet(batch.size());
+        evict();
+    }
+
+    // Listeners receive every appended batch, letting views update incrementally
+    public void addListener(Consumer<List<Transaction>> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<List<Transaction>> listener) {
+        listeners.remove(listener);
+    }
+
+    public List<Transaction> query(LocalDate startDate, LocalDate endDate, String type, double fraudThreshold) {
+        return query(startDate, endDate, type, fraudThreshold, Integer.MAX_VALUE);
+    }
+
+    // Returns matches in insertion order; when limit is hit, the newest matches are kept
+    public List<Transaction> query(LocalDate startDate, LocalDate endDate, String type, double fraudThreshold,
+            int limit) {
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        if (startDate != null && endDate != null) {
+            from = TransactionBatch.toEpochNanos(startDate.atStartOfDay());
+            to = TransactionBatch.toEpochNanos(endDate.plusDays(1).atStartOfDay());
+        }
+        int typeCode = typeCode(type);
+
+        List<Transaction> result = new ArrayList<>();
+        if (typeCode == NONE) {
+            return result;
+        }
+        FilterKernel kernel = new FilterKernel(from, to, typeCode, (float) fraudThreshold);
+        Collection<Segment> newestFirst = range(from, to).descendingMap().values();
+        if (limit == Integer.MAX_VALUE && rowCount(newestFirst) > FilterKernel.PARALLEL_ROWS) {
+            // Every segment has to be visited anyway, so they are filtered side by side on the
+            // common pool and joined back in the same newest-first order; the list copy splits
+            // evenly where the skip list's view would not
+            List<List<Transaction>> parts = new ArrayList<>(newestFirst).parallelStream()
+                    .map(segment -> {
+                        List<Transaction> part = new ArrayList<>();
+                        segment.lock.readLock().lock();
+                        try {
+                            segment.collect(kernel, typeCode, fraudThreshold, Integer.MAX_VALUE, part);
+                        } finally {
+                            segment.lock.readLock().unlock();
+                        }
+                        return part;
+                    })
+                    .collect(Collectors.toList());
+            for (List<Transaction> part : parts) {
+                result.addAll(part);
+            }
+        } else {
+            for (Segment segment : newestFirst) {
+                if (result.size() >= limit) {
+                    break;
+                }
+                segment.lock.readLock().lock();
+                try {
+                    segment.collect(kernel, typeCode, fraudThreshold, limit - result.size(), result);
+                } finally {
+                    segment.lock.readLock().unlock();
+                }
+            }
+        }
+        Collections.reverse(result);
+        return result;
+    }
+
+    private static long rowCount(Collection<Segment> segments) {
+        long rows = 0;
+        for (Segment segment : segments) {
+            rows += segment.size();
+        }
+        return rows;
+    }
+
+    public long count(LocalDate startDate, LocalDate endDate, String type, double fraudThreshold) {
+        long from = Long.MIN_VALUE;
+        long to = Long.MAX_VALUE;
+        if (startDate != null && endDate != null) {
+            from = TransactionBatch.toEpochNanos(startDate.atStartOfDay());
+            to = TransactionBatch.toEpochNanos(endDate.plusDays(1).atStartOfDay());
+        }
+        int typeCode = typeCode(type);
+        if (typeCode == NONE) {
+            return 0;
+        }
+
+        FilterKernel kernel = new FilterKernel(from, to, typeCode, (float) fraudThreshold);
+        long count = 0;
+        for (Segment segment : range(from, to).values()) {
+            segment.lock.readLock().lock();
+            try {
+                count += segment.count(kernel, from, to, typeCode, fraudThreshold);
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+        return count;
+    }
+
+    // Hands each segment's rows to the action under the segment's read lock, oldest first
+    void forEachBatch(Consumer<TransactionBatch> action) {
+        for (Segment segment : segments.values()) {
+            segment.lock.readLock().lock();
+            try {
+                action.accept(segment.rows);
+            } finally {
+                segment.lock.readLock().unlock();
+            }
+        }
+    }
+
+    public long size() {
+        return size.get();
+    }
+
+    // Timestamp of the oldest retained row, or null when the store is empty
+    public LocalDateTime getOldestTimestamp() {
+        Map.Entry<Long, Segment> oldest = segments.firstEntry();
+        if (oldest == null) {
+            return null;
+        }
+        Segment segment = oldest.getValue();
+        segment.lock.readLock().lock();
+        try {
+            return segment.size() > 0 ? TransactionBatch.fromEpochNanos(segment.minNanos) : null;
+        } finally {
+            segment.lock.readLock().unlock();
+        }
+    }
+
+    public int segmentCount() {
+        return segments.size();
+    }
+
+    public void clear() {
+        for (Long key : segments.keySet()) {
+            Segment removed = segments.remove(key);
+            if (removed != null) {
+                size.addAndGet(-removed.size());
+            }
+        }
+    }
+
+    private NavigableMap<Long, Segment> range(long from, long to) {
+        if (from == Long.MIN_VALUE) {
+            return segments;
+        }
+        // A segment starting before 'from' may still contain rows inside the range
+        return segments.subMap(partitionOf(from), true, to, false);
+    }
+
+    private void evict() {
+        long cutoff = TransactionBatch.toEpochNanos(LocalDateTime.now()) - retentionNanos;
+        while (!segments.isEmpty()) {
+            Map.Entry<Long, Segment> oldest = segments.firstEntry();
+            boolean expired = oldest.getKey() + partitionNanos <= cutoff;
+            // Never drop the only segment for size; it is the one still receiving writes
+            boolean overCapacity = size.get() > maxTransactions && segments.size() > 1;
+            if (!expired && !overCapacity) {
+                break;
+            }
+            if (segments.remove(oldest.getKey(), oldest.getValue())) {
+                size.addAndGet(-oldest.getValue().size());
+            }
+        }
+    }
+
+    private long partitionOf(long nanos) {
+        return Math.floorDiv(nanos, partitionNanos) * partitionNanos;
+    }
+
+    // ANY for the "All" filter, NONE for a type that has never been stored
+    private static int typeCode(String type) {
+        if (ALL_TYPES.equals(type)) {
+            return ANY;
+        }
+        int code = CategoryDictionary.TYPES.codeOf(type);
+        return code >= 0 ? code : NONE;
+    }
+
+    // Bucketing happens on the stored float so thresholds and rows always land in the same bucket
+    static int bucketOf(float probability) {
+        int bucket = (int) (probability * BUCKETS);
+        return Math.max(0, Math.min(BUCKETS - 1, bucket));
+    }
+
+    private static final class Segment {
+        private final long start;
+        private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        private final TransactionBatch rows = new TransactionBatch(256);
+        private final IntList[] byBucket = new IntList[BUCKETS];
+        private IntList[] byType = new IntList[0];
+        private int[][] typeBucketCounts = new int[0][];
+        private long minNanos = Long.MAX_VALUE;
+        private long maxNanos = Long.MIN_VALUE;
+
+        private Segment(long start) {
+            this.start = start;
+            for (int i = 0; i < BUCKETS; i++) {
+                byBucket[i] = new IntList();
+            }
+        }
+
+        private int size() {
+            return rows.size();
+        }
+
+        private void append(Transaction transaction) {
+            index(rows.add(transaction));
+        }
+
+        private void append(TransactionBatch batch, int row) {
+            index(rows.add(batch, row));
+        }
+
+        private void index(int row) {
+            long nanos = rows.getTimestamps()[row];
+            minNanos = Math.min(minNanos, nanos);
+            maxNanos = Math.max(maxNanos, nanos);
+
+            int type = rows.getTypeCodes()[row];
+            int bucket = bucketOf(rows.getFraudProbabilities()[row]);
+            byBucket[bucket].add(row);
+            if (type < 0) {
+                return;
+            }
+            if (type >= byType.length) {
+                int length = Math.max(type + 1, byType.length * 2);
+                byType = Arrays.copyOf(byType, length);
+                typeBucketCounts = Arrays.copyOf(typeBucketCounts, length);
+            }
+            if (byType[type] == null) {
+                byType[type] = new IntList();
+                typeBucketCounts[type] = new int[BUCKETS];
+            }
+            byType[type].add(row);
+            typeBucketCounts[type][bucket]++;
+        }
+
+        private void collect(FilterKernel kernel, int type, double threshold, int limit, List<Transaction> out) {
+            boolean anyType = type == ANY;
+            IntList typeRows = anyType || type >= byType.length ? null : byType[type];
+            if (!anyType && typeRows == null) {
+                return;
+            }
+
+            // Walk whichever index yields fewer candidates, then check the remaining predicates
+            int firstBucket = bucketOf((float) threshold);
+            int bucketRows = 0;
+            for (int b = firstBucket; b < BUCKETS; b++) {
+                bucketRows += byBucket[b].size;
+            }
+            long[] timestamps = rows.getTimestamps();
+            int[] typeCodes = rows.getTypeCodes();
+            float[] probabilities = rows.getFraudProbabilities();
+            int indexed = typeRows != null ? Math.min(typeRows.size, bucketRows) : bucketRows;
+            if ((long) indexed * DENSE_SCAN_DIVISOR >= rows.size()) {
+                // Cheaper to test every row than to gather and sort that many candidates
+                long[] bitmap = kernel.select(timestamps, typeCodes, probabilities, rows.size());
+                int taken = 0;
+                for (int word = bitmap.length - 1; word >= 0 && taken < limit; word--) {
+                    long bits = bitmap[word];
+                    while (bits != 0 && taken < limit) {
+                        int bit = 63 - Long.numberOfLeadingZeros(bits);
+                        out.add(rows.get((word << 6) + bit));
+                        bits &= ~(1L << bit);
+                        taken++;
+                    }
+                }
+                return;
+            }
+
+            int[] candidates;
+            int candidateCount;
+            if (typeRows != null && typeRows.size <= bucketRows) {
+                candidates = typeRows.values;
+                candidateCount = typeRows.size;
+            } else {
+                candidates = new int[bucketRows];
+                candidateCount = 0;
+                for (int b = firstBucket; b < BUCKETS; b++) {
+                    System.arraycopy(byBucket[b].values, 0, candidates, candidateCount, byBucket[b].size);
+                    candidateCount += byBucket[b].size;
+                }
+                // Restore insertion order across buckets
+                Arrays.sort(candidates, 0, candidateCount);
+            }
+
+            // Newest first so the caller can stop at the limit
+            int taken = 0;
+            for (int i = candidateCount - 1; i >= 0 && taken < limit; i--) {
+                int row = candidates[i];
+                if (kernel.matches(timestamps[row], typeCodes[row], probabilities[row])) {
+                    out.add(rows.get(row));
+                    taken++;
+                }
+            }
+        }
+
+        private long count(FilterKernel kernel, long from, long to, int type, double threshold) {
+            boolean anyType = type == ANY;
+            if (!anyType && (type >= byType.length || byType[type] == null)) {
+                return 0;
+            }
+            float minProbability = (float) threshold;
+            if (minNanos >= from && maxNanos < to) {
+                // Whole segment is in range: full buckets come straight from the indexes and
+                // only the bucket containing the threshold needs a row check. "All" counts the
+                // bucket lists, which unlike the per-type counters include rows without a type
+                int firstBucket = bucketOf((float) threshold);
+                long count = 0;
+                for (int b = firstBucket + 1; b < BUCKETS; b++) {
+                    count += anyType ? byBucket[b].size : typeBucketCounts[type][b];
+                }
+                IntList boundary = byBucket[firstBucket];
+                int[] typeCodes = rows.getTypeCodes();
+                float[] probabilities = rows.getFraudProbabilities();
+                for (int i = 0; i < boundary.size; i++) {
+                    int row = boundary.values[i];
+                    if (probabilities[row] >= minProbability && (anyType || typeCodes[row] == type)) {
+                        count++;
+                    }
+                }
+                return count;
+            }
+            return kernel.count(rows.getTimestamps(), rows.getTypeCodes(), rows.getFraudProbabilities(), rows.size());
+        }
+    }
+
+    private static final class IntList {
+        private int[] values = new int[16];
+        private int size;
+
+        private void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+    }
+}
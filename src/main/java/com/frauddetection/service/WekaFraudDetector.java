@@ -1,20 +1,96 @@
 package com.frauddetection.service;
 
+import com.frauddetection.metrics.Counter;
+import com.frauddetection.metrics.Gauge;
+import com.frauddetection.metrics.LatencyHistogram;
+import com.frauddetection.metrics.MetricsRegistry;
+import com.frauddetection.model.CategoryDictionary;
 import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
 import weka.classifiers.trees.RandomForest;
 import weka.core.Attribute;
 import weka.core.DenseInstance;
+import weka.core.Instance;
 import weka.core.Instances;
+import java.io.IOException;
+import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Logger;
 import java.util.logging.Level;
 
-public class WekaFraudDetector {
+public class WekaFraudDetector implements BatchScorer {
     private static final Logger LOGGER = Logger.getLogger(WekaFraudDetector.class.getName());
-    private RandomForest classifier;
+    private static final MetricsRegistry METRICS = MetricsRegistry.global();
+    private static final Counter PREDICTIONS = METRICS.counter("detector.predictions");
+    private static final Counter FEEDBACK = METRICS.counter("detector.feedback");
+    private static final LatencyHistogram PREDICT_TIME = METRICS.histogram("detector.predictTime");
+    private static final LatencyHistogram BATCH_PREDICT_TIME = METRICS.histogram("detector.batchPredictTime");
+    private static final LatencyHistogram UPDATE_TIME = METRICS.histogram("detector.updateModelTime");
+    // Single predictions take well under a microsecond, so only one in 16 is timed
+    private static final int SAMPLE_MASK = 15;
+    // Attribute layout: amount, type, location, the behavioural features, then the class
+    private static final int FEATURE_OFFSET = 3;
+    private static final int CLASS_INDEX = FEATURE_OFFSET + FeatureEngine.FEATURE_COUNT;
+    // Buckets shared by type and location values outside the seed vocabulary
+    private static final int TYPE_HASH_BUCKETS = 8;
+    private static final int LOCATION_HASH_BUCKETS = 64;
+    private final AtomicReference<TrainedModel> model = new AtomicReference<>();
+    private final AtomicLong modelVersions = new AtomicLong();
     private Instances dataStructure;
+    private ModelRetrainer retrainer;
+    private final FeatureEngine features;
+    private final ScoreCache scoreCache;
+    private final CategoryEncoding types = new CategoryEncoding(CategoryDictionary.TYPES, TYPE_HASH_BUCKETS);
+    private final CategoryEncoding locations = new CategoryEncoding(CategoryDictionary.LOCATIONS,
+            LOCATION_HASH_BUCKETS);
+    private final ModelSnapshotStore snapshots;
+    private final ForestTrainer trainer;
+    private final List<Consumer<TrainedModel>> modelListeners = new CopyOnWriteArrayList<>();
+    private final List<Gauge.Binding> gauges = new ArrayList<>();
+    private int seedSize;
+    private volatile boolean compiledInference = true;
+    private final ThreadLocal<double[]> rowBuffer = ThreadLocal.withInitial(() -> new double[dataStructure.numAttributes()]);
 
     public WekaFraudDetector() {
+        this(new FeatureEngine());
+    }
+
+    public WekaFraudDetector(FeatureEngine features) {
+        this(features, new ScoreCache());
+    }
+
+    // A null cache scores every row through the forest
+    public WekaFraudDetector(FeatureEngine features, ScoreCache scoreCache) {
+        this(features, scoreCache, null);
+    }
+
+    // With a snapshot store, startup loads the newest saved model instead of training, and every
+    // model trained afterwards is saved; without one the model lives only in memory
+    public WekaFraudDetector(FeatureEngine features, ScoreCache scoreCache, ModelSnapshotStore snapshots) {
+        this(features, scoreCache, snapshots, TrainingConfig.defaults());
+    }
+
+    public WekaFraudDetector(FeatureEngine features, ScoreCache scoreCache, ModelSnapshotStore snapshots,
+            TrainingConfig trainingConfig) {
+        this.trainer = new ForestTrainer(trainingConfig);
+        this.features = features;
+        this.scoreCache = scoreCache;
+        this.snapshots = snapshots;
+        gauges.add(METRICS.gauge("features.entities", features::getTrackedEntities));
+        if (scoreCache != null) {
+            gauges.add(METRICS.gauge("scoreCache.hits", scoreCache::getHits));
+            gauges.add(METRICS.gauge("scoreCache.misses", scoreCache::getMisses));
+            gauges.add(METRICS.gauge("scoreCache.evictions", scoreCache::getEvictions));
+            gauges.add(METRICS.gauge("scoreCache.size", scoreCache::size));
+        }
         initializeModel();
     }
 
@@ -26,26 +102,14 @@ public class WekaFraudDetector {
             // Numeric attributes
             attributes.add(new Attribute("amount"));
 
-            // Nominal attribute for transaction type
-            ArrayList<String> typeValues = new ArrayList<>();
-            typeValues.add("Credit Card");
-            typeValues.add("Wire Transfer");
-            typeValues.add("Cash Deposit");
-            attributes.add(new Attribute("type", typeValues));
-
-            // Nominal attribute for location
-            ArrayList<String> locationValues = new ArrayList<>();
-            locationValues.add("New York");
-            locationValues.add("London");
-            locationValues.add("Tokyo");
-            locationValues.add("Singapore");
-            locationValues.add("Hong Kong");
-            locationValues.add("Dubai");
-            locationValues.add("Paris");
-            locationValues.add("Sydney");
-            locationValues.add("Mumbai");
-            locationValues.add("Shanghai");
-            attributes.add(new Attribute("location", locationValues));
+            // Nominal attributes for type and location over their dictionaries' fixed value space
+            attributes.add(new Attribute("type", types.attributeValues()));
+            attributes.add(new Attribute("location", locations.attributeValues()));
+
+            // Numeric behavioural features, filled in by the feature engine
+            for (String feature : FeatureEngine.FEATURE_NAMES) {
+                attributes.add(new Attribute(feature));
+            }
 
             // Class attribute (fraudulent or legitimate)
             ArrayList<String> classValues = new ArrayList<>();
@@ -57,17 +121,10 @@ public class WekaFraudDetector {
             dataStructure = new Instances("FraudDetection", attributes, 0);
             dataStructure.setClassIndex(dataStructure.numAttributes() - 1);
 
-            // Initialize and configure the Random Forest classifier
-            classifier = new RandomForest();
-            String[] options = new String[] {
-                    "-I", "100", // number of trees
-                    "-K", "3", // number of features
-                    "-S", "42" // random seed
-            };
-            classifier.setOptions(options);
-
-            // Train the model with some initial data
-            trainInitialModel();
+            // Train the model with some initial data unless a saved one fits this schema
+            if (!loadSnapshot()) {
+                trainInitialModel();
+            }
 
             LOGGER.info("Weka Random Forest model initialized successfully");
         } catch (Exception e) {
@@ -79,45 +136,177 @@ public class WekaFraudDetector {
         // Create some sample training data
         Instances trainingData = new Instances(dataStructure);
 
-        // Add some legitimate transactions
-        addTrainingInstance(trainingData, 100.0, "Credit Card", "New York", "legitimate");
-        addTrainingInstance(trainingData, 500.0, "Wire Transfer", "London", "legitimate");
-        addTrainingInstance(trainingData, 1000.0, "Cash Deposit", "Tokyo", "legitimate");
+        // Add some legitimate transactions: occasional, typical amounts, staying put
+        addTrainingInstance(trainingData, 100.0, "Credit Card", "New York", 1, 0.2, 0, "legitimate");
+        addTrainingInstance(trainingData, 500.0, "Wire Transfer", "London", 0, 0.0, 0, "legitimate");
+        addTrainingInstance(trainingData, 1000.0, "Cash Deposit", "Tokyo", 2, 0.5, 1, "legitimate");
 
-        // Add some fraudulent transactions
-        addTrainingInstance(trainingData, 9000.0, "Wire Transfer", "Dubai", "fraudulent");
-        addTrainingInstance(trainingData, 8500.0, "Credit Card", "Mumbai", "fraudulent");
-        addTrainingInstance(trainingData, 7500.0, "Wire Transfer", "Shanghai", "fraudulent");
+        // Add some fraudulent transactions: bursts of unusual amounts from changing locations
+        addTrainingInstance(trainingData, 9000.0, "Wire Transfer", "Dubai", 8, 4.0, 5, "fraudulent");
+        addTrainingInstance(trainingData, 8500.0, "Credit Card", "Mumbai", 12, 3.0, 3, "fraudulent");
+        addTrainingInstance(trainingData, 7500.0, "Wire Transfer", "Shanghai", 6, 5.0, 4, "fraudulent");
 
         // Train the classifier
-        classifier.buildClassifier(trainingData);
+        seedSize = trainingData.numInstances();
+        model.set(train(trainingData));
+
+        // The seed data stays part of every retrain so the forest never collapses to a handful of
+        // feedback rows
+        retrainer = new ModelRetrainer(trainingData, this::train, this::publish);
+    }
+
+    private boolean loadSnapshot() {
+        if (snapshots == null) {
+            return false;
+        }
+        long start = System.nanoTime();
+        ModelSnapshotStore.Snapshot snapshot = snapshots.loadLatest(dataStructure);
+        if (snapshot == null) {
+            return false;
+        }
+        TrainedModel loaded = snapshot.getModel();
+        TrainedModel usable = loaded.getCompiledForest() != null || !compiledInference ? loaded
+                : new TrainedModel(loaded.getClassifier(), compile(loaded.getClassifier()), loaded.getVersion(),
+                        loaded.getTrainingSize(), loaded.getTrainedAt());
+        modelVersions.set(usable.getVersion());
+        model.set(usable);
+
+        // Seed rows stay fixed; the rest is feedback history the retrainer keeps sliding over
+        Instances trainingData = snapshot.getTrainingData();
+        seedSize = snapshot.getSeedSize();
+        Instances seed = new Instances(trainingData, 0, seedSize);
+        retrainer = new ModelRetrainer(seed, this::train, this::publish);
+        List<Instance> history = new ArrayList<>(trainingData.subList(seedSize, trainingData.numInstances()));
+        retrainer.restoreHistory(history);
+        LOGGER.info(String.format("Loaded model v%d trained on %d instances from snapshot in %d ms",
+                usable.getVersion(), usable.getTrainingSize(), (System.nanoTime() - start) / 1_000_000));
+        return true;
+    }
+
+    // Cached scores carry their model version, so one computed with the old model while this runs
+    // is never served; invalidating just frees the space right away
+    private void publish(TrainedModel trained) {
+        model.set(trained);
+        if (scoreCache != null) {
+            scoreCache.invalidate();
+        }
+        for (Consumer<TrainedModel> listener : modelListeners) {
+            try {
+                listener.accept(trained);
+            } catch (RuntimeException e) {
+                LOGGER.log(Level.WARNING, "Error notifying model listener", e);
+            }
+        }
+    }
+
+    // Called on the retrain thread with every model published after this one
+    public void addModelListener(Consumer<TrainedModel> listener) {
+        modelListeners.add(listener);
+    }
+
+    // Empty dataset with the model's attributes, for checking that a model fits this detector
+    public Instances getHeader() {
+        return new Instances(dataStructure, 0);
+    }
+
+    // Replaces the current model with one trained elsewhere, e.g. received from a cluster
+    // coordinator; the model must have been trained on the same schema
+    public void installModel(TrainedModel trained, Instances header) {
+        String mismatch = dataStructure.equalHeadersMsg(header);
+        if (mismatch != null) {
+            throw new IllegalArgumentException("Model was trained on a different schema: " + mismatch);
+        }
+        TrainedModel usable = trained.getCompiledForest() != null || !compiledInference ? trained
+                : new TrainedModel(trained.getClassifier(), compile(trained.getClassifier()), trained.getVersion(),
+                        trained.getTrainingSize(), trained.getTrainedAt());
+        modelVersions.accumulateAndGet(usable.getVersion(), Math::max);
+        publish(usable);
     }
 
-    private void addTrainingInstance(Instances data, double amount, String type, String location, String classValue) {
+    private TrainedModel train(Instances trainingData) throws Exception {
+        // Trees are built in parallel on the trainer's own pool as configured
+        RandomForest classifier = trainer.train(trainingData, (built, total) ->
+                LOGGER.fine(String.format("Built %d of %d trees", built, total)));
+
+        TrainedModel trained = new TrainedModel(classifier, compile(classifier), modelVersions.incrementAndGet(),
+                trainingData.numInstances(), Instant.now());
+        if (snapshots != null) {
+            try {
+                snapshots.save(trained, dataStructure, trainingData, seedSize);
+            } catch (IOException e) {
+                // The model is still used; only the next startup has to retrain
+                LOGGER.log(Level.WARNING, "Error saving model snapshot", e);
+            }
+        }
+        return trained;
+    }
+
+    private CompiledForest compile(RandomForest classifier) {
+        try {
+            return CompiledForest.compile(classifier, dataStructure, 1);
+        } catch (RuntimeException e) {
+            // Keep scoring through Weka if the forest cannot be flattened
+            LOGGER.log(Level.WARNING, "Error compiling model, falling back to Weka inference", e);
+            return null;
+        }
+    }
+
+    private void addTrainingInstance(Instances data, double amount, String type, String location,
+            double velocity, double amountDeviation, double locationChanges, String classValue) {
         double[] values = new double[data.numAttributes()];
         values[0] = amount;
-        values[1] = data.attribute(1).indexOfValue(type);
-        values[2] = data.attribute(2).indexOfValue(location);
-        values[3] = data.attribute(3).indexOfValue(classValue);
+        values[1] = types.indexOf(type);
+        values[2] = locations.indexOf(location);
+        values[FEATURE_OFFSET] = velocity;
+        values[FEATURE_OFFSET + 1] = amountDeviation;
+        values[FEATURE_OFFSET + 2] = locationChanges;
+        values[CLASS_INDEX] = data.attribute(CLASS_INDEX).indexOfValue(classValue);
         data.add(new DenseInstance(1.0, values));
     }
 
     public double predictFraudProbability(Transaction transaction) {
+        PREDICTIONS.increment();
+        if (!sampled()) {
+            return predict(transaction);
+        }
+        long start = System.nanoTime();
+        double probability = predict(transaction);
+        PREDICT_TIME.record(System.nanoTime() - start);
+        return probability;
+    }
+
+    private double predict(Transaction transaction) {
+        // Read the published model once so the whole prediction uses a single version
+        TrainedModel current = model.get();
+        if (current == null) {
+            return 0.5;
+        }
+        CompiledForest compiled = current.getCompiledForest();
+        if (compiledInference && compiled != null) {
+            double[] row = rowBuffer.get();
+            encode(transaction, row);
+            long key = cacheKey(row);
+            double cached = lookup(key, current);
+            return !Double.isNaN(cached) ? cached : remember(key, current, compiled.score(row));
+        }
         try {
             // Create instance for prediction
             double[] values = new double[dataStructure.numAttributes()];
-            values[0] = transaction.getAmount();
-            values[1] = dataStructure.attribute(1).indexOfValue(transaction.getType());
-            values[2] = dataStructure.attribute(2).indexOfValue(transaction.getLocation());
+            encode(transaction, values);
+            long key = cacheKey(values);
+            double cached = lookup(key, current);
+            if (!Double.isNaN(cached)) {
+                return cached;
+            }
 
             DenseInstance instance = new DenseInstance(1.0, values);
             instance.setDataset(dataStructure);
 
             // Get probability distribution
-            double[] distribution = classifier.distributionForInstance(instance);
+            double[] distribution = current.getClassifier().distributionForInstance(instance);
 
             // Return probability of fraud (index 1 is "fraudulent" class)
-            return distribution[1];
+            return remember(key, current, distribution[1]);
         } catch (Exception e) {
             LOGGER.log(Level.WARNING, "Error predicting fraud probability", e);
             // Fallback to a conservative estimate
@@ -125,24 +314,238 @@ public class WekaFraudDetector {
         }
     }
 
-    public void updateModel(Transaction transaction, boolean isActuallyFraudulent) {
-        try {
-            // Create instance for updating the model
-            double[] values = new double[dataStructure.numAttributes()];
-            values[0] = transaction.getAmount();
-            values[1] = dataStructure.attribute(1).indexOfValue(transaction.getType());
-            values[2] = dataStructure.attribute(2).indexOfValue(transaction.getLocation());
-            values[3] = dataStructure.attribute(3).indexOfValue(isActuallyFraudulent ? "fraudulent" : "legitimate");
+    @Override
+    public double[] predictFraudProbabilities(List<Transaction> transactions) {
+        long start = System.nanoTime();
+        double[] probabilities = predictList(transactions);
+        recordBatch(start, probabilities.length);
+        return probabilities;
+    }
 
-            Instances updateData = new Instances(dataStructure);
-            updateData.add(new DenseInstance(1.0, values));
+    private double[] predictList(List<Transaction> transactions) {
+        double[] probabilities = new double[transactions.size()];
+        TrainedModel current = model.get();
+        if (current == null) {
+            Arrays.fill(probabilities, 0.5);
+            return probabilities;
+        }
 
-            // Update the classifier with the new instance
-            classifier.buildClassifier(updateData);
+        CompiledForest compiled = current.getCompiledForest();
+        if (compiledInference && compiled != null) {
+            double[] row = rowBuffer.get();
+            for (int i = 0; i < probabilities.length; i++) {
+                encode(transactions.get(i), row);
+                long key = cacheKey(row);
+                double cached = lookup(key, current);
+                probabilities[i] = !Double.isNaN(cached) ? cached : remember(key, current, compiled.score(row));
+            }
+            return probabilities;
+        }
 
-            LOGGER.info("Model updated with new transaction data");
-        } catch (Exception e) {
-            LOGGER.log(Level.WARNING, "Error updating model", e);
+        // One instance is reused for the whole batch; DenseInstance keeps a reference to
+        // the values array, so re-encoding into it updates the instance in place
+        double[] values = new double[dataStructure.numAttributes()];
+        DenseInstance instance = new DenseInstance(1.0, values);
+        instance.setDataset(dataStructure);
+
+        for (int i = 0; i < probabilities.length; i++) {
+            try {
+                encode(transactions.get(i), values);
+                long key = cacheKey(values);
+                double cached = lookup(key, current);
+                probabilities[i] = !Double.isNaN(cached) ? cached
+                        : remember(key, current, current.getClassifier().distributionForInstance(instance)[1]);
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Error predicting fraud probability", e);
+                probabilities[i] = 0.5;
+            }
+        }
+        return probabilities;
+    }
+
+    // Quantizes the row in place when caching, so cached and freshly computed scores agree
+    private long cacheKey(double[] row) {
+        return scoreCache != null ? scoreCache.quantize(row) : ScoreCache.NO_KEY;
+    }
+
+    private double lookup(long key, TrainedModel current) {
+        return key != ScoreCache.NO_KEY ? scoreCache.get(key, current.getVersion()) : Double.NaN;
+    }
+
+    private double remember(long key, TrainedModel current, double score) {
+        if (key != ScoreCache.NO_KEY) {
+            scoreCache.put(key, current.getVersion(), score);
+        }
+        return score;
+    }
+
+    // Scores a columnar batch without materializing Transactions. The score cache is bypassed, since
+    // the whole batch is walked tree by tree, but rows are still quantized like cached ones so both
+    // predict paths give the same score for the same row
+    public double[] predictFraudProbabilities(TransactionBatch batch) {
+        long start = System.nanoTime();
+        int count = batch.size();
+        TrainedModel current = model.get();
+        CompiledForest compiled = current != null ? current.getCompiledForest() : null;
+        if (!compiledInference || compiled == null) {
+            double[] probabilities = predictList(batch.asList());
+            recordBatch(start, count);
+            return probabilities;
+        }
+
+        double[][] columns = new double[dataStructure.numAttributes()][];
+        columns[0] = batch.getAmounts();
+        columns[1] = nominalColumn(types, batch.getTypeDictionary(), batch.getTypeCodes(), count);
+        columns[2] = nominalColumn(locations, batch.getLocationDictionary(), batch.getLocationCodes(), count);
+        featureColumns(batch, columns);
+        columns[CLASS_INDEX] = new double[count]; // class slot, never split on
+        if (scoreCache != null) {
+            quantizeColumns(columns, count);
+        }
+
+        double[] probabilities = new double[count];
+        compiled.score(columns, count, probabilities);
+        recordBatch(start, count);
+        return probabilities;
+    }
+
+    // Snaps amount and deviation the way cacheKey does for a single row; the batch's own amount
+    // column is copied first, and rows the cache cannot key keep their raw values as they do there
+    private void quantizeColumns(double[][] columns, int count) {
+        columns[0] = Arrays.copyOf(columns[0], count);
+        double[] amounts = columns[0];
+        double[] deviations = columns[FEATURE_OFFSET + 1];
+        double[] row = rowBuffer.get();
+        for (int r = 0; r < count; r++) {
+            for (int c = 0; c < FEATURE_OFFSET + FeatureEngine.FEATURE_COUNT; c++) {
+                row[c] = columns[c][r];
+            }
+            if (scoreCache.quantize(row) != ScoreCache.NO_KEY) {
+                amounts[r] = row[0];
+                deviations[r] = row[FEATURE_OFFSET + 1];
+            }
+        }
+    }
+
+    private static void recordBatch(long start, int count) {
+        PREDICTIONS.add(count);
+        if (METRICS.isEnabled()) {
+            BATCH_PREDICT_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    private static boolean sampled() {
+        return METRICS.isEnabled() && (ThreadLocalRandom.current().nextInt() & SAMPLE_MASK) == 0;
+    }
+
+    // Rows are keyed by account like Transactions are, falling back to the location without one
+    private void featureColumns(TransactionBatch batch, double[][] columns) {
+        int count = batch.size();
+        for (int f = 0; f < FeatureEngine.FEATURE_COUNT; f++) {
+            columns[FEATURE_OFFSET + f] = new double[count];
+        }
+        CategoryDictionary locations = batch.getLocationDictionary();
+        String[] locationByCode = new String[locations.size()];
+        int[] hashByCode = new int[locationByCode.length];
+        for (int code = 0; code < locationByCode.length; code++) {
+            locationByCode[code] = locations.valueOf(code);
+            hashByCode[code] = locationByCode[code] != null ? locationByCode[code].hashCode() : 0;
+        }
+        long[] timestamps = batch.getTimestamps();
+        double[] amounts = batch.getAmounts();
+        int[] locationCodes = batch.getLocationCodes();
+        String[] accountIds = batch.getAccountIds();
+        double[] row = new double[FeatureEngine.FEATURE_COUNT];
+        for (int r = 0; r < count; r++) {
+            int code = locationCodes[r];
+            boolean known = code >= 0 && code < locationByCode.length;
+            String location = known ? locationByCode[code] : null;
+            features.observe(accountIds[r] != null ? accountIds[r] : location, timestamps[r], amounts[r],
+                    known ? hashByCode[code] : 0, row, 0);
+            for (int f = 0; f < FeatureEngine.FEATURE_COUNT; f++) {
+                columns[FEATURE_OFFSET + f][r] = row[f];
+            }
+        }
+    }
+
+    private static double[] nominalColumn(CategoryEncoding encoding, CategoryDictionary dictionary, int[] codes,
+            int count) {
+        double[] column = new double[count];
+        if (dictionary == encoding.getDictionary()) {
+            for (int row = 0; row < count; row++) {
+                column[row] = encoding.indexOf(codes[row]);
+            }
+            return column;
+        }
+        // A batch with its own dictionary is resolved through its values once per code, not per row
+        int[] indexByCode = new int[dictionary.size()];
+        for (int code = 0; code < indexByCode.length; code++) {
+            indexByCode[code] = encoding.indexOf(dictionary.valueOf(code));
+        }
+        for (int row = 0; row < count; row++) {
+            int code = codes[row];
+            column[row] = code >= 0 && code < indexByCode.length ? indexByCode[code] : encoding.unknownIndex();
+        }
+        return column;
+    }
+
+    public void setCompiledInference(boolean enabled) {
+        this.compiledInference = enabled;
+    }
+
+    public boolean isCompiledInference() {
+        TrainedModel current = model.get();
+        return compiledInference && current != null && current.getCompiledForest() != null;
+    }
+
+    public TrainedModel getModel() {
+        return model.get();
+    }
+
+    public ScoreCache getScoreCache() {
+        return scoreCache;
+    }
+
+    // Scoring a transaction adds it to its entity's window; feedback only reads the window
+    private void encode(Transaction transaction, double[] values) {
+        encodeBase(transaction, values);
+        features.observe(transaction, values, FEATURE_OFFSET);
+    }
+
+    private void encodeBase(Transaction transaction, double[] values) {
+        values[0] = transaction.getAmount();
+        values[1] = types.indexOf(transaction.getType());
+        values[2] = locations.indexOf(transaction.getLocation());
+    }
+
+    public void updateModel(Transaction transaction, boolean isActuallyFraudulent) {
+        if (retrainer == null) {
+            LOGGER.warning("Model not initialized, ignoring feedback");
+            return;
+        }
+        FEEDBACK.increment();
+        long start = sampled() ? System.nanoTime() : 0;
+        // Only the labeled instance is built here; the retrainer rebuilds the forest in the background
+        double[] values = new double[dataStructure.numAttributes()];
+        encodeBase(transaction, values);
+        features.peek(transaction, values, FEATURE_OFFSET);
+        values[CLASS_INDEX] = dataStructure.attribute(CLASS_INDEX).indexOfValue(
+                isActuallyFraudulent ? "fraudulent" : "legitimate");
+        retrainer.submit(new DenseInstance(1.0, values));
+        if (start != 0) {
+            UPDATE_TIME.record(System.nanoTime() - start);
+        }
+    }
+
+    public CompletableFuture<Void> retrainNow() {
+        return retrainer != null ? retrainer.retrainNow() : CompletableFuture.completedFuture(null);
+    }
+
+    public void close() {
+        if (retrainer != null) {
+            retrainer.close();
         }
+        trainer.close();
+        gauges.forEach(Gauge.Binding::close);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,69 @@
+package com.frauddetection.ui;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import javafx.application.Platform;
+
+// Runs dashboard queries on one background thread, latest request wins. Submitting cancels the
+// previous query if it has not started; one already running is left to finish (interrupting it
+// could close the H2 file channel under a JDBC call) and its result is discarded. Results are
+// handed to the FX thread in a single Platform.runLater.
+final class BackgroundQueryExecutor implements AutoCloseable {
+    private static final Logger LOGGER = Logger.getLogger(BackgroundQueryExecutor.class.getName());
+
+    private final ExecutorService executor;
+    private final AtomicLong generation = new AtomicLong();
+    private Future<?> current;
+
+    BackgroundQueryExecutor(String threadName) {
+        executor = Executors.newSingleThreadExecutor(runnable -> {
+            Thread thread = new Thread(runnable, threadName);
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // Must be called on the FX thread; onResult and onError also run there
+    <T> void submit(Callable<T> query, Consumer<T> onResult, Consumer<Exception> onError) {
+        long id = generation.incrementAndGet();
+        if (current != null) {
+            current.cancel(false);
+        }
+        current = executor.submit(() -> {
+            if (id != generation.get()) {
+                return;
+            }
+            try {
+                T result = query.call();
+                Platform.runLater(() -> {
+                    if (id == generation.get()) {
+                        onResult.accept(result);
+                    }
+                });
+            } catch (Exception e) {
+                LOGGER.log(Level.WARNING, "Dashboard query failed", e);
+                Platform.runLater(() -> {
+                    if (id == generation.get()) {
+                        onError.accept(e);
+                    }
+                });
+            }
+        });
+    }
+
+    boolean isPending() {
+        return current != null && !current.isDone();
+    }
+
+    @Override
+    public void close() {
+        generation.incrementAndGet();
+        executor.shutdownNow();
+    }
+}
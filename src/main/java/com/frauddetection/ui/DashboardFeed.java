@@ -0,0 +1,133 @@
+package com.frauddetection.ui;
+
+import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import com.frauddetection.service.TransactionStore;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+// Store listener that buffers the inserts matching the dashboard's current filter until the next UI
+// tick. Ingest threads do the filtering and counting; the UI thread only drains what arrived since
+// the previous tick. Only the newest rows the table can show are kept, the counters cover all.
+final class DashboardFeed implements Consumer<List<Transaction>> {
+
+    static final class Filter {
+        private final long startNanos;
+        private final long endNanos;
+        private final String type;
+        private final float threshold;
+        private final float fraudThreshold;
+
+        Filter(LocalDate startDate, LocalDate endDate, String type, double threshold) {
+            boolean bounded = startDate != null && endDate != null;
+            this.startNanos = bounded ? TransactionBatch.toEpochNanos(startDate.atStartOfDay()) : Long.MIN_VALUE;
+            this.endNanos = bounded ? TransactionBatch.toEpochNanos(endDate.plusDays(1).atStartOfDay()) : Long.MAX_VALUE;
+            this.type = TransactionStore.ALL_TYPES.equals(type) ? null : type;
+            // Same float comparison as the store so deltas and reset counts agree
+            this.threshold = (float) threshold;
+            this.fraudThreshold = (float) Math.max(threshold, Transaction.FRAUD_THRESHOLD);
+        }
+
+        boolean matches(Transaction transaction) {
+            if ((float) transaction.getFraudProbability() < threshold) {
+                return false;
+            }
+            if (type != null && !type.equals(transaction.getType())) {
+                return false;
+            }
+            long timestamp = TransactionBatch.toEpochNanos(transaction.getTimestamp());
+            return timestamp >= startNanos && timestamp < endNanos;
+        }
+
+        boolean isFraud(Transaction transaction) {
+            return (float) transaction.getFraudProbability() >= fraudThreshold;
+        }
+    }
+
+    static final class Delta {
+        final List<Transaction> rows;
+        final long matched;
+        final long fraud;
+
+        Delta(List<Transaction> rows, long matched, long fraud) {
+            this.rows = rows;
+            this.matched = matched;
+            this.fraud = fraud;
+        }
+    }
+
+    private final int capacity;
+    private final ArrayDeque<Transaction> pending = new ArrayDeque<>();
+    private volatile Filter filter;
+    private long pendingMatched;
+    private long pendingFraud;
+
+    DashboardFeed(int capacity) {
+        this.capacity = capacity;
+    }
+
+    @Override
+    public void accept(List<Transaction> added) {
+        Filter current = filter;
+        if (current == null) {
+            return;
+        }
+        ArrayDeque<Transaction> matches = null;
+        long matched = 0;
+        long fraud = 0;
+        for (Transaction transaction : added) {
+            if (!current.matches(transaction)) {
+                continue;
+            }
+            matched++;
+            if (current.isFraud(transaction)) {
+                fraud++;
+            }
+            if (matches == null) {
+                matches = new ArrayDeque<>();
+            } else if (matches.size() == capacity) {
+                matches.removeFirst();
+            }
+            matches.addLast(transaction);
+        }
+        if (matched == 0) {
+            return;
+        }
+        synchronized (this) {
+            // Rows filtered under a filter that has since been replaced belong to the old view
+            if (filter != current) {
+                return;
+            }
+            pendingMatched += matched;
+            pendingFraud += fraud;
+            for (Transaction transaction : matches) {
+                if (pending.size() == capacity) {
+                    pending.removeFirst();
+                }
+                pending.addLast(transaction);
+            }
+        }
+    }
+
+    // Starts buffering for a new filter and discards anything collected for the old one
+    synchronized void reset(Filter newFilter) {
+        filter = newFilter;
+        pending.clear();
+        pendingMatched = 0;
+        pendingFraud = 0;
+    }
+
+    synchronized Delta drain() {
+        if (pendingMatched == 0) {
+            return null;
+        }
+        Delta delta = new Delta(new ArrayList<>(pending), pendingMatched, pendingFraud);
+        pending.clear();
+        pendingMatched = 0;
+        pendingFraud = 0;
+        return delta;
+    }
+}
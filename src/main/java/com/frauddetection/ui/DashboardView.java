@@ -9,9 +9,20 @@ import javafx.scene.control.*;
 import javafx.scene.layout.*;
 import javafx.stage.FileChooser;
 import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.time.LocalDate;
+import com.frauddetection.model.CategoryDictionary;
 import com.frauddetection.model.Transaction;
+import com.frauddetection.model.TransactionBatch;
+import com.frauddetection.service.RollupEngine;
 import com.frauddetection.service.TransactionService;
+import com.frauddetection.service.TransactionStore;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.animation.Animation;
@@ -20,7 +31,23 @@ import javafx.animation.Timeline;
 import javafx.util.Duration;
 
 public class DashboardView extends BorderPane {
+    // The chart plots matching amount per rollup bucket, using the finest resolution that keeps the
+    // selected range within CHART_POINTS buckets
+    private static final int CHART_POINTS = 200;
+    private static final double NANOS_PER_DAY = java.time.Duration.ofDays(1).toNanos();
+
     private final TransactionService transactionService;
+    private final DashboardFeed feed = new DashboardFeed(TransactionService.VIEW_CAPACITY);
+    private final BackgroundQueryExecutor queries = new BackgroundQueryExecutor("dashboard-query");
+    // Separate so a chart refresh never cancels a pending filter query
+    private final BackgroundQueryExecutor chartQueries = new BackgroundQueryExecutor("dashboard-chart");
+    private final ObservableList<Transaction> tableRows = FXCollections.observableArrayList();
+    private final XYChart.Series<Number, Number> amountSeries = new XYChart.Series<>();
+    private final PieChart.Data fraudData = new PieChart.Data("Fraudulent", 0);
+    private final PieChart.Data legitimateData = new PieChart.Data("Legitimate", 0);
+    private long fraudCount;
+    private long legitimateCount;
+    private boolean awaitingSnapshot;
     private TableView<Transaction> transactionTable;
     private LineChart<Number, Number> transactionChart;
     private PieChart fraudDistributionChart;
@@ -28,7 +55,7 @@ public class DashboardView extends BorderPane {
     private DatePicker startDate;
     private DatePicker endDate;
     private ComboBox<String> transactionTypeFilter;
-    private Timeline simulationTimeline;
+    private Timeline refreshTimeline;
     private Button importButton;
     private Button generateButton;
     private ToggleButton simulationToggle;
@@ -38,16 +65,13 @@ public class DashboardView extends BorderPane {
         initializeComponents();
         layoutComponents();
         setupEventHandlers();
-        setupSimulationTimeline();
-    }
 
-    private void setupSimulationTimeline() {
-        simulationTimeline = new Timeline(
-                new KeyFrame(Duration.seconds(2), e -> {
-                    transactionService.generateTransaction();
-                    updateDashboard();
-                }));
-        simulationTimeline.setCycleCount(Animation.INDEFINITE);
+        transactionService.getStore().addListener(feed);
+        updateDashboard();
+        // New rows reach the view through the feed; a tick only applies what arrived since the last one
+        refreshTimeline = new Timeline(new KeyFrame(Duration.millis(250), e -> applyDelta()));
+        refreshTimeline.setCycleCount(Animation.INDEFINITE);
+        refreshTimeline.play();
     }
 
     private void initializeComponents() {
@@ -75,24 +99,34 @@ public class DashboardView extends BorderPane {
                         .format(java.time.format.DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss"))));
 
         transactionTable.getColumns().addAll(idCol, timestampCol, amountCol, typeCol, locationCol, fraudCol);
+        transactionTable.setItems(tableRows);
 
         // Charts
         NumberAxis xAxis = new NumberAxis();
+        xAxis.setLabel("Days from start date");
         NumberAxis yAxis = new NumberAxis();
+        xAxis.setForceZeroInRange(false);
         transactionChart = new LineChart<>(xAxis, yAxis);
         transactionChart.setTitle("Transaction Patterns");
+        transactionChart.setAnimated(false);
+        transactionChart.setCreateSymbols(false);
+        amountSeries.setName("Transaction Volume Over Time");
+        transactionChart.getData().add(amountSeries);
 
-        fraudDistributionChart = new PieChart();
+        fraudDistributionChart = new PieChart(FXCollections.observableArrayList(fraudData, legitimateData));
         fraudDistributionChart.setTitle("Fraud Distribution");
+        fraudDistributionChart.setAnimated(false);
 
         // Filters and Controls
         startDate = new DatePicker(LocalDate.now().minusMonths(1));
         endDate = new DatePicker(LocalDate.now());
 
         transactionTypeFilter = new ComboBox<>();
-        transactionTypeFilter.setItems(FXCollections.observableArrayList(
-                "All", "Credit Card", "Wire Transfer", "Cash Deposit"));
-        transactionTypeFilter.setValue("All");
+        transactionTypeFilter.setItems(FXCollections.observableArrayList(TransactionStore.ALL_TYPES));
+        transactionTypeFilter.getItems().addAll(CategoryDictionary.TYPES.values());
+        transactionTypeFilter.setValue(TransactionStore.ALL_TYPES);
+        // Imported files can bring new types, so the list is rebuilt from the dictionary when opened
+        transactionTypeFilter.setOnShowing(e -> refreshTypeFilter());
 
         thresholdSpinner = new Spinner<>(0.0, 1.0, 0.5, 0.1);
         thresholdSpinner.setEditable(true);
@@ -159,29 +193,35 @@ public class DashboardView extends BorderPane {
 
             File file = fileChooser.showOpenDialog(getScene().getWindow());
             if (file != null) {
-                try {
-                    transactionService.importTransactions(file);
-                    updateDashboard();
-                } catch (Exception ex) {
-                    showError("Error importing file", ex.getMessage());
-                }
+                // Imported rows reach the view through the feed as each chunk is stored
+                importButton.setDisable(true);
+                CompletableFuture.runAsync(() -> {
+                    try {
+                        transactionService.importTransactions(file);
+                    } catch (IOException ex) {
+                        throw new UncheckedIOException(ex);
+                    }
+                }).whenComplete((ignored, error) -> Platform.runLater(() -> {
+                    importButton.setDisable(false);
+                    if (error != null) {
+                        Throwable cause = error.getCause() != null ? error.getCause() : error;
+                        showError("Error importing file", cause.getMessage());
+                    }
+                }));
             }
         });
 
-        generateButton.setOnAction(e -> {
-            transactionService.generateTransaction();
-            updateDashboard();
-        });
+        generateButton.setOnAction(e -> transactionService.generateTransaction());
 
-        simulationToggle.setOnAction(e -> {
-            boolean isSelected = simulationToggle.isSelected();
-            transactionService.setSimulationEnabled(isSelected);
-            if (isSelected) {
-                simulationTimeline.play();
-            } else {
-                simulationTimeline.stop();
-            }
-        });
+        simulationToggle.setOnAction(e -> transactionService.setSimulationEnabled(simulationToggle.isSelected()));
+    }
+
+    private void refreshTypeFilter() {
+        String[] types = CategoryDictionary.TYPES.values();
+        ObservableList<String> items = transactionTypeFilter.getItems();
+        for (int i = items.size() - 1; i < types.length; i++) {
+            items.add(types[i]);
+        }
     }
 
     private void showError(String title, String content) {
@@ -192,44 +232,101 @@ public class DashboardView extends BorderPane {
         alert.showAndWait();
     }
 
-    private void updateDashboard() {
-        // Update transaction table
-        ObservableList<Transaction> filteredTransactions = FXCollections.observableArrayList(
-                transactionService.getFilteredTransactions(
-                        startDate.getValue(),
-                        endDate.getValue(),
-                        transactionTypeFilter.getValue(),
-                        thresholdSpinner.getValue()));
-        transactionTable.setItems(filteredTransactions);
-
-        // Update charts
-        updateTransactionChart(filteredTransactions);
-        updateFraudDistributionChart(filteredTransactions);
-    }
+    // Everything a filter change needs, computed on the query thread
+    private static final class Snapshot {
+        final List<Transaction> rows;
+        final long fraudCount;
+        final long legitimateCount;
 
-    private void updateTransactionChart(ObservableList<Transaction> transactions) {
-        transactionChart.getData().clear();
-        XYChart.Series<Number, Number> series = new XYChart.Series<>();
-        series.setName("Transaction Amount Over Time");
-
-        // Add data points
-        for (int i = 0; i < transactions.size(); i++) {
-            series.getData().add(new XYChart.Data<>(i, transactions.get(i).getAmount()));
+        Snapshot(List<Transaction> rows, long fraudCount, long legitimateCount) {
+            this.rows = rows;
+            this.fraudCount = fraudCount;
+            this.legitimateCount = legitimateCount;
         }
+    }
+
+    // Full rebuild, only when the filter changes. The feed is pointed at the new filter before the
+    // store is queried, so an insert racing with the query may be counted twice but is never missed.
+    // Deltas are held back until the snapshot is shown so they are not applied to the old view.
+    private void updateDashboard() {
+        LocalDate start = startDate.getValue();
+        LocalDate end = endDate.getValue();
+        String type = transactionTypeFilter.getValue();
+        double threshold = thresholdSpinner.getValue();
+        feed.reset(new DashboardFeed.Filter(start, end, type, threshold));
+        awaitingSnapshot = true;
+
+        queries.submit(() -> {
+            List<Transaction> newest = transactionService.getFilteredTransactions(
+                    start, end, type, threshold, TransactionService.VIEW_CAPACITY);
+            // Counted from the store indexes over all matches, not just the rows shown in the table
+            long total = transactionService.countFilteredTransactions(start, end, type, threshold);
+            long fraud = transactionService.countFilteredTransactions(start, end, type,
+                    Math.max(threshold, Transaction.FRAUD_THRESHOLD));
+            return new Snapshot(newest, fraud, total - fraud);
+        }, this::applySnapshot, error -> {
+            awaitingSnapshot = false;
+            showError("Error loading transactions", error.getMessage());
+        });
+        refreshChart();
+    }
 
-        transactionChart.getData().add(series);
+    // Reads only the rollup buckets in the selected range, so the cost does not grow with the
+    // number of transactions it covers
+    private void refreshChart() {
+        LocalDate end = endDate.getValue() != null ? endDate.getValue() : LocalDate.now();
+        LocalDate start = startDate.getValue() != null ? startDate.getValue() : end.minusMonths(1);
+        LocalDateTime from = start.atStartOfDay();
+        LocalDateTime to = end.plusDays(1).atStartOfDay();
+        String type = transactionTypeFilter.getValue();
+        double threshold = thresholdSpinner.getValue();
+        long origin = TransactionBatch.toEpochNanos(from);
+
+        chartQueries.submit(() -> {
+            List<RollupEngine.Bucket> buckets = transactionService.getRollups()
+                    .series(from, to, type, null, threshold, CHART_POINTS);
+            List<XYChart.Data<Number, Number>> points = new ArrayList<>(buckets.size());
+            for (RollupEngine.Bucket bucket : buckets) {
+                double day = (TransactionBatch.toEpochNanos(bucket.getStart()) - origin) / NANOS_PER_DAY;
+                points.add(new XYChart.Data<>(day, bucket.getSum()));
+            }
+            return points;
+        }, points -> amountSeries.getData().setAll(points),
+                error -> showError("Error loading chart", error.getMessage()));
     }
 
-    private void updateFraudDistributionChart(ObservableList<Transaction> transactions) {
-        fraudDistributionChart.getData().clear();
+    private void applySnapshot(Snapshot snapshot) {
+        tableRows.setAll(snapshot.rows);
+        fraudCount = snapshot.fraudCount;
+        legitimateCount = snapshot.legitimateCount;
+        updatePie();
+        awaitingSnapshot = false;
+        applyDelta();
+    }
 
-        long fraudCount = transactions.stream().filter(Transaction::isFraudulent).count();
-        long legitimateCount = transactions.size() - fraudCount;
+    private void applyDelta() {
+        if (awaitingSnapshot) {
+            return;
+        }
+        DashboardFeed.Delta delta = feed.drain();
+        if (delta == null) {
+            return;
+        }
+        int overflow = tableRows.size() + delta.rows.size() - TransactionService.VIEW_CAPACITY;
+        if (overflow > 0) {
+            tableRows.remove(0, Math.min(overflow, tableRows.size()));
+        }
+        tableRows.addAll(delta.rows);
+        refreshChart();
 
-        PieChart.Data fraudData = new PieChart.Data("Fraudulent", fraudCount);
-        PieChart.Data legitimateData = new PieChart.Data("Legitimate", legitimateCount);
+        fraudCount += delta.fraud;
+        legitimateCount += delta.matched - delta.fraud;
+        updatePie();
+    }
 
-        fraudDistributionChart.getData().addAll(fraudData, legitimateData);
+    private void updatePie() {
+        fraudData.setPieValue(fraudCount);
+        legitimateData.setPieValue(legitimateCount);
     }
 
     public void refreshData() {
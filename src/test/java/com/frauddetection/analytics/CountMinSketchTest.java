@@ -0,0 +1,74 @@
+package com.frauddetection.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class CountMinSketchTest {
+    private static final int DEPTH = 4;
+    private static final int WIDTH = 256;
+
+    @Test
+    void neverUndercountsAndRarelyOvercountsByMoreThanTheBound() {
+        CountMinSketch sketch = new CountMinSketch(DEPTH, WIDTH);
+        Map<String, Double> truth = skewedStream(sketch, 5_000, new Random(1));
+
+        // Each estimate exceeds e / width of the total with probability at most e^-depth
+        double bound = Math.E / WIDTH * sketch.getTotal();
+        int overBound = 0;
+        for (Map.Entry<String, Double> entry : truth.entrySet()) {
+            double estimate = sketch.estimate(entry.getKey());
+            assertTrue(estimate >= entry.getValue() - 1e-9, "undercount for " + entry.getKey());
+            if (estimate - entry.getValue() > bound) {
+                overBound++;
+            }
+        }
+        assertTrue(overBound <= truth.size() * 0.05, overBound + " of " + truth.size() + " keys over the bound");
+    }
+
+    @Test
+    void mergesByAddingCounters() throws Exception {
+        CountMinSketch left = new CountMinSketch(DEPTH, WIDTH);
+        CountMinSketch right = new CountMinSketch(DEPTH, WIDTH);
+        Map<String, Double> truth = skewedStream(left, 2_000, new Random(2));
+        skewedStream(right, 2_000, new Random(3)).forEach((key, weight) -> truth.merge(key, weight, Double::sum));
+        double total = left.getTotal() + right.getTotal();
+        left.merge(right);
+
+        assertEquals(total, left.getTotal(), 1e-6);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        left.writeTo(new DataOutputStream(bytes));
+        CountMinSketch copy = CountMinSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        for (Map.Entry<String, Double> entry : truth.entrySet()) {
+            assertTrue(left.estimate(entry.getKey()) >= entry.getValue() - 1e-9);
+            assertEquals(left.estimate(entry.getKey()), copy.estimate(entry.getKey()));
+        }
+    }
+
+    @Test
+    void rejectsMergesOfDifferentShapes() {
+        assertThrows(IllegalArgumentException.class,
+                () -> new CountMinSketch(DEPTH, WIDTH).merge(new CountMinSketch(DEPTH, WIDTH * 2)));
+    }
+
+    // Zipf-like weights over keys, as amounts per location or account tend to be
+    private static Map<String, Double> skewedStream(CountMinSketch sketch, int keys, Random random) {
+        Map<String, Double> truth = new HashMap<>();
+        for (int i = 0; i < 50_000; i++) {
+            String key = "LOC-" + (int) (keys * Math.pow(random.nextDouble(), 3));
+            double weight = 1 + random.nextDouble() * 100;
+            sketch.add(key, weight);
+            truth.merge(key, weight, Double::sum);
+        }
+        return truth;
+    }
+}
@@ -0,0 +1,62 @@
+package com.frauddetection.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import org.junit.jupiter.api.Test;
+
+class HyperLogLogTest {
+    private static final int PRECISION = 12;
+    // Three standard errors of 1.04 / sqrt(2^precision)
+    private static final double ERROR = 3 * 1.04 / Math.sqrt(1 << PRECISION);
+
+    @Test
+    void estimatesWithinTheStandardErrorAcrossCardinalities() {
+        for (int n : new int[] { 100, 1_000, 10_000, 100_000, 1_000_000 }) {
+            HyperLogLog sketch = new HyperLogLog(PRECISION);
+            for (int i = 0; i < n; i++) {
+                sketch.add("ACC-" + i);
+            }
+            assertWithinError(n, sketch.estimate());
+        }
+    }
+
+    @Test
+    void ignoresRepeatedValues() {
+        HyperLogLog sketch = new HyperLogLog(PRECISION);
+        for (int round = 0; round < 10; round++) {
+            for (int i = 0; i < 5_000; i++) {
+                sketch.add("ACC-" + i);
+            }
+        }
+        assertWithinError(5_000, sketch.estimate());
+    }
+
+    @Test
+    void mergesToTheUnion() throws Exception {
+        HyperLogLog left = new HyperLogLog(PRECISION);
+        HyperLogLog right = new HyperLogLog(PRECISION);
+        for (int i = 0; i < 60_000; i++) {
+            left.add("ACC-" + i);
+        }
+        for (int i = 40_000; i < 100_000; i++) {
+            right.add("ACC-" + i);
+        }
+        left.merge(right);
+        assertWithinError(100_000, left.estimate());
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        left.writeTo(new DataOutputStream(bytes));
+        HyperLogLog copy = HyperLogLog.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+        assertEquals(left.estimate(), copy.estimate());
+    }
+
+    private static void assertWithinError(long actual, long estimate) {
+        double error = Math.abs(estimate - actual) / (double) actual;
+        assertTrue(error <= ERROR, "estimate " + estimate + " for " + actual + " distinct values");
+    }
+}
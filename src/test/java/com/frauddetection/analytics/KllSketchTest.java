@@ -0,0 +1,95 @@
+package com.frauddetection.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+
+class KllSketchTest {
+    private static final int K = 200;
+    // Documented error is about 1.7 / k with high probability; compaction offsets are random
+    private static final double RANK_ERROR = 3.0 / K;
+    private static final double[] FRACTIONS = { 0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99 };
+
+    @Test
+    void quantilesStayWithinTheRankError() {
+        int n = 100_000;
+        KllSketch sketch = new KllSketch(K);
+        for (int value : shuffled(n, new Random(1))) {
+            sketch.add(value);
+        }
+
+        assertEquals(n, sketch.getCount());
+        assertEquals(0, sketch.getMin());
+        assertEquals(n - 1, sketch.getMax());
+        assertRankError(sketch, n);
+    }
+
+    @Test
+    void mergedSketchesStayWithinTheRankError() {
+        int n = 100_000;
+        KllSketch left = new KllSketch(K);
+        KllSketch right = new KllSketch(K);
+        // Uneven halves so the two sides reach different levels before merging
+        for (int value : shuffled(n, new Random(2))) {
+            (value % 4 == 0 ? left : right).add(value);
+        }
+        left.merge(right);
+
+        assertEquals(n, left.getCount());
+        assertEquals(0, left.getMin());
+        assertEquals(n - 1, left.getMax());
+        assertRankError(left, n);
+    }
+
+    @Test
+    void roundTripsThroughItsSerializedForm() throws Exception {
+        KllSketch sketch = new KllSketch(K);
+        for (int value : shuffled(10_000, new Random(3))) {
+            sketch.add(value);
+        }
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        sketch.writeTo(new DataOutputStream(bytes));
+        KllSketch copy = KllSketch.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(sketch.getCount(), copy.getCount());
+        assertArrayEquals(sketch.quantiles(FRACTIONS), copy.quantiles(FRACTIONS));
+    }
+
+    @Test
+    void ignoresNaNAndAnswersNaNWhenEmpty() {
+        KllSketch sketch = new KllSketch(K);
+        assertTrue(Double.isNaN(sketch.quantile(0.5)));
+        sketch.add(Double.NaN);
+        assertEquals(0, sketch.getCount());
+    }
+
+    // Values 0..n-1, so a value's rank fraction is value / n
+    private static void assertRankError(KllSketch sketch, int n) {
+        double[] values = sketch.quantiles(FRACTIONS);
+        for (int i = 0; i < FRACTIONS.length; i++) {
+            double error = Math.abs(values[i] / n - FRACTIONS[i]);
+            assertTrue(error <= RANK_ERROR, "rank error " + error + " at " + FRACTIONS[i]);
+        }
+    }
+
+    private static int[] shuffled(int n, Random random) {
+        int[] values = new int[n];
+        for (int i = 0; i < n; i++) {
+            values[i] = i;
+        }
+        for (int i = n - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int swap = values[i];
+            values[i] = values[j];
+            values[j] = swap;
+        }
+        return values;
+    }
+}
@@ -0,0 +1,84 @@
+package com.frauddetection.analytics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+
+class SpaceSavingTest {
+    private static final int CAPACITY = 50;
+
+    @Test
+    void keepsEveryHeavyKeyWithinItsErrorBounds() {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        Map<String, Double> truth = stream(summary, new Random(1));
+
+        assertEquals(CAPACITY, summary.size());
+        assertBounds(summary, truth);
+    }
+
+    @Test
+    void mergedSummariesKeepTheBounds() throws Exception {
+        SpaceSaving left = new SpaceSaving(CAPACITY);
+        SpaceSaving right = new SpaceSaving(CAPACITY);
+        Map<String, Double> truth = stream(left, new Random(2));
+        stream(right, new Random(3)).forEach((key, weight) -> truth.merge(key, weight, Double::sum));
+        left.merge(right);
+
+        assertBounds(left, truth);
+    }
+
+    @Test
+    void roundTripsThroughItsSerializedForm() throws Exception {
+        SpaceSaving summary = new SpaceSaving(CAPACITY);
+        stream(summary, new Random(4));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        summary.writeTo(new DataOutputStream(bytes));
+        SpaceSaving copy = SpaceSaving.readFrom(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        assertEquals(summary.top(CAPACITY).toString(), copy.top(CAPACITY).toString());
+        // The restored heap must keep evicting the smallest counter
+        summary.add("NEW", 1);
+        copy.add("NEW", 1);
+        assertEquals(summary.top(CAPACITY).toString(), copy.top(CAPACITY).toString());
+    }
+
+    // Keys above total / capacity are present, and no reported weight is under or over its bounds
+    private static void assertBounds(SpaceSaving summary, Map<String, Double> truth) {
+        double total = truth.values().stream().mapToDouble(Double::doubleValue).sum();
+        List<SpaceSaving.HeavyHitter> top = summary.top(CAPACITY);
+        Set<String> reported = top.stream().map(SpaceSaving.HeavyHitter::getKey).collect(Collectors.toSet());
+        truth.forEach((key, weight) -> {
+            if (weight > total / CAPACITY) {
+                assertTrue(reported.contains(key), key + " with " + weight + " of " + total + " missing");
+            }
+        });
+        for (SpaceSaving.HeavyHitter hitter : top) {
+            double actual = truth.getOrDefault(hitter.getKey(), 0.0);
+            assertTrue(hitter.getWeight() >= actual - 1e-6, hitter + " underestimates " + actual);
+            assertTrue(hitter.getGuaranteedWeight() <= actual + 1e-6, hitter + " overstates " + actual);
+        }
+    }
+
+    // A few heavy accounts over a long tail of one-off ones
+    private static Map<String, Double> stream(SpaceSaving summary, Random random) {
+        Map<String, Double> truth = new HashMap<>();
+        for (int i = 0; i < 100_000; i++) {
+            String key = random.nextDouble() < 0.3 ? "HEAVY-" + random.nextInt(10) : "TAIL-" + random.nextInt(20_000);
+            double weight = 1 + random.nextDouble() * 10;
+            summary.add(key, weight);
+            truth.merge(key, weight, Double::sum);
+        }
+        return truth;
+    }
+}
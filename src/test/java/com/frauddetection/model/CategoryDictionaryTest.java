@@ -0,0 +1,30 @@
+package com.frauddetection.model;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+class CategoryDictionaryTest {
+    @Test
+    void hashesValuesPastTheCapacityIntoOverflowBuckets() {
+        CategoryDictionary dictionary = new CategoryDictionary(8, "A", "B", "C");
+        for (int i = 0; i < 5; i++) {
+            assertEquals(3 + i, dictionary.intern("value-" + i));
+        }
+        assertEquals(8, dictionary.size());
+
+        for (int i = 5; i < 10_000; i++) {
+            String value = dictionary.valueOf(dictionary.intern("value-" + i));
+            assertTrue(value.startsWith("#other-"), value);
+            // The same value always lands in the same bucket
+            assertEquals(value, dictionary.valueOf(dictionary.intern("value-" + i)));
+        }
+        assertEquals(8 + CategoryDictionary.OVERFLOW_BUCKETS, dictionary.size());
+        assertEquals(-1, dictionary.codeOf("value-5"));
+
+        // Values interned before the dictionary filled keep their codes
+        assertEquals(0, dictionary.intern("A"));
+        assertEquals(7, dictionary.intern("value-4"));
+    }
+}
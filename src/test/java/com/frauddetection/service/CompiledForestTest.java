@@ -0,0 +1,114 @@
+package com.frauddetection.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+class CompiledForestTest {
+    private static final double TOLERANCE = 1e-12;
+
+    @Test
+    void scoresRowsLikeWeka() throws Exception {
+        Instances data = data(400, 0.0, new Random(1));
+        RandomForest forest = forest(data);
+        CompiledForest compiled = CompiledForest.compile(forest, data, 1);
+
+        for (Instance instance : data(200, 0.0, new Random(2))) {
+            assertEquals(forest.distributionForInstance(instance)[1], compiled.score(instance.toDoubleArray()),
+                    TOLERANCE);
+        }
+    }
+
+    @Test
+    void splitsMissingValuesLikeWeka() throws Exception {
+        // Missing values in training too, so trees carry the branch proportions used for missing splits
+        Instances data = data(400, 0.1, new Random(3));
+        RandomForest forest = forest(data);
+        CompiledForest compiled = CompiledForest.compile(forest, data, 1);
+
+        for (Instance instance : data(200, 0.3, new Random(4))) {
+            assertEquals(forest.distributionForInstance(instance)[1], compiled.score(instance.toDoubleArray()),
+                    TOLERANCE);
+        }
+    }
+
+    @Test
+    void scoresColumnsLikeRows() throws Exception {
+        Instances data = data(400, 0.1, new Random(5));
+        CompiledForest compiled = CompiledForest.compile(forest(data), data, 1);
+
+        Instances test = data(300, 0.3, new Random(6));
+        double[][] columns = new double[test.numAttributes()][test.numInstances()];
+        for (int r = 0; r < test.numInstances(); r++) {
+            for (int a = 0; a < test.numAttributes(); a++) {
+                columns[a][r] = test.instance(r).value(a);
+            }
+        }
+        double[] scores = new double[test.numInstances()];
+        compiled.score(columns, test.numInstances(), scores);
+
+        for (int r = 0; r < test.numInstances(); r++) {
+            assertEquals(compiled.score(test.instance(r).toDoubleArray()), scores[r], TOLERANCE);
+        }
+    }
+
+    @Test
+    void rejectsForestsWithoutAttributes() throws Exception {
+        // With only the class attribute every tree falls back to ZeroR, which has no nodes to flatten
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute("class", List.of("legitimate", "fraudulent")));
+        Instances data = new Instances("transactions", attributes, 10);
+        data.setClassIndex(0);
+        for (int i = 0; i < 10; i++) {
+            data.add(new DenseInstance(1.0, new double[] { i % 2 }));
+        }
+
+        RandomForest forest = forest(data);
+        assertThrows(IllegalArgumentException.class, () -> CompiledForest.compile(forest, data, 1));
+    }
+
+    private static RandomForest forest(Instances data) throws Exception {
+        RandomForest forest = new RandomForest();
+        forest.setNumIterations(20);
+        forest.setSeed(1);
+        forest.buildClassifier(data);
+        return forest;
+    }
+
+    // Fraud is likelier for large amounts, transfers and large deviations; missingRate blanks features
+    private static Instances data(int rows, double missingRate, Random random) {
+        List<String> types = List.of("PURCHASE", "TRANSFER", "WITHDRAWAL");
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute("amount"));
+        attributes.add(new Attribute("type", types));
+        attributes.add(new Attribute("deviation"));
+        attributes.add(new Attribute("class", List.of("legitimate", "fraudulent")));
+        Instances data = new Instances("transactions", attributes, rows);
+        data.setClassIndex(attributes.size() - 1);
+
+        for (int i = 0; i < rows; i++) {
+            double amount = random.nextDouble() * 5000;
+            int type = random.nextInt(types.size());
+            double deviation = random.nextGaussian();
+            boolean fraud = amount / 5000 + (type == 1 ? 0.3 : 0) + deviation * 0.2 + random.nextGaussian() * 0.2 > 0.9;
+            double[] values = { amount, type, deviation, fraud ? 1 : 0 };
+            for (int a = 0; a < values.length - 1; a++) {
+                if (random.nextDouble() < missingRate) {
+                    values[a] = Utils.missingValue();
+                }
+            }
+            data.add(new DenseInstance(1.0, values));
+        }
+        return data;
+    }
+}
@@ -0,0 +1,184 @@
+package com.frauddetection.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import com.frauddetection.model.Transaction;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class CsvTransactionImporterTest {
+    @TempDir
+    Path directory;
+
+    @Test
+    void stripsCarriageReturnsFromCrlfLines() throws Exception {
+        Path file = write("crlf.csv", "TX-1,10.5,Credit Card,0.25,London\r\n"
+                + "TX-2,20,Wire Transfer,0.5\r\n"
+                + "TX-3,30.75,Cash Deposit,0.75,Tokyo\r\n");
+
+        List<Transaction> rows = new ArrayList<>();
+        CsvTransactionImporter.ImportResult result = importer(1_000_000).importFile(file,
+                batch -> rows.addAll(batch.asList()), null);
+
+        assertEquals(3, result.getImportedRows());
+        assertEquals(0, result.getMalformedRows());
+        assertEquals("London", rows.get(0).getLocation());
+        assertEquals(CsvTransactionImporter.UNKNOWN_LOCATION, rows.get(1).getLocation());
+        assertEquals("Tokyo", rows.get(2).getLocation());
+        assertEquals(0.75, rows.get(2).getFraudProbability(), 1e-6);
+    }
+
+    @Test
+    void parsesTheSameRowsWhateverTheChunkBoundaries() throws Exception {
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < 2_000; i++) {
+            String location = i % 5 == 0 ? "" : i % 5 == 1 ? ",\"Paris, France\"" : ",London";
+            String malformed = i % 97 == 0 ? "x" : "";
+            csv.append("TX-").append(i).append(',').append(i * 1.25).append(malformed)
+                    .append(",Credit Card,0.").append(i % 10).append(location)
+                    .append(i % 2 == 0 ? "\r\n" : "\n");
+        }
+        Path file = write("chunks.csv", csv.toString());
+
+        List<Transaction> expected = new ArrayList<>();
+        CsvTransactionImporter.ImportResult whole = importer(1_000_000).importFile(file,
+                batch -> expected.addAll(batch.asList()), null);
+        assertEquals(2_000 - 21, whole.getImportedRows());
+        assertEquals(21, whole.getMalformedRows());
+
+        // Chunks this small put a boundary inside almost every row, and between \r and \n
+        for (long chunkSize : new long[] { 1, 7, 64, 1_000 }) {
+            List<Transaction> rows = new ArrayList<>();
+            List<Long> progress = new ArrayList<>();
+            CsvTransactionImporter.ImportResult result = importer(chunkSize).importFile(file,
+                    batch -> rows.addAll(batch.asList()), (processed, total) -> progress.add(processed));
+            assertEquals(whole.getImportedRows(), result.getImportedRows(), "chunk size " + chunkSize);
+            assertEquals(whole.getMalformedRows(), result.getMalformedRows(), "chunk size " + chunkSize);
+            assertEquals(whole.getMalformedOffsets(), result.getMalformedOffsets(), "chunk size " + chunkSize);
+            assertEquals(Files.size(file), progress.get(progress.size() - 1));
+            assertEquals(expected.size(), rows.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).getId(), rows.get(i).getId());
+                assertEquals(expected.get(i).getAmount(), rows.get(i).getAmount());
+                assertEquals(expected.get(i).getType(), rows.get(i).getType());
+                assertEquals(expected.get(i).getLocation(), rows.get(i).getLocation());
+                assertEquals(expected.get(i).getFraudProbability(), rows.get(i).getFraudProbability());
+            }
+        }
+    }
+
+    @Test
+    void unescapesQuotedFieldsAndDefaultsMissingLocations() throws Exception {
+        Path file = write("quoted.csv", "\"TX-1\",\"12.5\",\"Wire Transfer\",0.1,\"Paris, France\"\n"
+                + "TX-2,13,Credit Card,0.2,\"The \"\"Old\"\" Town\"\n"
+                + "TX-3,14,Credit Card,0.3,\n"
+                + "TX-4,15,Credit Card,0.4\n"
+                + "TX-5,16,Credit Card,0.5,\"\"\n");
+
+        List<Transaction> rows = new ArrayList<>();
+        CsvTransactionImporter.ImportResult result = importer(1_000_000).importFile(file,
+                batch -> rows.addAll(batch.asList()), null);
+
+        assertEquals(5, result.getImportedRows());
+        assertEquals("TX-1", rows.get(0).getId());
+        assertEquals(12.5, rows.get(0).getAmount());
+        assertEquals("Wire Transfer", rows.get(0).getType());
+        assertEquals("Paris, France", rows.get(0).getLocation());
+        assertEquals("The \"Old\" Town", rows.get(1).getLocation());
+        for (int i = 2; i < 5; i++) {
+            assertEquals(CsvTransactionImporter.UNKNOWN_LOCATION, rows.get(i).getLocation(), rows.get(i).getId());
+        }
+    }
+
+    @Test
+    void countsMalformedRowsAndReportsTheirOffsets() throws Exception {
+        String[] lines = {
+                "TX-1,10,Credit Card,0.1,London",
+                "TX-2,ten,Credit Card,0.1,London",
+                "TX-3,10,Credit Card",
+                ",10,Credit Card,0.1,London",
+                "TX-5,10,,0.1,London",
+                "TX-6,10,Credit Card,high,London",
+                "TX-7,10,Credit Card,0.1,\"London",
+                "TX-8,10,Credit Card,0.1,\"London\"x",
+                "",
+                "TX-9,10,Credit Card,0.1,London",
+        };
+        Path file = write("malformed.csv", String.join("\n", lines) + "\n");
+
+        CsvTransactionImporter.ImportResult result = importer(1_000_000).importFile(file, batch -> { }, null);
+
+        assertEquals(2, result.getImportedRows());
+        assertEquals(7, result.getMalformedRows());
+        List<Long> offsets = new ArrayList<>();
+        long offset = 0;
+        for (int i = 0; i < lines.length; i++) {
+            if (i >= 1 && i <= 7) {
+                offsets.add(offset);
+            }
+            offset += lines[i].length() + 1;
+        }
+        assertEquals(offsets, result.getMalformedOffsets());
+    }
+
+    @Test
+    void parsesNumbersExactlyLikeDoubleParseDouble() throws Exception {
+        Random random = new Random(42);
+        List<String> numbers = new ArrayList<>(List.of("0", "-0", "+0.0", "1.", ".5", "-.5", "000123.4500",
+                "9007199254740991", "9007199254740993", "0.1", "0.30000000000000004", "123456789012345678",
+                "1234567890123456789", "1e3", "-2.5E-3", "1.7976931348623157e308", "4.9e-324",
+                "0.000000000000000000000001", " 42.5 ", "3.14159265358979323846"));
+        for (int i = 0; i < 20_000; i++) {
+            numbers.add(randomNumber(random));
+        }
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < numbers.size(); i++) {
+            csv.append("TX-").append(i).append(',').append(numbers.get(i)).append(",Credit Card,0.5\n");
+        }
+        Path file = write("numbers.csv", csv.toString());
+
+        List<Transaction> rows = new ArrayList<>();
+        CsvTransactionImporter.ImportResult result = importer(64 * 1024).importFile(file,
+                batch -> rows.addAll(batch.asList()), null);
+
+        assertEquals(0, result.getMalformedRows());
+        for (int i = 0; i < numbers.size(); i++) {
+            assertEquals(Double.parseDouble(numbers.get(i)), rows.get(i).getAmount(), numbers.get(i));
+        }
+    }
+
+    // Decimals of 1 to 22 digits with the point anywhere, sometimes signed or with an exponent
+    private static String randomNumber(Random random) {
+        int digits = 1 + random.nextInt(22);
+        StringBuilder number = new StringBuilder();
+        if (random.nextInt(4) == 0) {
+            number.append(random.nextBoolean() ? '-' : '+');
+        }
+        int point = random.nextInt(digits + 1);
+        for (int d = 0; d < digits; d++) {
+            if (d == point && d > 0) {
+                number.append('.');
+            }
+            number.append((char) ('0' + random.nextInt(10)));
+        }
+        if (random.nextInt(10) == 0) {
+            number.append('e').append(random.nextInt(40) - 20);
+        }
+        return number.toString();
+    }
+
+    private static CsvTransactionImporter importer(long chunkSize) {
+        return new CsvTransactionImporter(3, chunkSize);
+    }
+
+    private Path write(String name, String content) throws IOException {
+        return Files.write(directory.resolve(name), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,55 @@
+package com.frauddetection.service;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.Random;
+import java.util.stream.IntStream;
+import org.junit.jupiter.api.Test;
+
+class FilterKernelTest {
+    private static final int[] SIZES = { 0, 1, 63, 64, 65, 1_000, FilterKernel.PARALLEL_ROWS,
+            FilterKernel.PARALLEL_ROWS + 1, FilterKernel.PARALLEL_ROWS + 65 };
+
+    @Test
+    void selectsTheSameRowsAsANaiveFilter() {
+        Random random = new Random(7);
+        for (int size : SIZES) {
+            long[] timestamps = new long[size];
+            int[] typeCodes = new int[size];
+            float[] probabilities = new float[size];
+            for (int row = 0; row < size; row++) {
+                // Mostly near the range bounds, with the occasional extreme that overflows a naive subtraction
+                int pick = random.nextInt(50);
+                timestamps[row] = pick == 0 ? Long.MIN_VALUE : pick == 1 ? Long.MAX_VALUE : random.nextInt(2_000);
+                typeCodes[row] = random.nextInt(4);
+                probabilities[row] = random.nextInt(11) / 10f;
+            }
+
+            // from, to and type of each filter; a negative type matches all
+            long[][] filters = { { Long.MIN_VALUE, Long.MAX_VALUE, -1 }, { 500, 1_500, -1 }, { 500, 1_500, 2 },
+                    { Long.MIN_VALUE, 1_000, 0 }, { 1_000, Long.MAX_VALUE, 3 }, { 1_000, 1_000, -1 } };
+            float[] thresholds = { 0f, 0f, 0.5f, 0.3f, 1f, 0f };
+
+            for (int k = 0; k < filters.length; k++) {
+                long from = filters[k][0];
+                long to = filters[k][1];
+                int type = (int) filters[k][2];
+                float threshold = thresholds[k];
+                FilterKernel kernel = new FilterKernel(from, to, type, threshold);
+                int[] expected = IntStream.range(0, size)
+                        .filter(row -> timestamps[row] >= from && timestamps[row] < to)
+                        .filter(row -> type < 0 || typeCodes[row] == type)
+                        .filter(row -> probabilities[row] >= threshold)
+                        .toArray();
+
+                String label = "size " + size + ", filter " + k;
+                long[] bitmap = kernel.select(timestamps, typeCodes, probabilities, size);
+                assertEquals((size + 63) / 64, bitmap.length, label);
+                assertArrayEquals(expected, FilterKernel.rows(bitmap), label);
+                assertEquals(expected.length, FilterKernel.cardinality(bitmap), label);
+                assertEquals(expected.length, kernel.count(timestamps, typeCodes, probabilities, size), label);
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package com.frauddetection.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.frauddetection.model.Transaction;
+import com.frauddetection.service.IngestionPipeline.Backpressure;
+import com.frauddetection.service.IngestionPipeline.Stage;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.jupiter.api.Test;
+
+class IngestionPipelineTest {
+    // Recent enough that the store keeps every row
+    private static final LocalDateTime START = LocalDateTime.now().minusHours(1);
+
+    // One worker per stage and one transaction per batch, so queues fill predictably and order holds
+    private static PipelineConfig config(int intakeCapacity, Backpressure intakePolicy) {
+        PipelineConfig config = PipelineConfig.defaults()
+                .withQueue(Stage.ENRICH, intakeCapacity, intakePolicy)
+                .withBatchSize(1)
+                .withDrainTimeout(Duration.ofSeconds(10));
+        for (Stage stage : new Stage[] { Stage.SCORE, Stage.PERSIST, Stage.PUBLISH }) {
+            config = config.withQueue(stage, 1, Backpressure.BLOCK);
+        }
+        for (Stage stage : Stage.values()) {
+            config = config.withWorkers(stage, 1);
+        }
+        return config;
+    }
+
+    @Test
+    void shedsAndCountsWhatIntakeCannotHold() throws Exception {
+        GatedScorer scorer = new GatedScorer();
+        TransactionStore store = new TransactionStore();
+        List<String> published = Collections.synchronizedList(new ArrayList<>());
+        IngestionPipeline pipeline = new IngestionPipeline(scorer, store, config(4, Backpressure.SHED));
+        pipeline.addListener((transaction, probability) -> published.add(transaction.getId()));
+
+        int refused = 0;
+        for (int i = 0; i < 100; i++) {
+            if (!pipeline.submit(transaction(i))) {
+                refused++;
+            }
+        }
+        assertTrue(refused > 0);
+        assertEquals(refused, pipeline.getShed(Stage.ENRICH));
+        assertEquals(0, pipeline.getDropped(Stage.ENRICH));
+        assertEquals(refused, pipeline.getLost());
+
+        scorer.open();
+        assertTrue(pipeline.shutdown(Duration.ofSeconds(10)));
+        assertEquals(100 - refused, published.size());
+        assertEquals(100 - refused, store.size());
+    }
+
+    @Test
+    void dropsTheOldestAndKeepsTheNewest() throws Exception {
+        GatedScorer scorer = new GatedScorer();
+        List<String> published = Collections.synchronizedList(new ArrayList<>());
+        IngestionPipeline pipeline = new IngestionPipeline(scorer, new TransactionStore(),
+                config(4, Backpressure.DROP_OLDEST));
+        pipeline.addListener((transaction, probability) -> published.add(transaction.getId()));
+
+        for (int i = 0; i < 100; i++) {
+            assertTrue(pipeline.submit(transaction(i)));
+        }
+        long dropped = pipeline.getDropped(Stage.ENRICH);
+        assertTrue(dropped > 0);
+        assertEquals(0, pipeline.getShed(Stage.ENRICH));
+
+        scorer.open();
+        assertTrue(pipeline.shutdown(Duration.ofSeconds(10)));
+        assertEquals(100 - dropped, published.size());
+        assertEquals("TX-99", published.get(published.size() - 1));
+    }
+
+    @Test
+    void blocksTheProducerUntilThereIsRoom() throws Exception {
+        GatedScorer scorer = new GatedScorer();
+        List<String> published = Collections.synchronizedList(new ArrayList<>());
+        IngestionPipeline pipeline = new IngestionPipeline(scorer, new TransactionStore(),
+                config(4, Backpressure.BLOCK));
+        pipeline.addListener((transaction, probability) -> published.add(transaction.getId()));
+
+        AtomicInteger submitted = new AtomicInteger();
+        Thread producer = new Thread(() -> {
+            try {
+                for (int i = 0; i < 100; i++) {
+                    pipeline.submit(transaction(i));
+                    submitted.incrementAndGet();
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        // Scorer, score queue, enrich worker and intake hold a handful; the producer waits for the rest
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (producer.getState() != Thread.State.WAITING && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(Thread.State.WAITING, producer.getState());
+        assertTrue(submitted.get() < 100);
+
+        scorer.open();
+        producer.join(TimeUnit.SECONDS.toMillis(10));
+        assertFalse(producer.isAlive());
+        assertTrue(pipeline.shutdown(Duration.ofSeconds(10)));
+        assertEquals(100, published.size());
+        assertEquals(0, pipeline.getLost());
+    }
+
+    @Test
+    void closeDrainsEveryStageInOrder() throws Exception {
+        TransactionStore store = new TransactionStore();
+        List<String> published = Collections.synchronizedList(new ArrayList<>());
+        // A slow scorer leaves work queued in every stage when close is called
+        IngestionPipeline pipeline = new IngestionPipeline(transactions -> {
+            try {
+                Thread.sleep(1);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return new double[transactions.size()];
+        }, store, config(1_000, Backpressure.BLOCK));
+        pipeline.addListener((transaction, probability) -> published.add(transaction.getId()));
+
+        List<String> submitted = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            assertTrue(pipeline.submit(transaction(i)));
+            submitted.add("TX-" + i);
+        }
+        pipeline.close();
+
+        assertEquals(submitted, published);
+        assertEquals(500, store.size());
+        assertEquals(0, pipeline.getAbandoned());
+        assertEquals(0, pipeline.getQueued());
+        assertFalse(pipeline.submit(transaction(500)));
+    }
+
+    @Test
+    void abandonsAndCountsWhatTheDrainTimeoutLeaves() throws Exception {
+        GatedScorer scorer = new GatedScorer();
+        List<String> published = Collections.synchronizedList(new ArrayList<>());
+        IngestionPipeline pipeline = new IngestionPipeline(scorer, new TransactionStore(),
+                config(100, Backpressure.BLOCK));
+        pipeline.addListener((transaction, probability) -> published.add(transaction.getId()));
+        for (int i = 0; i < 50; i++) {
+            assertTrue(pipeline.submit(transaction(i)));
+        }
+
+        assertFalse(pipeline.shutdown(Duration.ofMillis(200)));
+        // The interrupted scoring call fails its batch; everything else still queued is abandoned
+        assertEquals(50, pipeline.getAbandoned() + pipeline.getFailed() + published.size());
+        assertTrue(pipeline.getAbandoned() > 0);
+        assertEquals(0, pipeline.getQueued());
+    }
+
+    private static Transaction transaction(int i) {
+        return new Transaction("TX-" + i, 10 + i, "Credit Card", 0.0, "London", START.plusSeconds(i), "AC-" + i % 7);
+    }
+
+    // Holds every scoring call until opened
+    private static final class GatedScorer implements BatchScorer {
+        private final CountDownLatch gate = new CountDownLatch(1);
+
+        @Override
+        public double[] predictFraudProbabilities(List<Transaction> transactions) {
+            try {
+                gate.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted while scoring", e);
+            }
+            return new double[transactions.size()];
+        }
+
+        void open() {
+            gate.countDown();
+        }
+    }
+}
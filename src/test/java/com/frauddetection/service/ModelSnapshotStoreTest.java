@@ -0,0 +1,130 @@
+package com.frauddetection.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import weka.classifiers.trees.RandomForest;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+
+class ModelSnapshotStoreTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void loadsTheNewestSnapshotForTheSchema() throws Exception {
+        Instances data = trainingData("amount");
+        ModelSnapshotStore store = new ModelSnapshotStore(directory, 3);
+        for (long version = 1; version <= 5; version++) {
+            store.save(model(data, version), data, data, 4);
+        }
+
+        assertEquals(List.of("model-000000000003.snapshot", "model-000000000004.snapshot",
+                "model-000000000005.snapshot"), snapshotNames());
+        ModelSnapshotStore.Snapshot snapshot = store.loadLatest(data);
+        assertNotNull(snapshot);
+        assertEquals(5, snapshot.getModel().getVersion());
+        assertEquals(4, snapshot.getSeedSize());
+        assertEquals(data.numInstances(), snapshot.getTrainingData().numInstances());
+        assertNotNull(snapshot.getModel().getCompiledForest());
+    }
+
+    @Test
+    void fallsBackWhenTheLatestSnapshotIsDamaged() throws Exception {
+        Instances data = trainingData("amount");
+        ModelSnapshotStore store = new ModelSnapshotStore(directory, 3);
+        store.save(model(data, 1), data, data, 4);
+        store.save(model(data, 2), data, data, 4);
+
+        Path latest = directory.resolve("model-000000000002.snapshot");
+        try (FileChannel channel = FileChannel.open(latest, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 1, 2, 3, 4 }), channel.size() - 4);
+        }
+
+        assertEquals(1, store.loadLatest(data).getModel().getVersion());
+    }
+
+    @Test
+    void ignoresSnapshotsOfAnotherSchema() throws Exception {
+        Instances old = trainingData("value");
+        new ModelSnapshotStore(directory, 3).save(model(old, 1), old, old, 4);
+
+        assertNull(new ModelSnapshotStore(directory, 3).loadLatest(trainingData("amount")));
+    }
+
+    @Test
+    void neverPrunesTheSnapshotJustSaved() throws Exception {
+        // Higher versions from an earlier run with a different schema
+        Instances old = trainingData("value");
+        ModelSnapshotStore store = new ModelSnapshotStore(directory, 3);
+        for (long version = 50; version <= 52; version++) {
+            store.save(model(old, version), old, old, 4);
+        }
+
+        Instances data = trainingData("amount");
+        store.save(model(data, 1), data, data, 4);
+
+        assertEquals(List.of("model-000000000001.snapshot"), snapshotNames());
+        assertEquals(1, store.loadLatest(data).getModel().getVersion());
+
+        store.save(model(data, 2), data, data, 4);
+        assertEquals(List.of("model-000000000001.snapshot", "model-000000000002.snapshot"), snapshotNames());
+        assertEquals(2, store.loadLatest(data).getModel().getVersion());
+    }
+
+    @Test
+    void leavesNoTemporaryFilesBehind() throws Exception {
+        Instances data = trainingData("amount");
+        new ModelSnapshotStore(directory).save(model(data, 1), data, data, 4);
+
+        try (Stream<Path> files = Files.list(directory)) {
+            assertFalse(files.anyMatch(file -> file.toString().endsWith(".tmp")));
+        }
+        assertTrue(Files.exists(directory.resolve("model-000000000001.snapshot")));
+    }
+
+    private List<String> snapshotNames() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.map(file -> file.getFileName().toString()).sorted().collect(Collectors.toList());
+        }
+    }
+
+    private static Instances trainingData(String feature) {
+        ArrayList<Attribute> attributes = new ArrayList<>();
+        attributes.add(new Attribute(feature));
+        attributes.add(new Attribute("class", List.of("legitimate", "fraudulent")));
+        Instances data = new Instances("Snapshot", attributes, 0);
+        data.setClassIndex(1);
+        for (int i = 0; i < 20; i++) {
+            data.add(new DenseInstance(1.0, new double[] { i * 100.0, i < 10 ? 0 : 1 }));
+        }
+        return data;
+    }
+
+    private static TrainedModel model(Instances data, long version) throws Exception {
+        RandomForest forest = new RandomForest();
+        forest.setNumIterations(5);
+        forest.setSeed(1);
+        forest.buildClassifier(data);
+        return new TrainedModel(forest, CompiledForest.compile(forest, data, 1), version, data.numInstances(),
+                Instant.now());
+    }
+}
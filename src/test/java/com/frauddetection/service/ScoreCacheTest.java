@@ -0,0 +1,89 @@
+package com.frauddetection.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.frauddetection.model.Transaction;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.junit.jupiter.api.Test;
+
+class ScoreCacheTest {
+    @Test
+    void countsHitsAndMisses() {
+        ScoreCache cache = new ScoreCache(64, 10.0, 0.25, ScoreCache.Policy.LRU);
+
+        assertTrue(Double.isNaN(cache.get(42, 1)));
+        cache.put(42, 1, 0.75);
+        assertEquals(0.75, cache.get(42, 1));
+        assertEquals(0.75, cache.get(42, 1));
+        // An entry from another model version is a miss
+        assertTrue(Double.isNaN(cache.get(42, 2)));
+
+        assertEquals(2, cache.getHits());
+        assertEquals(2, cache.getMisses());
+        assertEquals(0.5, cache.getHitRate());
+    }
+
+    @Test
+    void staysWithinItsCapacity() {
+        for (ScoreCache.Policy policy : ScoreCache.Policy.values()) {
+            ScoreCache cache = new ScoreCache(256, 10.0, 0.25, policy);
+            for (long key = 0; key < 10_000; key++) {
+                cache.get(key, 1);
+                cache.put(key, 1, key / 10_000.0);
+                assertTrue(cache.size() <= 256, policy + " grew to " + cache.size());
+            }
+            // Every key beyond what fits either evicted an entry or was refused admission
+            assertEquals(10_000 - cache.size(), cache.getEvictions() + cache.getRejections(), policy.name());
+            if (policy == ScoreCache.Policy.LRU) {
+                assertEquals(256, cache.size());
+                assertEquals(0, cache.getRejections());
+                assertEquals(9_999 / 10_000.0, cache.get(9_999, 1));
+                assertTrue(Double.isNaN(cache.get(0, 1)));
+            }
+        }
+    }
+
+    @Test
+    void installedAndRetrainedModelsInvalidateEntries() throws Exception {
+        ScoreCache cache = new ScoreCache();
+        WekaFraudDetector detector = new WekaFraudDetector(new FeatureEngine(), cache);
+        try {
+            detector.predictFraudProbabilities(transactions(0));
+            assertTrue(cache.size() > 0);
+            long misses = cache.getMisses();
+            detector.predictFraudProbabilities(transactions(1));
+            assertEquals(misses, cache.getMisses());
+            assertEquals(20, cache.getHits());
+
+            detector.installModel(detector.getModel(), detector.getHeader());
+            assertEquals(0, cache.size());
+            detector.predictFraudProbabilities(transactions(2));
+            assertEquals(20, cache.getHits());
+            assertTrue(cache.size() > 0);
+
+            detector.retrainNow().get(60, TimeUnit.SECONDS);
+            assertEquals(0, cache.size());
+            detector.predictFraudProbabilities(transactions(3));
+            assertEquals(20, cache.getHits());
+        } finally {
+            detector.close();
+        }
+    }
+
+    // The same rows every round, on accounts seen for the first time so their features match too
+    private static List<Transaction> transactions(int round) {
+        String[] types = { "Credit Card", "Wire Transfer", "Cash Deposit" };
+        String[] locations = { "New York", "London", "Tokyo", "Dubai" };
+        LocalDateTime now = LocalDateTime.now();
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            transactions.add(new Transaction("TX-" + round + "-" + i, 100.0 + i * 450, types[i % types.length],
+                    0.0, locations[i % locations.length], now, "AC-" + round + "-" + i));
+        }
+        return transactions;
+    }
+}
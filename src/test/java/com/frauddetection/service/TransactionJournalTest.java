@@ -0,0 +1,145 @@
+package com.frauddetection.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.frauddetection.model.Transaction;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class TransactionJournalTest {
+    private static final LocalDateTime START = LocalDateTime.of(2024, 1, 1, 0, 0);
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void replaysEveryFieldAfterATornTail() throws Exception {
+        List<Transaction> written = transactions(500);
+        try (TransactionJournal journal = new TransactionJournal(directory)) {
+            journal.append(written.subList(0, 200));
+            journal.append(written.subList(200, 500));
+            journal.sync().get(10, TimeUnit.SECONDS);
+        }
+
+        // A crash mid-write leaves a partial record at the end of the last segment
+        Path last = segments().get(segments().size() - 1);
+        long intact = Files.size(last);
+        Files.write(last, new byte[TransactionJournal.RECORD_SIZE / 2 + 3], StandardOpenOption.APPEND);
+
+        List<Transaction> replayed = new ArrayList<>();
+        try (TransactionJournal journal = new TransactionJournal(directory)) {
+            assertEquals(intact, Files.size(last));
+            assertEquals(written.size(), journal.replay(batch -> replayed.addAll(batch.asList())));
+        }
+
+        assertSameRows(written, replayed);
+    }
+
+    @Test
+    void replaysEveryFieldAcrossManySmallSegments() throws Exception {
+        // Tiny segments put dictionary entries and continuations right at the rollover point
+        long[][] cases = { { TransactionJournal.RECORD_SIZE * 16L, 2_000 }, { 4096, 5_000 }, { 64 * 1024, 50_000 } };
+        for (long[] sizes : cases) {
+            long segmentBytes = sizes[0];
+            Path segmentDirectory = directory.resolve("segments-" + segmentBytes);
+            List<Transaction> written = transactions((int) sizes[1]);
+            try (TransactionJournal journal = new TransactionJournal(segmentDirectory, segmentBytes, 100_000,
+                    Duration.ofMillis(1))) {
+                journal.append(written);
+                journal.sync().get(30, TimeUnit.SECONDS);
+            }
+
+            List<Transaction> replayed = new ArrayList<>();
+            try (TransactionJournal journal = new TransactionJournal(segmentDirectory, segmentBytes, 100_000,
+                    Duration.ofMillis(1))) {
+                journal.replay(batch -> replayed.addAll(batch.asList()));
+            }
+            assertSameRows(written, replayed);
+        }
+    }
+
+    @Test
+    void skipsTheRestOfASegmentAfterACorruptRecord() throws Exception {
+        List<Transaction> written = transactions(200);
+        try (TransactionJournal journal = new TransactionJournal(directory, TransactionJournal.RECORD_SIZE * 16L, 100,
+                Duration.ofMillis(1))) {
+            journal.append(written);
+            journal.sync().get(10, TimeUnit.SECONDS);
+        }
+        List<Path> segments = segments();
+        assertTrue(segments.size() > 3, "expected several segments, got " + segments.size());
+
+        corrupt(segments.get(1), 5);
+
+        List<String> ids = new ArrayList<>();
+        try (TransactionJournal journal = new TransactionJournal(directory, TransactionJournal.RECORD_SIZE * 16L, 100,
+                Duration.ofMillis(1))) {
+            journal.replay(batch -> batch.asList().forEach(transaction -> ids.add(transaction.getId())));
+        }
+
+        // Rows after the damage in that segment are lost; later segments still replay, in order
+        assertTrue(ids.size() < written.size());
+        assertEquals(written.get(written.size() - 1).getId(), ids.get(ids.size() - 1));
+        int previous = -1;
+        for (String id : ids) {
+            int number = Integer.parseInt(id.substring(id.lastIndexOf('-') + 1));
+            assertTrue(number > previous, id + " replayed out of order");
+            previous = number;
+        }
+    }
+
+    // Long ids and accounts span continuation records; every third row has no account
+    private static List<Transaction> transactions(int count) {
+        String[] types = { "PURCHASE", "TRANSFER", "WITHDRAWAL" };
+        String[] locations = { "New York", "London", "Tokyo", "Sydney" };
+        List<Transaction> transactions = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String id = i % 7 == 0 ? "TX-" + "x".repeat(40 + i % 30) + "-" + i : "TX-" + i;
+            String account = i % 3 == 0 ? null
+                    : i % 5 == 0 ? "ACC-" + "y".repeat(70) + "-" + i % 101 : "ACC-" + i % 1_000;
+            transactions.add(new Transaction(id, 10.0 + i * 0.25, types[i % types.length], (i % 100) / 100.0,
+                    locations[i % locations.length], START.plusSeconds(i).plusNanos(i * 1_000L), account));
+        }
+        return transactions;
+    }
+
+    private static void assertSameRows(List<Transaction> written, List<Transaction> replayed) {
+        assertEquals(written.size(), replayed.size());
+        for (int i = 0; i < written.size(); i++) {
+            Transaction expected = written.get(i);
+            Transaction actual = replayed.get(i);
+            assertEquals(expected.getId(), actual.getId());
+            assertEquals(expected.getAmount(), actual.getAmount());
+            assertEquals(expected.getType(), actual.getType(), expected.getId());
+            assertEquals(expected.getLocation(), actual.getLocation(), expected.getId());
+            assertEquals(expected.getTimestamp(), actual.getTimestamp());
+            assertEquals(expected.getFraudProbability(), actual.getFraudProbability(), 1e-6);
+            assertEquals(expected.getAccountId(), actual.getAccountId(), expected.getId());
+        }
+    }
+
+    private void corrupt(Path segment, int record) throws IOException {
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[] { 0x5A }), (long) record * TransactionJournal.RECORD_SIZE + 40);
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(path -> path.getFileName().toString().endsWith(".log")).sorted().toList();
+        }
+    }
+}
@@ -0,0 +1,163 @@
+package com.frauddetection.service;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import com.frauddetection.model.TransactionEvent;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+class TransactionRingBufferTest {
+    private static final int EVENTS = 200_000;
+
+    @Test
+    void handsEachEventToExactlyOneConsumerInOrder() throws Exception {
+        TransactionRingBuffer ring = new TransactionRingBuffer(64, TransactionRingBuffer.WaitStrategy.PARK);
+        AtomicIntegerArray deliveries = new AtomicIntegerArray(EVENTS);
+        AtomicLong consumed = new AtomicLong();
+        List<Throwable> failures = new ArrayList<>();
+
+        List<Thread> consumers = new ArrayList<>();
+        for (int c = 0; c < 4; c++) {
+            boolean drains = c % 2 == 0;
+            Thread consumer = new Thread(() -> {
+                TransactionEvent into = new TransactionEvent();
+                long[] last = { -1 };
+                try {
+                    while (consumed.get() < EVENTS) {
+                        int taken;
+                        if (drains) {
+                            taken = ring.drain(event -> record(event, last, deliveries), 16);
+                        } else {
+                            taken = ring.poll(into) ? 1 : 0;
+                            if (taken == 1) {
+                                record(into, last, deliveries);
+                            }
+                        }
+                        if (taken == 0) {
+                            Thread.yield();
+                        }
+                        consumed.addAndGet(taken);
+                    }
+                } catch (Throwable e) {
+                    synchronized (failures) {
+                        failures.add(e);
+                    }
+                }
+            }, "ring-consumer-" + c);
+            consumer.start();
+            consumers.add(consumer);
+        }
+
+        for (int i = 0; i < EVENTS; i++) {
+            TransactionEvent event = ring.claim();
+            event.set("TX", i, i, -1, -1, i, 0.0, null);
+            ring.publish();
+        }
+        for (Thread consumer : consumers) {
+            consumer.join(TimeUnit.SECONDS.toMillis(60));
+            assertFalse(consumer.isAlive(), "consumer did not finish");
+        }
+
+        assertTrue(failures.isEmpty(), () -> "consumer failed: " + failures);
+        assertEquals(EVENTS, consumed.get());
+        for (int i = 0; i < EVENTS; i++) {
+            assertEquals(1, deliveries.get(i), "deliveries of event " + i);
+        }
+        assertEquals(0, ring.size());
+    }
+
+    // Events reach any one consumer in publish order
+    private static void record(TransactionEvent event, long[] last, AtomicIntegerArray deliveries) {
+        long sequence = (long) event.getAmount();
+        if (sequence <= last[0]) {
+            throw new AssertionError("event " + sequence + " after " + last[0]);
+        }
+        last[0] = sequence;
+        deliveries.incrementAndGet((int) sequence);
+    }
+
+    @Test
+    void tryClaimFailsOnlyWhileTheRingIsFull() {
+        TransactionRingBuffer ring = new TransactionRingBuffer(4, TransactionRingBuffer.WaitStrategy.BUSY_SPIN);
+        for (int i = 0; i < 4; i++) {
+            ring.tryClaim().set("TX", i, i, -1, -1, i, 0.0, "ACC");
+            ring.publish();
+        }
+        assertNull(ring.tryClaim());
+        assertEquals(4, ring.size());
+
+        TransactionEvent into = new TransactionEvent();
+        assertTrue(ring.poll(into));
+        assertEquals("TX-0", into.getId());
+        assertEquals("ACC", into.getAccountId());
+        assertNotNull(ring.tryClaim());
+    }
+
+    @Test
+    void releasesTheWholeClaimWhenTheHandlerThrows() {
+        TransactionRingBuffer ring = new TransactionRingBuffer(4, TransactionRingBuffer.WaitStrategy.BUSY_SPIN);
+        for (int i = 0; i < 4; i++) {
+            ring.tryClaim().set("TX", i, i, -1, -1, i, 0.0, null);
+            ring.publish();
+        }
+        List<String> handled = new ArrayList<>();
+        assertThrows(IllegalStateException.class, () -> ring.drain(event -> {
+            handled.add(event.getId());
+            if (handled.size() == 2) {
+                throw new IllegalStateException("handler failed");
+            }
+        }, 4));
+        assertEquals(List.of("TX-0", "TX-1"), handled);
+        assertEquals(0, ring.size());
+
+        // Every slot of the failed claim is free again, not just the one whose handler threw
+        for (int i = 4; i < 8; i++) {
+            TransactionEvent event = ring.tryClaim();
+            assertNotNull(event, "slot for event " + i);
+            event.set("TX", i, i, -1, -1, i, 0.0, null);
+            ring.publish();
+        }
+        handled.clear();
+        assertEquals(4, ring.drain(event -> handled.add(event.getId()), 8));
+        assertEquals(List.of("TX-4", "TX-5", "TX-6", "TX-7"), handled);
+    }
+
+    @Test
+    void publishRequiresAClaim() {
+        TransactionRingBuffer ring = new TransactionRingBuffer(4, TransactionRingBuffer.WaitStrategy.YIELD);
+        assertThrows(IllegalStateException.class, ring::publish);
+        ring.tryClaim();
+        assertThrows(IllegalStateException.class, ring::tryClaim);
+    }
+
+    @Test
+    @Timeout(10)
+    void takeWaitsForThePublisher() throws Exception {
+        TransactionRingBuffer ring = new TransactionRingBuffer(8, TransactionRingBuffer.WaitStrategy.PARK);
+        Thread producer = new Thread(() -> {
+            try {
+                Thread.sleep(50);
+                ring.claim().set("TX", 7, 70.0, -1, -1, 0, 0.5, null);
+                ring.publish();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        producer.start();
+        TransactionEvent into = new TransactionEvent();
+        ring.take(into);
+        assertEquals("TX-7", into.getId());
+        assertEquals(70.0, into.getAmount());
+        producer.join();
+    }
+}